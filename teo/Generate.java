@@ -21,19 +21,28 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.jgrapht.DirectedGraph;
 import org.jgrapht.Graph;
+import org.jgrapht.Graphs;
 import org.jgrapht.graph.DirectedMultigraph;
+import org.jgrapht.graph.UnmodifiableDirectedGraph;
 
 import teo.Loader;
 import teo.isgci.db.AbstractRelation;
 import teo.isgci.gc.ComplementClass;
 import teo.isgci.gc.ForbiddenClass;
 import teo.isgci.gc.GraphClass;
+import teo.isgci.grapht.DeductionProfile;
+import teo.isgci.grapht.DeductionSnapshot;
 import teo.isgci.grapht.Deducer;
 import teo.isgci.grapht.GAlg;
 import teo.isgci.grapht.Inclusion;
+import teo.isgci.grapht.SanityChecks;
 import teo.isgci.problem.Complexity;
 import teo.isgci.problem.Problem;
 import teo.isgci.xml.ISGCIReader;
@@ -310,6 +319,44 @@ public class Generate {
     }
 
 
+    /**
+     * Return an unmodifiable copy of dg with the same vertex and edge order,
+     * so output can be written from it while dg is being reduced further.
+     * The copy shares the vertices and edges of dg, so these must not
+     * change anymore.
+     */
+    private static DirectedGraph<GraphClass,Inclusion> freeze(
+            DirectedGraph<GraphClass,Inclusion> dg) {
+        DirectedGraph<GraphClass,Inclusion> copy =
+                new DirectedMultigraph<GraphClass,Inclusion>(Inclusion.class);
+        Graphs.addGraph(copy, dg);
+        return new UnmodifiableDirectedGraph<GraphClass,Inclusion>(copy);
+    }
+
+
+    /**
+     * Construct the names of all classes in g, so writers that run in
+     * parallel only read them.
+     */
+    private static void constructNames(DirectedGraph<GraphClass,Inclusion> g){
+        for (GraphClass gc : g.vertexSet())
+            gc.toString();
+    }
+
+
+    /**
+     * Run task on pool and remember it in pending, or run it right away if
+     * there is no pool.
+     */
+    private static void submit(ExecutorService pool, List<Future<?> > pending,
+            Runnable task) {
+        if (pool == null)
+            task.run();
+        else
+            pending.add(pool.submit(task));
+    }
+
+
     /**
      * Main
      */
@@ -322,37 +369,66 @@ public class Generate {
 
         boolean notrivial = false;
         boolean extrachecks = false;
+        boolean closurerows = false;
+        boolean concurrentchecks = false;
         String debugout = null;
         String debugrelout = null;
         String autocache = null;
         String sageout = null;
+        String snapshotfile = null;
+        String tracefile = null;
+        String profilefile = null;
+        DeductionProfile profile = new DeductionProfile();
+        int threads = 1;
+        DeductionSnapshot snapshot = null;
+        boolean restored = false;
         Collection<Inclusion> deleted;
         PrintWriter writer;
         Map<GraphClass,Set<GraphClass> > compls;
         List<AbstractRelation> relations = new ArrayList<AbstractRelation>();
+        ExecutorService outputPool = null;
+        List<Future<?> > outputs = new ArrayList<Future<?> >();
 
-        Getopt opts = new Getopt("Generate", args, "Cxa:l:r:s:h");
+        Getopt opts = new Getopt("Generate", args, "Cbvxa:i:l:m:p:r:s:t:h");
         opts.setOpterr(false);
         while ((i = opts.getopt()) != -1) {
             switch (i) {
                 case 'C':
                     extrachecks = true;
                     break;
+                case 'b':
+                    closurerows = true;
+                    break;
+                case 'v':
+                    concurrentchecks = true;
+                    break;
                 case 'x':
                     notrivial = true;
                     break;
                 case 'a':
                     autocache = opts.getOptarg();
                     break;
+                case 'i':
+                    snapshotfile = opts.getOptarg();
+                    break;
                 case 'l':
                     debugout = opts.getOptarg();
                     break;
+                case 'm':
+                    tracefile = opts.getOptarg();
+                    break;
+                case 'p':
+                    profilefile = opts.getOptarg();
+                    break;
                 case 'r':
                     debugrelout = opts.getOptarg();
                     break;
                 case 's':
                     sageout = opts.getOptarg();
                     break;
+                case 't':
+                    threads = Integer.parseInt(opts.getOptarg());
+                    break;
                 case '?':
                 case 'h':
                     usage();
@@ -371,82 +447,173 @@ public class Generate {
         problems = new ArrayList<Problem>();
 
         Problem.setDeducing();
+        Problem.setThreads(threads);
         ForbiddenClass.initRules(null, args[opts.getOptind()+1]);
         load(args[opts.getOptind()], graph, problems, relations);
         deducer = new Deducer(graph,true, extrachecks);
         deducer.setGeneratorCache(autocache);
-        show(graph);
-
-        ArrayList<Inclusion> originals =
-                new ArrayList<Inclusion>(graph.edgeSet());
-
-        //---- Deductions
-        if (notrivial)
-            GAlg.transitiveClosure(graph);
-        else {
-            deducer.findTrivialInclusions();
-            deducer.findTrivialPropers();
-            deducer.sanityCheckAbstractRelations(relations);
-            deducer.printStatistics();
-        }
+        deducer.setThreads(threads);
+        deducer.setClosureRows(closurerows);
+        deducer.setDeferredChecks(concurrentchecks);
+        if (tracefile != null)
+            deducer.setTraceFile(tracefile);
+        deducer.setProfile(profile);
+        try {
+            show(graph);
+
+            ArrayList<Inclusion> originals =
+                    new ArrayList<Inclusion>(graph.edgeSet());
+
+            //---- Deductions
+            if (notrivial)
+                GAlg.transitiveClosure(graph);
+            else {
+                // The snapshot only keeps the descriptions of the tracedata,
+                // so a debug log requires a full deduction.
+                if (snapshotfile != null) {
+                    snapshot = new DeductionSnapshot(deducer,
+                            args[opts.getOptind()+1], autocache);
+                    if (debugout == null  &&  debugrelout == null)
+                        restored = snapshot.restore(snapshotfile);
+                }
+                if (!restored) {
+                    deducer.findTrivialInclusions();
+                    deducer.findTrivialPropers();
+                    if (snapshot != null)
+                        snapshot.write(snapshotfile);
+                }
+                deducer.sanityCheckAbstractRelations(relations);
+                deducer.printStatistics();
+                profile.setRestored(restored);
+                if (!restored)
+                    profile.print(System.out);
+                if (profilefile != null)
+                    profile.writeJSON(profilefile);
+            }
 
-        //---- Print debug info
-        if (debugout != null) {
-            writer = new PrintWriter(
-                    new BufferedWriter(new FileWriter(debugout), 64*1024));
-            showNames(graph, writer);
-            printDebug(deducer, writer);
-        }
+            //---- Print debug info
+            if (debugout != null) {
+                writer = new PrintWriter(
+                        new BufferedWriter(new FileWriter(debugout), 64*1024));
+                showNames(graph, writer);
+                printDebug(deducer, writer);
+            }
             
-        if (debugrelout != null) {
-            writer = new PrintWriter(
-                    new BufferedWriter(new FileWriter(debugrelout), 64*1024));
-            printRelDebug(deducer, originals, writer);
-        }
+            if (debugrelout != null) {
+                writer = new PrintWriter(
+                        new BufferedWriter(new FileWriter(debugrelout),
+                                64*1024));
+                printRelDebug(deducer, originals, writer);
+            }
 
-        System.out.println("Distributing complexities");
-        Problem.distributeComplexities();
-        showProblemStats(graph, problems);
+            // Deferred sanity checks run while the complexities are
+            // distributed
+            SanityChecks checks = deducer.getSanityChecks();
+            FutureTask<Void> checking = null;
+            if (checks != null) {
+                checking = new FutureTask<Void>(checks, null);
+                new Thread(checking, "SanityChecks").start();
+            }
 
-        System.out.println("Gathering complements");
-        compls = gatherComplements(graph);
+            System.out.println("Distributing complexities");
+            Problem.distributeComplexities();
+            showProblemStats(graph, problems);
 
-        // Remove temporaries
-        System.out.println("Cleaning up");
-        deducer.removeTemp();
-        show(graph);
-        showProblemStats(graph, problems);
+            if (checking != null) {
+                checking.get();
+                checks.print(System.out);
+            }
 
-        
-        int nc = graph.vertexSet().size();               // For Safety check
-        int ec = graph.edgeSet().size();
+            System.out.println("Gathering complements");
+            compls = gatherComplements(graph);
 
-        deleted = deducer.deleteSuperfluousEdges();
-        show(graph);
+            // Remove temporaries
+            System.out.println("Cleaning up");
+            deducer.removeTemp();
+            show(graph);
+            showProblemStats(graph, problems);
 
-        if (extrachecks) {
-            System.out.println("Verify deleteSuperFluousEdges");
-            checkPaths(graph, deleted);
-        }
+        
+            int nc = graph.vertexSet().size();           // For Safety check
+            int ec = graph.edgeSet().size();
 
-        // Output
-        deducer.addRefs();
-        showShort(graph, problems, relations, compls,args[opts.getOptind()+3]);
-        showSage(graph, problems, relations, compls, sageout);
-        deleted = deducer.deleteSuperfluousEdgesFull();
+            deleted = deducer.deleteSuperfluousEdges();
+            show(graph);
 
-        if (extrachecks) {
-            System.out.println("Verify deleteSuperFluousEdgesFull");
-            checkPaths(graph, deleted);
-        }
+            if (extrachecks) {
+                System.out.println("Verify deleteSuperFluousEdges");
+                checkPaths(graph, deleted);
+            }
 
-        showFull(graph, problems, relations, compls, args[opts.getOptind()+2]);
-        showNames(graph, args[opts.getOptind()+4]);
+            // Output. The documents are written from frozen copies of the
+            // graph, in the background if we have threads to spare.
+            deducer.addRefs();
+            if (threads > 1)
+                outputPool = Executors.newFixedThreadPool(threads - 1);
+            final List<Problem> fproblems = problems;
+            final List<AbstractRelation> frelations = relations;
+            final Map<GraphClass,Set<GraphClass> > fcompls = compls;
+            final String shortout = args[opts.getOptind()+3];
+            final String fullout = args[opts.getOptind()+2];
+            final String namesout = args[opts.getOptind()+4];
+            final String fsageout = sageout;
+
+            final DirectedGraph<GraphClass,Inclusion> reduced = freeze(graph);
+            submit(outputPool, outputs, new Runnable() {
+                public void run() {
+                    showShort(reduced, fproblems, frelations, fcompls,
+                            shortout);
+                }
+            });
+            deleted = deducer.deleteSuperfluousEdgesFull();
+
+            if (extrachecks) {
+                System.out.println("Verify deleteSuperFluousEdgesFull");
+                checkPaths(graph, deleted);
+            }
 
-        // Safety check
-        GAlg.transitiveClosure(graph);
-        if (graph.vertexSet().size() != nc  ||  graph.edgeSet().size() != ec)
-            System.err.println("Error in deleteSuperfluousEdges?!");
+            // short.xml contains the names of the input classes whose name
+            // has not been constructed yet, and the other writers construct
+            // all names. So short.xml must be complete before they start,
+            // and they must find the names constructed.
+            for (Future<?> f : outputs)
+                f.get();
+            constructNames(graph);
+
+            submit(outputPool, outputs, new Runnable() {
+                public void run() {
+                    showSage(reduced, fproblems, frelations, fcompls,
+                            fsageout);
+                }
+            });
+            final DirectedGraph<GraphClass,Inclusion> full = freeze(graph);
+            submit(outputPool, outputs, new Runnable() {
+                public void run() {
+                    showFull(full, fproblems, frelations, fcompls, fullout);
+                }
+            });
+            submit(outputPool, outputs, new Runnable() {
+                public void run() {
+                    showNames(full, namesout);
+                }
+            });
+            if (outputPool != null)
+                outputPool.shutdown();
+
+            // Safety check, on a closed copy of the final graph
+            DirectedGraph<GraphClass,Inclusion> closed = new
+                    DirectedMultigraph<GraphClass,Inclusion>(Inclusion.class);
+            Graphs.addGraph(closed, full);
+            GAlg.transitiveClosure(closed);
+            if (closed.vertexSet().size() != nc  ||
+                    closed.edgeSet().size() != ec)
+                System.err.println("Error in deleteSuperfluousEdges?!");
+
+            for (Future<?> f : outputs)
+                f.get();
+        } finally {
+            deducer.closeTraceFile();
+        }
     }
 
 
@@ -457,8 +624,20 @@ public class Generate {
                 " -x : Only generate XML, no deductions done\n"+
                 " -C : Perform extra checks on code (not data) correctness\n"+
                 " -s filename: write out for sage to filename\n" +
+                " -t threads: Number of threads to use for deductions\n" +
+                " -b : Maintain transitivity with bit rows (faster, uses\n"+
+                "    more memory)\n" +
+                " -v : Run the sanity checks of the deductions concurrently\n"+
+                "    with distributing the complexities\n" +
                 " -a filename: AUTO_* cache filename\n" +
+                " -i filename: Deduction snapshot; reused if the classes and\n"+
+                "    inclusions are unchanged, continued from if some were\n"+
+                "    only added, rewritten otherwise\n" +
                 " -l filename: Log debug output to filename\n" +
+                " -m filename: Keep the deduction traces in a memory mapped\n"+
+                "    file instead of on the heap\n" +
+                " -p filename: Write the time and counters per deduction\n"+
+                "    rule in JSON to filename\n" +
                 " -r filename: Log relations debug output to filename");
     }
 }
@@ -0,0 +1,68 @@
+/*
+ * Benchmark of a single round of trivial deductions.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import teo.isgci.gc.GraphClass;
+import teo.isgci.grapht.Deducer;
+
+/**
+ * Deducer.findTrivialOnce for all classes, on a fresh copy of the closed
+ * inclusion graph of isgci.xml for every invocation. The deductions
+ * themselves are not traced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DeducerBenchmark {
+    /** Number of threads for the pairwise scans */
+    @Param({"1"})
+    public int threads;
+
+    private Deducer deducer;
+    private ArrayList<GraphClass> classes;
+
+
+    @Setup(Level.Invocation)
+    public void snapshot(ISGCIData data) {
+        deducer = new Deducer(ISGCIData.copy(data.closed), false, false);
+        deducer.setGeneratorCache(null);
+        deducer.setThreads(threads);
+        classes = new ArrayList<GraphClass>(data.classes);
+    }
+
+
+    @Benchmark
+    public Deducer findTrivialOnce() {
+        deducer.findTrivialOnce(classes);
+        return deducer;
+    }
+}
+
+/* EOF */
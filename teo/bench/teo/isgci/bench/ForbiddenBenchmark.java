@@ -0,0 +1,78 @@
+/*
+ * Benchmark of the inclusion test between forbidden subgraph classes.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import teo.isgci.gc.ForbiddenClass;
+import teo.isgci.gc.GraphClass;
+
+/**
+ * ForbiddenClass.subClassOf on all ordered pairs of distinct forbidden
+ * subgraph classes of isgci.xml. With cache=cold the forbids cache is
+ * cleared before every invocation, with cache=warm it is kept.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ForbiddenBenchmark {
+    @Param({"cold", "warm"})
+    public String cache;
+
+    private List<ForbiddenClass> forbidden;
+
+
+    @Setup(Level.Trial)
+    public void gather(ISGCIData data) {
+        forbidden = new ArrayList<ForbiddenClass>();
+        for (GraphClass gc : data.classes)
+            if (gc instanceof ForbiddenClass)
+                forbidden.add((ForbiddenClass) gc);
+    }
+
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        if ("cold".equals(cache))
+            ForbiddenClass.clearForbidsCache();
+    }
+
+
+    @Benchmark
+    public int subClassOf() {
+        int res = 0;
+        for (ForbiddenClass a : forbidden)
+            for (ForbiddenClass b : forbidden)
+                if (a != b  &&  a.subClassOf(b))
+                    res++;
+        return res;
+    }
+}
+
+/* EOF */
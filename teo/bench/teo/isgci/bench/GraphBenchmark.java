@@ -0,0 +1,93 @@
+/*
+ * Benchmarks of the graph algorithms in GAlg.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.bench;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.DirectedGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import teo.isgci.db.DataSet;
+import teo.isgci.gc.GraphClass;
+import teo.isgci.grapht.GAlg;
+import teo.isgci.grapht.Inclusion;
+
+/**
+ * Transitive closure, transitive reduction and SCCs of the inclusion graph.
+ * The closure starts from the inclusion graph of isgci.xml, the reduction
+ * from its closure without the edges inside SCCs, as it requires an acyclic
+ * graph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GraphBenchmark {
+
+    /** A fresh copy of the inclusion graph for every invocation */
+    @State(Scope.Thread)
+    public static class Open {
+        DirectedGraph<GraphClass,Inclusion> graph;
+
+        @Setup(Level.Invocation)
+        public void copy(ISGCIData data) {
+            graph = ISGCIData.copy(DataSet.inclGraph);
+        }
+    }
+
+
+    /** A fresh copy of the acyclic closure for every invocation */
+    @State(Scope.Thread)
+    public static class Closed {
+        DirectedGraph<GraphClass,Inclusion> graph;
+
+        @Setup(Level.Invocation)
+        public void copy(ISGCIData data) {
+            graph = ISGCIData.copy(data.closedAcyclic);
+        }
+    }
+
+
+    @Benchmark
+    public DirectedGraph<GraphClass,Inclusion> transitiveClosure(Open in) {
+        GAlg.transitiveClosure(in.graph);
+        return in.graph;
+    }
+
+
+    @Benchmark
+    public DirectedGraph<GraphClass,Inclusion> transitiveReduction(
+            Closed in) {
+        GAlg.transitiveReduction(in.graph);
+        return in.graph;
+    }
+
+
+    @Benchmark
+    public Map<GraphClass,Set<GraphClass> > calcSCCMap(ISGCIData data) {
+        return GAlg.calcSCCMap(data.closed);
+    }
+}
+
+/* EOF */
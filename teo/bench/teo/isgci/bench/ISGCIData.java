@@ -0,0 +1,94 @@
+/*
+ * The data loaded once per benchmark trial.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.bench;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.graph.DirectedMultigraph;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import teo.Loader;
+import teo.isgci.db.DataSet;
+import teo.isgci.gc.ForbiddenClass;
+import teo.isgci.gc.GraphClass;
+import teo.isgci.grapht.GAlg;
+import teo.isgci.grapht.Inclusion;
+
+/**
+ * Loads data/isgci.xml and data/smallgraphs.xml from the directory given by
+ * the system property isgci.bench.dir (default: build) into DataSet and the
+ * ForbiddenClass rules, and prepares the graphs the benchmarks start from.
+ * DataSet is static, so the files are read only once per JVM.
+ */
+@State(Scope.Benchmark)
+public class ISGCIData {
+    /** The classes of DataSet, sorted by id */
+    List<GraphClass> classes;
+    /** The transitive closure of the inclusion graph */
+    DirectedGraph<GraphClass,Inclusion> closed;
+    /** closed without the edges inside SCCs */
+    DirectedGraph<GraphClass,Inclusion> closedAcyclic;
+
+
+    @Setup(Level.Trial)
+    public void load() throws MalformedURLException {
+        String dir = new File(System.getProperty("isgci.bench.dir", "build"))
+                .getAbsolutePath();
+        Loader loader = new Loader("file://"+ dir +"/", true);
+        ForbiddenClass.initRules(loader, "data/smallgraphs.xml");
+        DataSet.init(loader, "data/isgci.xml");
+
+        classes = new ArrayList<GraphClass>(DataSet.getClasses());
+        Collections.sort(classes, new Comparator<GraphClass>() {
+            public int compare(GraphClass a, GraphClass b) {
+                return a.getID().compareTo(b.getID());
+            }
+        });
+
+        closed = copy(DataSet.inclGraph);
+        GAlg.transitiveClosure(closed);
+
+        closedAcyclic = copy(closed);
+        List<Inclusion> inner = new ArrayList<Inclusion>();
+        for (Inclusion e : closedAcyclic.edgeSet())
+            if (DataSet.getEquivalentClasses(closedAcyclic.getEdgeSource(e))
+                    .contains(closedAcyclic.getEdgeTarget(e)))
+                inner.add(e);
+        closedAcyclic.removeAllEdges(inner);
+    }
+
+
+    /**
+     * Return a copy of g with new edges, so that benchmarks can change it
+     * freely.
+     */
+    static DirectedGraph<GraphClass,Inclusion> copy(
+            DirectedGraph<GraphClass,Inclusion> g) {
+        DirectedGraph<GraphClass,Inclusion> res =
+                new DirectedMultigraph<GraphClass,Inclusion>(Inclusion.class);
+        for (GraphClass v : g.vertexSet())
+            res.addVertex(v);
+        for (Inclusion e : g.edgeSet())
+            res.addEdge(g.getEdgeSource(e), g.getEdgeTarget(e));
+        return res;
+    }
+}
+
+/* EOF */
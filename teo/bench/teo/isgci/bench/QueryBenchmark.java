@@ -0,0 +1,100 @@
+/*
+ * Benchmarks of the queries the application answers.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import teo.isgci.db.Algo;
+import teo.isgci.gc.GraphClass;
+import teo.isgci.iq.IQ;
+import teo.isgci.util.LandMark;
+
+/**
+ * Landmark maps, as drawn by LandMark for every class, and ISGCI queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class QueryBenchmark {
+    /** Number of classes for which a landmark map is made */
+    private static final int MAPS = 200;
+
+    /** The query corpus */
+    private static final String[] QUERIES = {
+        "<= perfect",
+        ">= threshold",
+        "<= perfect and >= threshold",
+        "< chordal or < bipartite",
+        "not <= perfect",
+        "<= comparability and not <= permutation",
+        "> tree and < \"proper interval\"",
+        "(<= planar or <= split) and >= clique",
+        "<= \"weakly chordal\" and not (<= chordal or <= cograph)",
+        "= interval or = circle or = Meyniel",
+    };
+
+    /** The landmark list, the first element is replaced for every map */
+    private List<GraphClass> landmarks;
+    /** The classes to make a map for */
+    private List<GraphClass> mapped;
+
+
+    @Setup(Level.Trial)
+    public void gather(ISGCIData data) {
+        landmarks = LandMark.getLandmarks();
+        mapped = new ArrayList<GraphClass>();
+        int step = Math.max(1, data.classes.size() / MAPS);
+        for (int i = 0; i < data.classes.size(); i += step)
+            mapped.add(data.classes.get(i));
+    }
+
+
+    @Benchmark
+    public int landmarkMaps() {
+        int res = 0;
+        for (GraphClass gc : mapped) {
+            landmarks.set(0, gc);
+            res += Algo.createHierarchySubgraph(landmarks).edgeSet().size();
+        }
+        return res;
+    }
+
+
+    @Benchmark
+    public int queries() {
+        int res = 0;
+        for (String q : QUERIES) {
+            IQ iq = new IQ(q);
+            if (iq.getSet() != null)
+                res += iq.getSet().size();
+        }
+        return res;
+    }
+}
+
+/* EOF */
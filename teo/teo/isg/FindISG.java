@@ -12,15 +12,15 @@ package teo.isg;
 
 import gnu.getopt.Getopt;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.TreeMap;
 import java.util.Vector;
 
 import org.jgrapht.graph.DefaultEdge;
@@ -29,6 +29,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import teo.isgci.grapht.GAlg;
+import teo.isgci.util.ParallelBlocks;
 import teo.isgci.xml.NoteFilter;
 import teo.isgci.xml.SmallGraphReader;
 import teo.isgci.xml.SmallGraphTags;
@@ -38,6 +39,7 @@ import teo.isgci.xml.XMLParser;
 public class FindISG{
     
     private static Vector graphs, families, configurations, grammars;
+    private static GraphIndex graphIndex; // graphs by certificate
     private static Hashtable results;
     private static SimpleDirectedGraph<Graph,DefaultEdge> resultGraph;
     
@@ -56,14 +58,15 @@ public class FindISG{
 
     private static int verbose = 0;
 
-    public static void main(String args[]) throws IOException,
-            InterruptedException {
+    public static void main(String args[]) throws IOException {
         boolean transitivelyClosed = false;
+        int threads = 0;            // 0 means sequential
 
         long t1,t2,ts=0;
         int c;
         
         graphs = new Vector();
+        graphIndex = new GraphIndex();
         families = new Vector();
         configurations = new Vector();
         grammars = new Vector();
@@ -72,12 +75,15 @@ public class FindISG{
                 DefaultEdge.class);
         usg=0;
 
-        Getopt opts = new Getopt("FindISG", args, "ctv");
+        Getopt opts = new Getopt("FindISG", args, "cp:tv");
         while ((c = opts.getopt()) != -1) {
             switch (c) {
                 case 'c':
                     noComplements = true;
                     break;
+                case 'p':
+                    threads = Integer.parseInt(opts.getOptarg());
+                    break;
                 case 't':
                     transitivelyClosed = true;
                     break;
@@ -127,8 +133,11 @@ public class FindISG{
 
         t1=System.currentTimeMillis();
         
-        for (int i=0; i<graphs.size(); i++)
-            getSubs((Graph)graphs.elementAt(i));
+        if (threads > 0)
+            getSubsByLevel(threads);
+        else
+            for (int i=0; i<graphs.size(); i++)
+                getSubs((Graph)graphs.elementAt(i));
         
         t2=System.currentTimeMillis();
 
@@ -217,6 +226,7 @@ public class FindISG{
         System.err.println(
             "Usage: FindISG [opts] input.xml out.xml\n"+
             "   -c: don't handle complements\n"+
+            "   -p threads: find subgraphs level by level in parallel\n"+
             "   -t: create transitively closed out.dig\n"+
             "   -v: be verbose\n");
         System.exit(1);
@@ -263,39 +273,20 @@ public class FindISG{
 /*        System.out.println("bestimme Teilgraphen von " + graph.getName()
                 + " (" + graph.countNodes() + " Knoten)"); */
         
-        int i,j,cnt=graph.countNodes();
+        int i,cnt=graph.countNodes();
         // dont check graphs with 3 or less nodes
         if(cnt<minCnt) return;
         
         Graph g1,g2;
-        Vector candidate=new Vector(),result=new Vector();
-        boolean found;
-        
-        // since vector names is sorted by number of nodes ...
-        /* XXX was bitteschön ist sortiert????? */
-        for(i=graphs.size()-1;i>=0;i--){
-            g1=(Graph)graphs.elementAt(i);
-            if (!g1.getBottom() && g1.countNodes() == cnt - 1
-                    && g1.countEdges() <= graph.countEdges())
-                candidate.addElement(g1);
-        }
+        Vector result=new Vector();
         
-        g2=null; // must be initialized due to javac
         for(i=0;i<cnt;i++){
             g1=new Graph(graph);
             g1.delNode(i);
-            found=false;
-            for(j=candidate.size()-1;j>=0;j--){
-                g2=(Graph)candidate.elementAt(j);
-                if(g1.isIsomorphic(g2)){
-                    found=true;
-                    break;
-                }
-            }
-            if(!found){
-                addUSG(g1, graphs, USG);
-                candidate.addElement(g1);
-                g2=g1; // pretend g2 was found in previous loop
+            g2=graphIndex.find(g1);
+            if(g2==null){
+                addUSG(g1, graphs, graphIndex, USG);
+                g2=g1;
             }
             if(result.indexOf(g2)<0)
                 result.addElement(g2);
@@ -304,6 +295,96 @@ public class FindISG{
         results.put(graph,result);
     }
 
+
+    /**
+     * Like calling getSubs for every graph, but the graphs are handled level
+     * by level, in order of decreasing number of nodes. The graphs of a
+     * level are handled in parallel using the given number of threads,
+     * against graphIndex as it was before the level. The unknown subgraphs
+     * of a level are added as USGs afterwards, in order of certificate, so
+     * the numbering does not depend on the number of threads.
+     */
+    private static void getSubsByLevel(int threads) {
+        ParallelBlocks parallel = new ParallelBlocks(threads);
+        int max = 0;
+        for (int i = 0; i < graphs.size(); i++)
+            max = Math.max(max, n2n(graphs.elementAt(i)));
+
+        for (int cnt = max; cnt >= minCnt; cnt--) {
+            final Vector<Graph> level = new Vector<Graph>();
+            for (int i = 0; i < graphs.size(); i++) {
+                Graph g = (Graph) graphs.elementAt(i);
+                if (g != null  &&  !g.getBottom()  &&  g.countNodes() == cnt)
+                    level.addElement(g);
+            }
+
+            // Subgraphs per graph, either from graphIndex or unknown
+            List<Graph[][]> blocks = parallel.run(level.size(),
+                    new ParallelBlocks.BlockFunction<Graph[][]>() {
+                public Graph[][] execute(int from, int to) {
+                    HashMap<GraphCertificate,Graph> unknown =
+                            new HashMap<GraphCertificate,Graph>();
+                    Graph[][] res = new Graph[to - from][];
+                    for (int i = from; i < to; i++)
+                        res[i - from] = directSubs(level.elementAt(i),
+                                unknown);
+                    return res;
+                }
+            });
+
+            TreeMap<GraphCertificate,Graph> unknown =
+                    new TreeMap<GraphCertificate,Graph>();
+            for (Graph[][] block : blocks)
+                for (Graph[] subs : block)
+                    for (Graph g : subs)
+                        if (graphIndex.find(g) == null  &&
+                                !unknown.containsKey(g.getCertificate()))
+                            unknown.put(g.getCertificate(), g);
+            for (Graph g : unknown.values())
+                if (graphIndex.find(g) == null)
+                    addUSG(g, graphs, graphIndex, USG);
+
+            int i = 0;
+            for (Graph[][] block : blocks)
+                for (Graph[] subs : block) {
+                    Vector result = new Vector();
+                    for (Graph g : subs) {
+                        Graph g2 = graphIndex.find(g);
+                        if (result.indexOf(g2) < 0)
+                            result.addElement(g2);
+                    }
+                    results.put(level.elementAt(i++), result);
+                }
+        }
+    }
+
+
+    /**
+     * Return the graphs obtained by deleting a node from graph, in order of
+     * the deleted node. Every graph is replaced by the isomorphic one in
+     * graphIndex or, failing that, in unknown, to which it is added if
+     * necessary. graphIndex is not changed.
+     */
+    private static Graph[] directSubs(Graph graph,
+            HashMap<GraphCertificate,Graph> unknown) {
+        int cnt = graph.countNodes();
+        Graph[] res = new Graph[cnt];
+        for (int i = 0; i < cnt; i++) {
+            Graph g1 = new Graph(graph);
+            g1.delNode(i);
+            Graph g2 = graphIndex.find(g1);
+            if (g2 == null) {
+                g2 = unknown.get(g1.getCertificate());
+                if (g2 == null) {
+                    unknown.put(g1.getCertificate(), g1);
+                    g2 = g1;
+                }
+            }
+            res[i] = g2;
+        }
+        return res;
+    }
+
     
     /**
      * Reads the graphs from XML format (their names, nodes, edges and aliases
@@ -336,14 +417,13 @@ public class FindISG{
                 System.err.println("Don't know how to handle "+ g.getName());
         }
         
-        for (i=0; i<graphs.size(); i++)
-            for (j=i+1; j<graphs.size(); j++)
-                if (((Graph)graphs.elementAt(i)).
-                        isIsomorphic((Graph)graphs.elementAt(j)))
-                    System.err.println("Mistake!!! "+
-                        ((Graph)graphs.elementAt(i)).getName()+
-                        " isomorphic to "+
-                        ((Graph)graphs.elementAt(j)).getName());
+        for (i=0; i<graphs.size(); i++) {
+            Graph g = (Graph)graphs.elementAt(i);
+            Graph old = graphIndex.add(g);
+            if (old != g)
+                System.err.println("Mistake!!! "+ old.getName()+
+                    " isomorphic to "+ g.getName());
+        }
         
         for (ci = 0; ci < configurations.size(); ci++) {
             Configuration c = (Configuration) configurations.elementAt(ci);
@@ -355,15 +435,15 @@ public class FindISG{
                                + " hat zuviele Repraesentanten!!\n");
                 continue;
             }
-contConf:   for (i=0; i<contained.size(); i++) {
-                for (j=0; j<graphs.size(); j++)
-                    if (((Graph)contained.elementAt(i)).
-                            isIsomorphic((Graph)graphs.elementAt(j))) {
-                        c.addContains((Graph)graphs.elementAt(j));
-                        continue contConf;
-                    }
+            for (i=0; i<contained.size(); i++) {
+                Graph g = graphIndex.find((Graph)contained.elementAt(i));
+                if (g != null) {
+                    c.addContains(g);
+                    continue;
+                }
                 ((Graph)contained.elementAt(i)).addLink(c.getLink());
-                addUSG((Graph)contained.elementAt(i), graphs, ISG);
+                addUSG((Graph)contained.elementAt(i), graphs, graphIndex,
+                        ISG);
                 c.addContains((Graph)contained.elementAt(i));
             }
 //            configurations.addElement(c);
@@ -395,17 +475,17 @@ contConf:   for (i=0; i<contained.size(); i++) {
                     fhmt.initFromGrammar(maxCnt);
                     
                     Vector smMem = fhmt.getSmallmembers();
-contFHMT:           for (j=0; j<smMem.size(); j++)
+                    for (j=0; j<smMem.size(); j++)
                         if (((Graph)smMem.elementAt(j)).countNodes()<=maxCnt) {
-                            for (int k=0; k<graphs.size(); k++)
-                                if (((Graph)smMem.elementAt(j)).isIsomorphic(
-                                        (Graph)graphs.elementAt(k))) {
-                                    smMem.setElementAt(
-                                            (Graph)graphs.elementAt(k), j);
-                                    continue contFHMT;
-                                }
+                            Graph g =
+                                    graphIndex.find((Graph)smMem.elementAt(j));
+                            if (g != null) {
+                                smMem.setElementAt(g, j);
+                                continue;
+                            }
                             ((Graph)smMem.elementAt(j)).addLink(fhmt.getLink());
-                            addUSG((Graph)smMem.elementAt(j), graphs, ISG);
+                            addUSG((Graph)smMem.elementAt(j), graphs,
+                                    graphIndex, ISG);
                         }
                 }
         
@@ -433,7 +513,12 @@ contFHMT:           for (j=0; j<smMem.size(); j++)
             }
     }
     
-    private static void addUSG(Graph g, Vector graphs, String type){
+    /**
+     * Name g and its complement as new graphs of the given type and add them
+     * to graphs and index.
+     */
+    private static void addUSG(Graph g, Vector graphs, GraphIndex index,
+            String type){
         usg++;
         g.addName(type+usg);
         Graph co = (Graph)g.makeComplement();
@@ -441,6 +526,8 @@ contFHMT:           for (j=0; j<smMem.size(); j++)
         co.addName(type+usg);
         graphs.addElement(g);
         graphs.addElement(co);
+        index.add(g);
+        index.add(co);
     }
 
     /** Name of Graph TO Number of nodes */
@@ -499,11 +586,11 @@ contFHMT:           for (j=0; j<smMem.size(); j++)
         GAlg.transitiveReduction(resultGraph);
     }
     
-    public static void addBigSmallmembers() throws
-            IOException, InterruptedException {
+    public static void addBigSmallmembers() {
 
         Vector bigSmallmemb = new Vector();// Contains graphs of size larger
                                            // than maxCnt
+        GraphIndex bigIndex = new GraphIndex();
         for (int i = 0; i < families.size(); i++)
             if (families.elementAt(i) instanceof HMTFamily)
                 if (((HMTFamily)families.elementAt(i)).getGrammar() != null) {
@@ -511,23 +598,17 @@ contFHMT:           for (j=0; j<smMem.size(); j++)
                     HMTFamily fcomp = (HMTFamily)fhmt.getComplement();
                     Vector smMem = fhmt.getSmallmembers();
                     Vector compSmMem = new Vector();
-contBig:            for (int j=0; j<smMem.size(); j++)
+                    for (int j=0; j<smMem.size(); j++)
                         if (((Graph)smMem.elementAt(j)).countNodes() > maxCnt) {
-                            for (int k=0; k<bigSmallmemb.size(); k++)
-                                if (((Graph)smMem.elementAt(j)).countNodes() ==
-                                        ((Graph)bigSmallmemb.elementAt(k)).
-                                        countNodes() &&
-                                        isSubgraphVF((Graph)smMem.elementAt(j),
-                                        (Graph)bigSmallmemb.elementAt(k))) {
-                                    smMem.setElementAt((Graph)bigSmallmemb.
-                                            elementAt(k), j);
-                                    compSmMem.addElement((Graph)
-                                            ((Graph)bigSmallmemb.elementAt(k)).
-                                            getComplement());
-                                    continue contBig;
-                                }
+                            Graph g = bigIndex.find((Graph)smMem.elementAt(j));
+                            if (g != null) {
+                                smMem.setElementAt(g, j);
+                                compSmMem.addElement((Graph)g.getComplement());
+                                continue;
+                            }
                             ((Graph)smMem.elementAt(j)).addLink(fhmt.getLink());
-                            addUSG((Graph)smMem.elementAt(j), bigSmallmemb,ISG);
+                            addUSG((Graph)smMem.elementAt(j), bigSmallmemb,
+                                    bigIndex, ISG);
                             compSmMem.addElement((Graph)((Graph)smMem.
                                     elementAt(j)).getComplement());
 /*                            System.out.println(fhmt.getName()+".smMem["+j+"]="+
@@ -595,11 +676,12 @@ contBig:            for (int j=0; j<smMem.size(); j++)
         
         for (int i=0; i<bigSmallmemb.size(); i++) {
             Graph bigGr = (Graph)bigSmallmemb.elementAt(i);
+            SubgraphMatcher matcher = new SubgraphMatcher(bigGr);
             resultGraph.addVertex(bigGr);
             
             for (Graph v : topo) {
                 if (GAlg.getPath(resultGraph, bigGr, v) == null)
-                    if (isSubgraphVF(bigGr, v))
+                    if (matcher.contains(v))
                         resultGraph.addEdge(bigGr, v);
             }
         }
@@ -609,49 +691,10 @@ contBig:            for (int j=0; j<smMem.size(); j++)
     }
     
     /**
-     * Use VFLib2 to decide whether small is an induced subgraph of large.
+     * Decide whether small is an induced subgraph of large.
      */
-    public static boolean isSubgraphVF(Graph large, Graph small) throws
-            IOException, InterruptedException {
-        int i, j, n;
-
-        Process p = Runtime.getRuntime().exec("vf");
-        BufferedReader in =
-                new BufferedReader(new InputStreamReader(p.getInputStream()));
-        PrintWriter out = new PrintWriter(p.getOutputStream());
-
-        n = small.countNodes();
-        out.println(n);
-        for (i = 0; i < n-1; i++)
-            for (j = i+1; j < n; j++)
-                if (small.getEdge(i,j))
-                    out.println(i +" "+ j);
-        out.println(-1);
-
-        n = large.countNodes();
-        out.println(n);
-        for (i = 0; i < n-1; i++)
-            for (j = i+1; j < n; j++)
-                if (large.getEdge(i,j))
-                    out.println(i +" "+ j);
-        out.println(-1);
-
-        out.close();
-        n = Integer.parseInt(in.readLine());
-        p.waitFor();
-        in.close();
-        p.getErrorStream().close();
-        if (p.exitValue() != 0  ||  n != 0  &&  n != 1) {
-            System.err.println("VFLib Error testing "+ small.getName()
-                +" and "+ large.getName());
-            return false;       // So that we can check more relations
-        }
-        // This is just for debugging
-//        System.out.print(small.getName());
-//        System.out.print(n == 1 ? " << " : " </< ");
-//        System.out.print(large.getName());
-
-        return n == 1;
+    public static boolean isSubgraphVF(Graph large, Graph small) {
+        return SubgraphMatcher.isInducedSubgraph(large, small);
     }
 }
 
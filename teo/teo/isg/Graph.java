@@ -11,17 +11,26 @@
 package teo.isg;
 
 
+/**
+ * A small graph on the nodes 0..countNodes()-1. The adjacency matrix is
+ * stored as bit rows: nodes v and w are adjacent iff bit w%64 of
+ * rows[v][w/64] is set, so a graph of at most 64 nodes uses a single long
+ * per row. Bits of rows and columns beyond the used nodes are always clear.
+ */
 public class Graph extends SmallGraph{
-    private boolean matrix[][];
+    private long rows[][];
     private int cnt;    // number of used nodes
     private int Ecnt;   // number of edges
-    private int size;   // size of matrix and KomponentenVektor
+    private int size;   // size of rows and KomponentenVektor
     private int Komponenten;    // Anzahl von Zusammenhangskomponenten
     private int KomponentenVektor[];
     private boolean Komponenten_isKanonisch;
 
     private boolean is_bottom;
 
+    /** The certificate, or null if not computed since the last change */
+    private GraphCertificate certificate;
+
     /** Creates a new graph without nodes. */
     public Graph(){
         this(0);
@@ -45,23 +54,26 @@ public class Graph extends SmallGraph{
         size=n;
         cnt=n;
         Ecnt = 0;
+        certificate = null;
         Komponenten = n;    /* noch gibt es keine Kanten */
         Komponenten_isKanonisch = false;
         is_bottom = false;
-        matrix=new boolean[size][size];
+        rows=new long[size][words(size)];
         KomponentenVektor = new int[size];
-        int i,j;
-        for(i=0;i<size;i++) {
+        for(int i=0;i<size;i++)
             KomponentenVektor[i] = i;
-            for(j=0;j<size;j++)
-                matrix[i][j]=false;
-        }
+    }
+
+    /** Returns the number of longs needed for a row of n bits. */
+    private static int words(int n) {
+        return (n + 63) >>> 6;
     }
     
     /** Copy the contents of gs into this. */
     private void copyFrom(SmallGraph gs){
         Graph g = (Graph)gs;
 
+        certificate = null;
         if (g.is_bottom) {
             is_bottom = true;
             return;
@@ -72,13 +84,11 @@ public class Graph extends SmallGraph{
         Ecnt=g.Ecnt;
         Komponenten = g.Komponenten;
         Komponenten_isKanonisch = g.Komponenten_isKanonisch;
-        matrix=new boolean[size][size];
+        rows=new long[size][];
         KomponentenVektor = new int[size];
-        int i,j;
-        for(i=0;i<size;i++) {
+        for(int i=0;i<size;i++) {
             KomponentenVektor[i] = g.KomponentenVektor[i];
-            for(j=0;j<size;j++)
-                matrix[i][j]=g.matrix[i][j];
+            rows[i] = g.rows[i].clone();
         }
     }
 
@@ -94,34 +104,35 @@ public class Graph extends SmallGraph{
 
         size = cnt;
 
-        matrix = new boolean[size][size];
+        rows = new long[size][words(size)];
         KomponentenVektor = new int[size];
 
-        int j, k, l;
+        /* Neue Nummern der Knoten in der Maske, auch als Bitmaske */
+        int pos[] = new int[g.cnt];
+        long bits[] = new long[words(g.cnt)];
+        int k = 0;
+        for (i = 0; i < g.cnt; i++)
+            if (mask[i]) {
+                pos[i] = k++;
+                bits[i >>> 6] |= 1L << i;
+            }
 
-        k = -1;
+        Ecnt = 0;
         for (i = 0; i < g.cnt; i++) {
-            if (mask[i])
-                k++;
-            else
+            if (!mask[i])
                 continue;
-
-            l = -1;
-            for (j = 0; j < g.cnt; j++) {
-                if (mask[j])
-                    l++;
-                else
-                    continue;
-
-                matrix[k][l] = g.matrix[i][j];
+            long row[] = rows[pos[i]];
+            for (int w = 0; w < bits.length; w++) {
+                long b = g.rows[i][w] & bits[w];
+                Ecnt += Long.bitCount(b);
+                while (b != 0) {
+                    int j = (w << 6) + Long.numberOfTrailingZeros(b);
+                    row[pos[j] >>> 6] |= 1L << pos[j];
+                    b &= b - 1;
+                }
             }
         }
-
-        Ecnt = 0;
-        for (i = 0; i < cnt - 1; i++)
-            for (j = i + 1; j < cnt; j++)
-                if (matrix[i][j])
-                    Ecnt++;
+        Ecnt /= 2;
 
         updateKomponentenVektor();
     }
@@ -130,11 +141,19 @@ public class Graph extends SmallGraph{
         super.copyFromComplement();
         copyFrom(complement);
 
-        //---- Then complement it.
-        for(int i=0;i<cnt;i++)
-            for(int j=0;j<cnt;j++)
-                if(i!=j) matrix[i][j] = !matrix[i][j];
+        //---- Then complement it, word by word within the used nodes.
+        long used[] = new long[words(size)];
+        for(int w=0;w<cnt>>>6;w++)
+            used[w] = -1L;
+        if((cnt & 63) != 0)
+            used[cnt>>>6] = (1L << cnt) - 1;
+        for(int i=0;i<cnt;i++) {
+            for(int w=0;w<used.length;w++)
+                rows[i][w] = ~rows[i][w] & used[w];
+            rows[i][i>>>6] &= ~(1L << i);
+        }
         Ecnt=(((cnt-1)*cnt)/2) - Ecnt;
+        certificate = null;
         updateKomponentenVektor();
     }
 
@@ -146,6 +165,7 @@ public class Graph extends SmallGraph{
         is_bottom = true;
         cnt = 0;
         Ecnt = 0;
+        certificate = null;
     }
     
     
@@ -162,11 +182,9 @@ public class Graph extends SmallGraph{
     /** Returns the degree of the node at index <tt>v</tt> */
     public int degree(int v){
         if(v<0 || v>=cnt) return -1; // illegal argument
-        int i,n=0;
-        for(i=0;i<cnt;i++){
-            if(matrix[v][i]) n++;
-            // matrix[v][v] is always false
-        }
+        int n=0;
+        for(int w=0;w<rows[v].length;w++)
+            n += Long.bitCount(rows[v][w]);  // bit v of row v is never set
         return n;
     }
 
@@ -175,21 +193,24 @@ public class Graph extends SmallGraph{
     public int degree(int v, boolean mask[]){
         if(v<0 || v>=cnt || ! mask[v]) return -1; // illegal argument
         int i,n=0;
-        for(i=0;i<cnt;i++){
-            if(matrix[v][i] && mask[i]) n++;
-            // matrix[v][v] is always false
+        for(int w=0;w<rows[v].length;w++){
+            long bits=0;
+            for(i=w<<6;i<cnt && i<(w+1)<<6;i++)
+                if(mask[i]) bits |= 1L << i;
+            n += Long.bitCount(rows[v][w] & bits);
         }
         return n;
     }
     
     /** Returns an array with all adjacent nodes of <tt>v</tt>. */
     public int[] adjList(int v){
-        int i,n=degree(v);
+        int n=degree(v);
         if(n<0) return null;
         int list[]=new int[n];
         n=0;
-        for(i=0;i<cnt;i++){
-            if(matrix[v][i]) list[n++]=i;
+        for(int w=0;w<rows[v].length;w++){
+            for(long b=rows[v][w]; b!=0; b&=b-1)
+                list[n++]=(w<<6) + Long.numberOfTrailingZeros(b);
         }
         return list;
     }
@@ -199,10 +220,10 @@ public class Graph extends SmallGraph{
         int i,j;
         if(cnt==size) increment();
         cnt++;
+        certificate = null;
         j = -1; /* größte Zahl im KomponentenVektor in j speichern */
         for(i=0;i<cnt;i++){
-            matrix[i][cnt-1]=false;
-            matrix[cnt-1][i]=false;
+            /* Zeile und Spalte cnt-1 sind schon leer */
             if (KomponentenVektor[i] > j)
                 j = KomponentenVektor[i];
         }
@@ -214,21 +235,17 @@ public class Graph extends SmallGraph{
     /** Increases the size of the matrix by 10. */
     private void increment(){
         size+=10;
-        boolean newMatrix[][]=new boolean[size][size];
+        long newRows[][]=new long[size][words(size)];
         int newKomponentenVektor[]=new int[size];
-        int i,j;
+        int i;
         for(i=0;i<size;i++){
-            if (i<cnt)
+            if (i<cnt) {
                 newKomponentenVektor[i] = KomponentenVektor[i];
-            else
+                System.arraycopy(rows[i], 0, newRows[i], 0, rows[i].length);
+            } else
                 newKomponentenVektor[i] = -1;
-
-            for(j=0;j<size;j++){
-                if(i<cnt && j<cnt) newMatrix[i][j]=matrix[i][j];
-                else newMatrix[i][j]=false;
-            }
         }
-        matrix=newMatrix;
+        rows=newRows;
         KomponentenVektor=newKomponentenVektor;
     }
     
@@ -236,12 +253,13 @@ public class Graph extends SmallGraph{
     public void addEdge(int a,int b){
         if(a==b) return;
         if(a<0 || b<0 || a>=cnt || b>=cnt) return;
-        if (matrix[a][b] || matrix[b][a])
+        if (getEdge(a,b))
             System.err.println("Edge \""+a+" - "+b+
             "\" already exists in graph "+this.getName()+"!");
-        matrix[a][b]=true;
-        matrix[b][a]=true;
+        rows[a][b>>>6] |= 1L << b;
+        rows[b][a>>>6] |= 1L << a;
         Ecnt++;
+        certificate = null;
 
         /* Test, ob die neue Kante zwei Zusammenhangskomponenten verbindet */
         if (KomponentenVektor[a] != KomponentenVektor[b]) {
@@ -261,20 +279,29 @@ public class Graph extends SmallGraph{
     
     /** Removes a node and all its adjacent edges from the graph. */
     public void delNode(int v){
-        int i,j;
+        int i,w;
 
         /* Die Anzahl der Kanten im Graphen aktualisieren */
-        for (i=0;i<cnt;i++)
-            if (matrix[i][v])
-                Ecnt--;
+        Ecnt -= degree(v);
 
-        /* Die Adjazenzmatrix aktualisieren */
+        /* Die Zeile v entfernen und geleert hinten anfügen */
+        long row[] = rows[v];
         for(i=v+1;i<cnt;i++)
-            for(j=0;j<cnt;j++)
-                matrix[i-1][j]=matrix[i][j];
-        for(i=0;i<cnt;i++)
-            for(j=v+1;j<cnt;j++)
-                matrix[i][j-1]=matrix[i][j];
+            rows[i-1]=rows[i];
+        java.util.Arrays.fill(row, 0L);
+        rows[cnt-1]=row;
+
+        /* Die Spalte v entfernen: die Bits ab v+1 eins nach unten */
+        int first = v >>> 6;
+        long low = (1L << v) - 1;   /* die Bits unter v im ersten Wort */
+        for(i=0;i<cnt-1;i++){
+            row = rows[i];
+            row[first] = (row[first] & low) | ((row[first] >>> 1) & ~low);
+            for(w=first;w<row.length-1;w++){
+                row[w] |= row[w+1] << 63;
+                row[w+1] >>>= 1;
+            }
+        }
 
         /* KomponentenVektor verschieben */
         for (i = v + 1; i < cnt; i++)
@@ -282,6 +309,7 @@ public class Graph extends SmallGraph{
 
         /* Anzahl der Knoten aktualisiseren */
         cnt--;
+        certificate = null;
 
         /* KomponentenVektor aktualisieren */
         updateKomponentenVektor();
@@ -289,9 +317,10 @@ public class Graph extends SmallGraph{
     
     /** Removes the edge between the two given nodes. */
     public void delEdge(int a,int b){
-        matrix[a][b]=false;
-        matrix[b][a]=false;
+        rows[a][b>>>6] &= ~(1L << b);
+        rows[b][a>>>6] &= ~(1L << a);
         Ecnt--;
+        certificate = null;
         updateKomponentenVektor();
     }
 
@@ -305,7 +334,7 @@ public class Graph extends SmallGraph{
 
         for (i = 0; i < cnt; i++) {
             for (j = 0; j < cnt; j++) {
-                if (matrix[i][j] && KomponentenVektor[i] !=
+                if (getEdge(i,j) && KomponentenVektor[i] !=
                         KomponentenVektor[j]) {
                     int x, y;
 
@@ -371,9 +400,20 @@ loop:       while (true) {
     }
 
     
+    /**
+     * Returns the certificate of this graph, which is equal to that of
+     * another graph iff the graphs are isomorphic. Not defined for the
+     * bottom graph.
+     */
+    public GraphCertificate getCertificate(){
+        if (certificate == null)
+            certificate = GraphCertificate.of(this);
+        return certificate;
+    }
+
     /** Returns <tt>true</tt> if there is an edge between the given nodes. */
     public boolean getEdge(int a,int b){
-        return matrix[a][b];
+        return (rows[a][b>>>6] & 1L << b) != 0;
     }
     
     /**
@@ -388,7 +428,7 @@ loop:       while (true) {
         s += namesToString() + "\n";
         for(i=0;i<cnt;i++)
             for(j=0;j<i;j++)
-                if(matrix[i][j])
+                if(getEdge(i,j))
                     s+=(j+" - "+i+"\n");
         return s;
     }
@@ -645,7 +685,7 @@ loop:       while (true) {
             if (maskNeu[0][i]) {
                 int s = 0;
                 for (j = 0; j < cnt; j++) {
-                    if (maskAlt[0][j] && matrix[i][j])
+                    if (maskAlt[0][j] && getEdge(i,j))
                         s += degree(j);
                 }
                 SummeGradNachbarn[0][i] = s;
@@ -654,7 +694,7 @@ loop:       while (true) {
             if (maskNeu[1][i]) {
                 int s = 0;
                 for (j = 0; j < cnt; j++) {
-                    if (maskAlt[1][j] && g.matrix[i][j])
+                    if (maskAlt[1][j] && g.getEdge(i,j))
                         s += g.degree(j);
                 }
                 SummeGradNachbarn[1][i] = s;
@@ -724,7 +764,7 @@ loop:       while (true) {
             case 2:
                 for (i = 0; i < cnt; i++)
                     for (j = i + 1; j < cnt; j++)
-                        if (matrix[i][j] == g.matrix[0][1])
+                        if (getEdge(i,j) == g.getEdge(0,1))
                             return true;
                 return false;
 
@@ -733,11 +773,11 @@ loop:       while (true) {
                 if (g.countEdges() == 3) {
                     for (i = 0; i < cnt; i++)
                         for (j = 0; j < cnt; j++) {
-                            if (!matrix[i][j])
+                            if (!getEdge(i,j))
                                 continue;
 
                             for (k = j + 1; k < cnt; k++)
-                                if (matrix[i][k] && matrix[j][k])
+                                if (getEdge(i,k) && getEdge(j,k))
                                     /* K3: i - j  - k - i */
                                     return true;
                         }
@@ -748,11 +788,11 @@ loop:       while (true) {
                 else if (g.countEdges() == 2) {
                     for (i = 0; i < cnt; i++)
                         for (j = 0; j < cnt; j++) {
-                            if (!matrix[i][j])
+                            if (!getEdge(i,j))
                                 continue;
 
                             for (k = j + 1; k < cnt; k++)
-                                if (matrix[i][k] && !matrix[j][k])
+                                if (getEdge(i,k) && !getEdge(j,k))
                                     /* P2: k - i - j */
                                     return true;
                         }
@@ -763,11 +803,11 @@ loop:       while (true) {
                 else if (g.countEdges() == 1) {
                     for (i = 0; i < cnt; i++)
                         for (j = 0; j < cnt; j++) {
-                            if (matrix[i][j])
+                            if (getEdge(i,j))
                                 continue;
 
                             for (k = j + 1; k < cnt; k++)
-                                if (matrix[i][k] && !matrix[j][k])
+                                if (getEdge(i,k) && !getEdge(j,k))
                                     /* co-P2: i - k, j */
                                     return true;
                         }
@@ -778,11 +818,11 @@ loop:       while (true) {
                 else /*if (g.countEdges() == 0) */{
                     for (i = 0; i < cnt; i++)
                         for (j = 0; j < cnt; j++) {
-                            if (matrix[i][j])
+                            if (getEdge(i,j))
                                 continue;
 
                             for (k = j + 1; k < cnt; k++)
-                                if (!matrix[i][k] && !matrix[j][k])
+                                if (!getEdge(i,k) && !getEdge(j,k))
                                     /* co-K3: i, j, k */
                                     return true;
                         }
@@ -825,7 +865,7 @@ loop:       while (true) {
         int i,j;
         for(i=0;i<cnt;i++)
             for(j=i+1;j<cnt;j++)
-                if(matrix[i][j] != g.matrix[perm[i]][perm[j]])
+                if(getEdge(i,j) != g.getEdge(perm[i],perm[j]))
                     return false;
         return true;
     }
@@ -883,7 +923,7 @@ loop:       while (true) {
             grad[pos] = 0;
 
             for (int i = 0; i < cnt; i++)
-                if (matrix[i][pos])
+                if (getEdge(i,pos))
                     grad[i]--;
 
         }
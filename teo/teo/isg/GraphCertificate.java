@@ -0,0 +1,411 @@
+/*
+ * Canonical form of a graph.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The certificate of a graph: a code such that two graphs are isomorphic iff
+ * their certificates are equal, so certificates can be used as hash keys for
+ * graphs.
+ * <p>
+ * A disconnected graph is coded by the sorted codes of its components, and
+ * a join (a graph whose complement is disconnected) by the sorted codes of
+ * its parts: the subgraphs induced by the components of its complement.
+ * The parts are coded like any other graph; they are not complemented.
+ * The code of a graph that is neither is its adjacency matrix under a
+ * canonical numbering of the nodes.
+ * <p>
+ * The canonical numbering is found by partition refinement: the nodes are
+ * divided into cells that are split by the number of neighbours in other
+ * cells until the partition is equitable. If a cell with more than one node
+ * remains, each of its nodes in turn is put in a cell of its own and the
+ * search continues. Every resulting numbering gives an adjacency bitstring,
+ * and the largest one is used. Nodes with the same neighbours
+ * (twins) lead to the same bitstrings, so only one of them is tried.
+ */
+public final class GraphCertificate
+        implements Comparable<GraphCertificate> {
+
+    /** Tags in the code */
+    private static final long PRIME = 0, UNION = 1, JOIN = 2;
+
+    /** The code */
+    private final long[] code;
+    private final int hash;
+
+
+    private GraphCertificate(long[] code) {
+        this.code = code;
+        hash = Arrays.hashCode(code);
+    }
+
+
+    /**
+     * Return the certificate of g, which must not be the bottom graph.
+     */
+    public static GraphCertificate of(Graph g) {
+        if (g.getBottom())
+            throw new IllegalArgumentException(
+                    "The bottom graph has no certificate");
+        int n = g.countNodes();
+        boolean[][] adj = new boolean[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                adj[i][j] = i != j  &&  g.getEdge(i, j);
+        return new GraphCertificate(code(adj));
+    }
+
+
+    /**
+     * Return the code of the graph with adjacency matrix adj.
+     * A prime graph is coded as PRIME, n, bitstring; a union or join of k
+     * parts as UNION or JOIN, n, k, followed by the sorted codes of the
+     * parts.
+     */
+    private static long[] code(boolean[][] adj) {
+        int n = adj.length;
+        List<int[]> parts = components(adj, false);
+        long tag = UNION;
+        if (parts.size() == 1) {
+            parts = components(adj, true);
+            tag = JOIN;
+        }
+        if (parts.size() == 1  ||  n <= 1) {
+            long[] bits = new Search(adj).run();
+            long[] res = new long[bits.length + 2];
+            res[0] = PRIME;
+            res[1] = n;
+            System.arraycopy(bits, 0, res, 2, bits.length);
+            return res;
+        }
+
+        List<long[]> codes = new ArrayList<long[]>();
+        int length = 3;
+        for (int[] part : parts) {
+            long[] c = code(induced(adj, part));
+            codes.add(c);
+            length += c.length;
+        }
+        Collections.sort(codes, new Comparator<long[]>() {
+            public int compare(long[] a, long[] b) {
+                return compareCodes(a, b);
+            }
+        });
+
+        long[] res = new long[length];
+        res[0] = tag;
+        res[1] = n;
+        res[2] = codes.size();
+        int i = 3;
+        for (long[] c : codes) {
+            System.arraycopy(c, 0, res, i, c.length);
+            i += c.length;
+        }
+        return res;
+    }
+
+
+    /**
+     * Return the node sets of the components of the graph with adjacency
+     * matrix adj, or of its complement if co is set.
+     */
+    private static List<int[]> components(boolean[][] adj, boolean co) {
+        int n = adj.length;
+        int[] comp = new int[n];
+        int[] stack = new int[n];
+        Arrays.fill(comp, -1);
+        List<int[]> res = new ArrayList<int[]>();
+
+        for (int v = 0; v < n; v++) {
+            if (comp[v] >= 0)
+                continue;
+            int id = res.size(), top = 0, size = 0;
+            comp[v] = id;
+            stack[top++] = v;
+            while (top > 0) {
+                int x = stack[--top];
+                size++;
+                for (int y = 0; y < n; y++)
+                    if (y != x  &&  comp[y] < 0  &&  adj[x][y] != co) {
+                        comp[y] = id;
+                        stack[top++] = y;
+                    }
+            }
+            int[] part = new int[size];
+            for (int x = 0, k = 0; x < n; x++)
+                if (comp[x] == id)
+                    part[k++] = x;
+            res.add(part);
+        }
+        return res;
+    }
+
+
+    /**
+     * Return the adjacency matrix of the subgraph of adj induced by nodes.
+     */
+    private static boolean[][] induced(boolean[][] adj, int[] nodes) {
+        boolean[][] res = new boolean[nodes.length][nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+            for (int j = 0; j < nodes.length; j++)
+                res[i][j] = adj[nodes[i]][nodes[j]];
+        return res;
+    }
+
+
+    /**
+     * Compare two codes lexicographically.
+     */
+    private static int compareCodes(long[] a, long[] b) {
+        for (int i = 0; i < a.length  &&  i < b.length; i++)
+            if (a[i] != b[i])
+                return a[i] < b[i] ? -1 : 1;
+        return a.length - b.length;
+    }
+
+
+    /**
+     * Order certificates by their codes. The order is arbitrary, but the
+     * same in every run.
+     */
+    public int compareTo(GraphCertificate c) {
+        return compareCodes(code, c.code);
+    }
+
+
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof GraphCertificate))
+            return false;
+        GraphCertificate c = (GraphCertificate) o;
+        return hash == c.hash  &&  Arrays.equals(code, c.code);
+    }
+
+
+    public int hashCode() {
+        return hash;
+    }
+
+
+    /**
+     * The search for the largest adjacency bitstring of a graph.
+     */
+    private static class Search {
+        private final int n;
+        /** The adjacency matrix as bit rows: v ~ w iff bit w%64 of
+         * rows[v][w/64] is set */
+        private final long[][] rows;
+        /** The largest bitstring so far, or null */
+        private long[] best;
+
+        Search(boolean[][] adj) {
+            n = adj.length;
+            rows = new long[n][(n + 63) >>> 6];
+            for (int v = 0; v < n; v++)
+                for (int w = 0; w < n; w++)
+                    if (adj[v][w])
+                        rows[v][w >>> 6] |= 1L << w;
+        }
+
+
+        /**
+         * Return the largest bitstring.
+         */
+        long[] run() {
+            List<int[]> cells = new ArrayList<int[]>();
+            if (n > 0) {
+                int[] all = new int[n];
+                for (int i = 0; i < n; i++)
+                    all[i] = i;
+                cells.add(all);
+            }
+            search(cells);
+            return best;
+        }
+
+
+        /**
+         * Refine cells and find the best bitstring among its numberings.
+         */
+        private void search(List<int[]> cells) {
+            refine(cells);
+
+            int c = 0;
+            while (c < cells.size()  &&  cells.get(c).length == 1)
+                c++;
+            if (c == cells.size()) {
+                leaf(cells);
+                return;
+            }
+
+            int[] cell = cells.get(c);
+            for (int i = 0; i < cell.length; i++) {
+                if (hasTwinBefore(cell, i))
+                    continue;
+                int[] rest = new int[cell.length - 1];
+                for (int j = 0, k = 0; j < cell.length; j++)
+                    if (j != i)
+                        rest[k++] = cell[j];
+
+                List<int[]> next = new ArrayList<int[]>(cells.size() + 1);
+                next.addAll(cells.subList(0, c));
+                next.add(new int[] { cell[i] });
+                next.add(rest);
+                next.addAll(cells.subList(c+1, cells.size()));
+                search(next);
+            }
+        }
+
+
+        /**
+         * Return true iff cell[i] is a twin of an earlier node in cell.
+         */
+        private boolean hasTwinBefore(int[] cell, int i) {
+            for (int j = 0; j < i; j++)
+                if (twins(cell[i], cell[j]))
+                    return true;
+            return false;
+        }
+
+
+        /**
+         * Return true iff u and v have the same neighbours, apart from each
+         * other.
+         */
+        private boolean twins(int u, int v) {
+            for (int k = 0; k < rows[u].length; k++) {
+                long diff = rows[u][k] ^ rows[v][k];
+                if (u >>> 6 == k)
+                    diff &= ~(1L << u);
+                if (v >>> 6 == k)
+                    diff &= ~(1L << v);
+                if (diff != 0)
+                    return false;
+            }
+            return true;
+        }
+
+
+        /**
+         * Split the cells by the number of neighbours in other cells, until
+         * all nodes of a cell have the same number of neighbours in every
+         * cell.
+         */
+        private void refine(List<int[]> cells) {
+            int[] count = new int[n];
+            long[] splitter = new long[(n + 63) >>> 6];
+            boolean changed;
+
+            do {
+                changed = false;
+                for (int s = 0; s < cells.size(); s++) {
+                    Arrays.fill(splitter, 0L);
+                    for (int w : cells.get(s))
+                        splitter[w >>> 6] |= 1L << w;
+
+                    for (int c = 0; c < cells.size(); c++) {
+                        int[] cell = cells.get(c);
+                        if (cell.length == 1)
+                            continue;
+                        boolean differ = false;
+                        for (int v : cell) {
+                            count[v] = 0;
+                            for (int k = 0; k < splitter.length; k++)
+                                count[v] += Long.bitCount(
+                                        rows[v][k] & splitter[k]);
+                            if (count[v] != count[cell[0]])
+                                differ = true;
+                        }
+                        if (differ) {
+                            List<int[]> parts = split(cell, count);
+                            cells.remove(c);
+                            cells.addAll(c, parts);
+                            c += parts.size() - 1;
+                            changed = true;
+                        }
+                    }
+                }
+            } while (changed);
+        }
+
+
+        /**
+         * Return the cells into which cell splits by count, in ascending
+         * order of count.
+         */
+        private static List<int[]> split(int[] cell, int[] count) {
+            int[] sorted = cell.clone();
+            // Insertion sort on count, stable so the result is determined
+            for (int i = 1; i < sorted.length; i++) {
+                int v = sorted[i];
+                int j = i - 1;
+                while (j >= 0  &&  count[sorted[j]] > count[v]) {
+                    sorted[j+1] = sorted[j];
+                    j--;
+                }
+                sorted[j+1] = v;
+            }
+
+            List<int[]> res = new ArrayList<int[]>();
+            int from = 0;
+            for (int i = 1; i <= sorted.length; i++) {
+                if (i == sorted.length  ||
+                        count[sorted[i]] != count[sorted[from]]) {
+                    res.add(Arrays.copyOfRange(sorted, from, i));
+                    from = i;
+                }
+            }
+            return res;
+        }
+
+
+        /**
+         * Compare the bitstring of the numbering given by the singleton
+         * cells with the best one so far.
+         */
+        private void leaf(List<int[]> cells) {
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++)
+                order[i] = cells.get(i)[0];
+
+            long[] bits = new long[(n*(n-1)/2 + 63) / 64];
+            int b = 0;
+            for (int i = 0; i < n; i++)
+                for (int j = i+1; j < n; j++, b++)
+                    if ((rows[order[i]][order[j] >>> 6] & 1L << order[j]) != 0)
+                        bits[b >>> 6] |= 1L << (63 - (b & 63));
+
+            if (best == null  ||  compare(bits, best) > 0)
+                best = bits;
+        }
+
+
+        /**
+         * Compare two bitstrings of the same length as unsigned numbers.
+         */
+        private static int compare(long[] a, long[] b) {
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] != b[i])
+                    return (a[i] ^ Long.MIN_VALUE) < (b[i] ^ Long.MIN_VALUE) ?
+                            -1 : 1;
+            }
+            return 0;
+        }
+    }
+}
+
+/* EOF */
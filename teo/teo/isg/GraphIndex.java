@@ -0,0 +1,70 @@
+/*
+ * Index of graphs by certificate.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isg;
+
+import java.util.HashMap;
+
+/**
+ * A set of graphs, one per isomorphism class, in which an isomorphic copy
+ * of a graph is found by a hash lookup on its certificate.
+ * <p>
+ * Lookups can be done from several threads at once, as long as no graphs
+ * are added meanwhile.
+ */
+public class GraphIndex {
+
+    private HashMap<GraphCertificate,Graph> graphs;
+
+
+    /**
+     * Create a new, empty index.
+     */
+    public GraphIndex() {
+        graphs = new HashMap<GraphCertificate,Graph>();
+    }
+
+
+    /**
+     * Return the graph in this index that is isomorphic to g, or null if
+     * there is none.
+     */
+    public Graph find(Graph g) {
+        if (g.getBottom())
+            return null;
+        return graphs.get(g.getCertificate());
+    }
+
+
+    /**
+     * Add g, unless it is the bottom graph or an isomorphic graph was added
+     * before. Return the graph in the index that is isomorphic to g.
+     */
+    public Graph add(Graph g) {
+        if (g.getBottom())
+            return g;
+        GraphCertificate c = g.getCertificate();
+        Graph old = graphs.get(c);
+        if (old != null)
+            return old;
+        graphs.put(c, g);
+        return g;
+    }
+
+
+    /**
+     * Return the number of graphs in the index.
+     */
+    public int size() {
+        return graphs.size();
+    }
+}
+
+/* EOF */
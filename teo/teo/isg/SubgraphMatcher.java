@@ -0,0 +1,260 @@
+/*
+ * Induced subgraph isomorphism test.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isg;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether graphs are induced subgraphs of a fixed large graph, by a
+ * VF2-style backtracking search. The nodes of the small graph are matched
+ * one at a time, in an order in which every node is adjacent to as many
+ * earlier nodes as possible. A node that has a matched neighbour is only
+ * tried on the neighbours of its image. A candidate must have at least the
+ * degree of the node and must agree on adjacency with all earlier matched
+ * pairs. The unmatched neighbours and non-neighbours of the node must not
+ * outnumber those of the candidate. Before searching, the edge counts and
+ * degree sequences of both graphs are compared.
+ * <p>
+ * The large graph is prepared once, so a matcher can be reused for testing
+ * many small graphs against it.
+ */
+public class SubgraphMatcher {
+
+    /** Adjacency and degrees of the large graph */
+    private final boolean[][] adj;
+    private final int[] deg;
+    /** Degrees of the large graph in descending order */
+    private final int[] sortedDeg;
+    private final int edges;
+
+
+    /**
+     * Create a matcher for induced subgraphs of large.
+     */
+    public SubgraphMatcher(Graph large) {
+        adj = adjacency(large);
+        deg = degrees(adj);
+        sortedDeg = descending(deg);
+        edges = large.countEdges();
+    }
+
+
+    /**
+     * Return true iff small is an induced subgraph of large.
+     */
+    public static boolean isInducedSubgraph(Graph large, Graph small) {
+        return new SubgraphMatcher(large).contains(small);
+    }
+
+
+    /**
+     * Return true iff small is an induced subgraph of the large graph of
+     * this matcher.
+     */
+    public boolean contains(Graph small) {
+        int n = small.countNodes();
+        int m = adj.length;
+
+        if (n > m)
+            return false;
+        if (n == 0)
+            return true;
+
+        //---- Global pruning on edges, non-edges and degrees
+        int sedges = small.countEdges();
+        if (sedges > edges  ||
+                n*(n-1)/2 - sedges > m*(m-1)/2 - edges)
+            return false;
+
+        boolean[][] sadj = adjacency(small);
+        int[] sdeg = degrees(sadj);
+        int[] ssorted = descending(sdeg);
+        for (int i = 0; i < n; i++)
+            if (ssorted[i] > sortedDeg[i])
+                return false;
+
+        return new Search(sadj, sdeg).match(0);
+    }
+
+
+    /**
+     * The state of a single search.
+     */
+    private class Search {
+        /** The small graph */
+        private final boolean[][] sadj;
+        private final int[] sdeg;
+        /** The nodes of the small graph in matching order */
+        private final int[] order;
+        /** For every position in order, an earlier position of a neighbour
+         * or -1 */
+        private final int[] parent;
+        /** Images of the small nodes, -1 if not matched */
+        private final int[] core1;
+        /** Preimages of the large nodes, -1 if not matched */
+        private final int[] core2;
+
+        Search(boolean[][] sadj, int[] sdeg) {
+            int n = sadj.length;
+            this.sadj = sadj;
+            this.sdeg = sdeg;
+            order = new int[n];
+            parent = new int[n];
+            core1 = new int[n];
+            core2 = new int[adj.length];
+            Arrays.fill(core1, -1);
+            Arrays.fill(core2, -1);
+            makeOrder();
+        }
+
+
+        /**
+         * Fill order with the small nodes, next taking the node with the
+         * most earlier neighbours, breaking ties by degree.
+         */
+        private void makeOrder() {
+            int n = sadj.length;
+            boolean[] used = new boolean[n];
+            int[] conn = new int[n];
+
+            for (int k = 0; k < n; k++) {
+                int best = -1;
+                for (int v = 0; v < n; v++) {
+                    if (used[v])
+                        continue;
+                    if (best < 0  ||  conn[v] > conn[best]  ||
+                            conn[v] == conn[best]  &&  sdeg[v] > sdeg[best])
+                        best = v;
+                }
+                used[best] = true;
+                order[k] = best;
+                parent[k] = -1;
+                for (int i = 0; i < k; i++)
+                    if (sadj[best][order[i]]) {
+                        parent[k] = i;
+                        break;
+                    }
+                for (int v = 0; v < n; v++)
+                    if (sadj[best][v])
+                        conn[v]++;
+            }
+        }
+
+
+        /**
+         * Extend the matching of the first k nodes of order to a complete
+         * one and return true iff this succeeds.
+         */
+        boolean match(int k) {
+            if (k == order.length)
+                return true;
+
+            int v = order[k];
+            if (parent[k] >= 0) {
+                boolean[] row = adj[core1[order[parent[k]]]];
+                for (int w = 0; w < adj.length; w++)
+                    if (row[w]  &&  tryPair(k, v, w))
+                        return true;
+            } else {
+                for (int w = 0; w < adj.length; w++)
+                    if (tryPair(k, v, w))
+                        return true;
+            }
+            return false;
+        }
+
+
+        /**
+         * Try matching v, at position k in order, to w and return true iff
+         * the matching can be completed.
+         */
+        private boolean tryPair(int k, int v, int w) {
+            if (core2[w] >= 0  ||  deg[w] < sdeg[v]  ||  !feasible(k, v, w))
+                return false;
+            core1[v] = w;
+            core2[w] = v;
+            if (match(k+1))
+                return true;
+            core1[v] = -1;
+            core2[w] = -1;
+            return false;
+        }
+
+
+        /**
+         * Return true iff v and w agree on adjacency with the first k matched
+         * pairs, and w has at least as many unmatched neighbours and
+         * non-neighbours as v.
+         */
+        private boolean feasible(int k, int v, int w) {
+            int vNeighbours = sdeg[v], wNeighbours = deg[w];
+            for (int i = 0; i < k; i++) {
+                int x = order[i];
+                boolean e = sadj[v][x];
+                if (e != adj[w][core1[x]])
+                    return false;
+                if (e) {
+                    vNeighbours--;
+                    wNeighbours--;
+                }
+            }
+            if (vNeighbours > wNeighbours)
+                return false;
+
+            int vOthers = (sadj.length - 1 - k) - vNeighbours;
+            int wOthers = (adj.length - 1 - k) - wNeighbours;
+            return vOthers <= wOthers;
+        }
+    }
+
+
+    /**
+     * Return the adjacency matrix of g.
+     */
+    private static boolean[][] adjacency(Graph g) {
+        int n = g.countNodes();
+        boolean[][] res = new boolean[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                res[i][j] = i != j  &&  g.getEdge(i, j);
+        return res;
+    }
+
+
+    /**
+     * Return the degrees of the nodes of the given adjacency matrix.
+     */
+    private static int[] degrees(boolean[][] a) {
+        int[] res = new int[a.length];
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < a.length; j++)
+                if (a[i][j])
+                    res[i]++;
+        return res;
+    }
+
+
+    /**
+     * Return a copy of d sorted in descending order.
+     */
+    private static int[] descending(int[] d) {
+        int[] res = d.clone();
+        Arrays.sort(res);
+        for (int i = 0, j = res.length-1; i < j; i++, j--) {
+            int t = res[i];
+            res[i] = res[j];
+            res[j] = t;
+        }
+        return res;
+    }
+}
+
+/* EOF */
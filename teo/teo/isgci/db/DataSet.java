@@ -59,6 +59,9 @@ public final class DataSet {
                 Inclusion.class);
         problems = new Vector<Problem>();
         load(loader, file, inclGraph, problems);
+        VertexIndex<GraphClass> index = VertexIndex.freeze(inclGraph);
+        for (Problem p : problems)
+            p.indexNodes(index);
 
         // Gather the classnames
         names = new TreeMap<String,GraphClass>(new LessLatex());
@@ -20,12 +20,18 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleDirectedGraph;
@@ -40,6 +46,7 @@ import teo.isg.SimpleFamily;
 import teo.isg.SmallGraph;
 import teo.isg.UnionFamily;
 import teo.isgci.grapht.GAlg;
+import teo.isgci.util.BitRow;
 import teo.isgci.util.LessLatex;
 import teo.isgci.util.Pair;
 import teo.isgci.xml.SmallGraphReader;
@@ -54,6 +61,18 @@ public class ForbiddenClass extends GraphClass {
     Set<String> isgSet;
     /** Score for how "good" the forbidden set is */
     int theNiceness;
+    /** Interned id of isgSet for the forbids cache, -1 if not known yet */
+    private int setId;
+    /** The smallgraph ids of isgSet, sorted, or null if the rules are not
+     * initialized */
+    private int[] graphs;
+    /** The smallgraph ids of isgSet in the iteration order of a HashSet copy
+     * of isgSet */
+    private int[] graphOrder;
+    /** The graphById that the ids refer to */
+    private SmallGraph[] graphsFrom;
+    /** isgSet.hashCode() */
+    private int setHash;
 
 
     /**
@@ -61,12 +80,24 @@ public class ForbiddenClass extends GraphClass {
      * given set.
      */
     public ForbiddenClass(Collection<String> set){
+        this(set, false);
+    }
+
+
+    /**
+     * Creates a new graph class based on the GraphClasses in the
+     * given set. If minimal is true, set must not contain graphs that are
+     * forbidden by the others already, like the set of another
+     * ForbiddenClass, and the graphs keep the order of set.
+     */
+    public ForbiddenClass(Collection<String> set, boolean minimal){
         super();
         if (set==null || set.isEmpty())
             throw new IllegalArgumentException("missing graphs");
 
         if (isgGraph != null) {
-            Set<String> setnorm = new HashSet<String>();
+            Set<String> setnorm = minimal ? new LinkedHashSet<String>() :
+                    new HashSet<String>();
 
             for (String gc : set) {
                 SmallGraph gr = names.get(gc);
@@ -76,7 +107,7 @@ public class ForbiddenClass extends GraphClass {
                 setnorm.add(gr.getName());
             }
 
-            isgSet = cancel(setnorm);
+            isgSet = minimal ? setnorm : cancel(setnorm);
         } else {
             isgSet = new ArrayUnenforcedSet<String>(set);
         }
@@ -84,6 +115,37 @@ public class ForbiddenClass extends GraphClass {
         isgSet = java.util.Collections.unmodifiableSet(isgSet);
         hereditariness = Hered.INDUCED;
         theNiceness = Integer.MIN_VALUE;
+        setId = -1;
+        setHash = isgSet.hashCode();
+        if (isgGraph != null)
+            setGraphIds();
+    }
+
+
+    /**
+     * Set graphs and graphOrder from isgSet.
+     */
+    private void setGraphIds() {
+        int[] ids = new int[isgSet.size()];
+        int i = 0;
+        for (String s : new HashSet<String>(isgSet)) {
+            Integer id = graphIds.get(names.get(s));
+            if (id == null)
+                return;
+            ids[i++] = id;
+        }
+        graphOrder = ids;
+        graphs = ids.clone();
+        Arrays.sort(graphs);
+        graphsFrom = graphById;
+    }
+
+
+    /**
+     * Return true iff graphs refers to the current smallgraph ids.
+     */
+    private boolean hasGraphIds() {
+        return graphs != null  &&  graphsFrom == graphById;
     }
 
 
@@ -129,14 +191,18 @@ public class ForbiddenClass extends GraphClass {
             return true;
         if(obj instanceof ForbiddenClass){
             ForbiddenClass fc = (ForbiddenClass)obj;
-            return hashCode() == fc.hashCode()  &&  isgSet.equals(fc.isgSet);
+            if (hashCode() != fc.hashCode())
+                return false;
+            if (hasGraphIds()  &&  fc.hasGraphIds())
+                return Arrays.equals(graphs, fc.graphs);
+            return isgSet.equals(fc.isgSet);
         }
         return false;
     }
 
 
     public int calcHash() {
-        return isgSet.hashCode();
+        return setHash;
     }
    
 
@@ -231,17 +297,25 @@ public class ForbiddenClass extends GraphClass {
     private boolean subClassOf(GraphClass gc, List<SmallGraph> witnesses) {
         if (super.subClassOf(gc))
             return true;
+        if (gc instanceof ForbiddenClass  &&  hasGraphIds()  &&
+                ((ForbiddenClass) gc).hasGraphIds()) {
+            // The graphs of gc that this doesn't forbid by definition, in
+            // the order of a HashSet copy of gc.isgSet, as it determines
+            // which witnesses are found
+            for (int g : ((ForbiddenClass) gc).graphOrder) {
+                if (Arrays.binarySearch(graphs, g) < 0  &&
+                        !forbids(graphById[g], witnesses))
+                    return false;
+            }
+            return true;
+        }
         if (gc instanceof ForbiddenClass) {
             HashSet<String> superLeft = new HashSet<String>(
                     ((ForbiddenClass)gc).isgSet);
             superLeft.removeAll(isgSet);
 
-            Set<SmallGraph> subSetVec = new ArrayUnenforcedSet<SmallGraph>();
-            for (String s : isgSet)
-                subSetVec.add(names.get(s));
-            
             for (String g : superLeft) {
-                if (!forbids(subSetVec, names.get(g), witnesses))
+                if (!forbids(names.get(g), witnesses))
                     return false;
             }
             return true;
@@ -251,6 +325,52 @@ public class ForbiddenClass extends GraphClass {
     }
 
 
+    /**
+     * Return the names in candidates of the smallgraphs that are forbidden
+     * in this class. For a ForbiddenClass gc, this.subClassOf(gc) holds iff
+     * every name in gc.getSet() is returned.
+     */
+    public Set<String> forbiddenAmong(Collection<String> candidates) {
+        Set<String> result = new HashSet<String>();
+        for (String g : candidates) {
+            if (isgSet.contains(g)  ||
+                    forbids(names.get(g), new ArrayList<SmallGraph>()))
+                result.add(g);
+        }
+        return result;
+    }
+
+
+    /**
+     * Does this class forbid target? Like the static forbids on the
+     * smallgraphs of this class, but the results are cached. Witnesses are
+     * added to witnesses exactly as the static forbids would add them.
+     */
+    private boolean forbids(SmallGraph target, List<SmallGraph> witnesses) {
+        if (setId < 0)
+            setId = internSet(isgSet);
+        ForbidsKey key = new ForbidsKey(setId, target);
+        ForbidsResult res = forbidsCache.get(key);
+
+        if (res != null) {
+            forbidsHits.incrementAndGet();
+        } else {
+            forbidsMisses.incrementAndGet();
+            Set<SmallGraph> subSetVec = new ArrayUnenforcedSet<SmallGraph>();
+            for (String s : isgSet)
+                subSetVec.add(names.get(s));
+            List<SmallGraph> wits = new ArrayList<SmallGraph>();
+            res = ForbidsResult.create(forbids(subSetVec, target, wits),
+                    wits);
+            if (forbidsCache.size() < FORBIDSCACHEMAX)
+                forbidsCache.putIfAbsent(key, res);
+        }
+
+        witnesses.addAll(res.witnesses);
+        return res.forbidden;
+    }
+
+
     /** Return a reference string describing why subClassOf returned true. */
     public String whySubClassOf() {
         return "forbidden";
@@ -327,6 +447,149 @@ public class ForbiddenClass extends GraphClass {
     static SimpleDirectedGraph<SmallGraph,DefaultEdge> isgGraph;
     static HashMap<String,SmallGraph> names;  // Maps name/alias to SmallGraph
 
+    /*
+     * The smallgraphs are numbered 0..n-1 by initRules and the forbids
+     * evaluation works on these ids only.
+     */
+    private static final int KIND_OTHER = 0;
+    private static final int KIND_CONFIGURATION = 1;
+    private static final int KIND_GRAPH = 2;
+    private static final int KIND_FAMILY = 3;
+    private static final int KIND_SIMPLEFAMILY = 4;
+    private static final int KIND_UNIONFAMILY = 5;
+    private static final int KIND_HMTFAMILY = 6;
+    /** Maps a smallgraph to its id */
+    private static IdentityHashMap<SmallGraph,Integer> graphIds;
+    /** Maps an id to its smallgraph */
+    private static SmallGraph[] graphById;
+    /** The KIND_ of every smallgraph */
+    private static int[] graphKind;
+    /** implied[t] contains t and all n with t->n in isgGraph: forbidding any
+     * of them forbids t */
+    private static long[][] implied;
+    /** The contains of a configuration or simple family, the subfamilies of
+     * a union family, the smallmembers of an HMT family. May be null. */
+    private static int[][] contains;
+    /** The induced alternatives of a family. May be null. */
+    private static int[][][] induced;
+    /** The induced rest alternatives of a simple family. May be null. */
+    private static int[][][] inducedRest;
+
+    /** Maximum number of entries in forbidsCache */
+    private static final int FORBIDSCACHEMAX = 4*1024*1024;
+    /** Interned ids of forbidden sets */
+    private static final ConcurrentHashMap<Set<String>,Integer> setIds =
+            new ConcurrentHashMap<Set<String>,Integer>();
+    private static final AtomicInteger nextSetId = new AtomicInteger();
+    /** Results of forbids(set, target) for ForbiddenClasses */
+    private static final ConcurrentHashMap<ForbidsKey,ForbidsResult>
+            forbidsCache = new ConcurrentHashMap<ForbidsKey,ForbidsResult>();
+    private static final AtomicLong forbidsHits = new AtomicLong();
+    private static final AtomicLong forbidsMisses = new AtomicLong();
+
+
+    /**
+     * Key of forbidsCache.
+     */
+    private static final class ForbidsKey {
+        final int setId;
+        final SmallGraph target;
+
+        ForbidsKey(int setId, SmallGraph target) {
+            this.setId = setId;
+            this.target = target;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof ForbidsKey))
+                return false;
+            ForbidsKey k = (ForbidsKey) o;
+            return setId == k.setId  &&  target == k.target;
+        }
+
+        public int hashCode() {
+            return setId * 31 + System.identityHashCode(target);
+        }
+    }
+
+
+    /**
+     * Value of forbidsCache: The result of forbids and the witnesses it
+     * added. Results without witnesses are shared.
+     */
+    private static final class ForbidsResult {
+        static final ForbidsResult TRUE =
+                new ForbidsResult(true, Collections.<SmallGraph>emptyList());
+        static final ForbidsResult FALSE =
+                new ForbidsResult(false, Collections.<SmallGraph>emptyList());
+
+        final boolean forbidden;
+        final List<SmallGraph> witnesses;
+
+        private ForbidsResult(boolean forbidden, List<SmallGraph> witnesses) {
+            this.forbidden = forbidden;
+            this.witnesses = witnesses;
+        }
+
+        static ForbidsResult create(boolean forbidden,
+                List<SmallGraph> witnesses) {
+            if (witnesses.isEmpty())
+                return forbidden ? TRUE : FALSE;
+            return new ForbidsResult(forbidden,
+                    Collections.unmodifiableList(witnesses));
+        }
+    }
+
+
+    /**
+     * Return the interned id of the given forbidden set.
+     */
+    private static int internSet(Set<String> set) {
+        Integer id = setIds.get(set);
+        if (id == null) {
+            Integer newId = nextSetId.getAndIncrement();
+            id = setIds.putIfAbsent(set, newId);
+            if (id == null)
+                id = newId;
+        }
+        return id;
+    }
+
+
+    /**
+     * Return the number of forbids results that were found in the cache.
+     */
+    public static long getForbidsCacheHits() {
+        return forbidsHits.get();
+    }
+
+
+    /**
+     * Return the number of forbids results that had to be calculated.
+     */
+    public static long getForbidsCacheMisses() {
+        return forbidsMisses.get();
+    }
+
+
+    /**
+     * Return the number of cached forbids results.
+     */
+    public static int getForbidsCacheSize() {
+        return forbidsCache.size();
+    }
+
+
+    /**
+     * Forget all cached forbids results and interned sets. Ids are never
+     * reused, so classes that interned their set before keep a valid id;
+     * their results are simply calculated again.
+     */
+    public static void clearForbidsCache() {
+        forbidsCache.clear();
+        setIds.clear();
+    }
+
     
     /**
      * Initialize the rule system for deriving relations between
@@ -337,6 +600,7 @@ public class ForbiddenClass extends GraphClass {
     public static void initRules(teo.Loader loader, String xmlfile) {
 
         SmallGraphReader handler = new SmallGraphReader();
+        forbidsCache.clear();
 
         try{
             XMLParser xr = null;
@@ -427,11 +691,140 @@ public class ForbiddenClass extends GraphClass {
         
         //System.out.println(isgGraph);
         GAlg.transitiveClosure(isgGraph);
+        indexGraphs(readGraphs);
 
         //System.out.println(isgGraph);
     }
 
 
+    /**
+     * Number the smallgraphs in graphs and all smallgraphs they refer to, and
+     * convert isgGraph and the families/configurations to the id arrays used
+     * by forbids.
+     */
+    private static void indexGraphs(Collection<SmallGraph> graphs) {
+        ArrayList<SmallGraph> all = new ArrayList<SmallGraph>();
+        graphIds = new IdentityHashMap<SmallGraph,Integer>();
+        for (SmallGraph g : graphs)
+            addGraphId(g, all);
+        // Referred graphs are appended to all while we walk it
+        for (int i = 0; i < all.size(); i++) {
+            SmallGraph g = all.get(i);
+            addGraphIds(containsOf(g), all);
+            addAltGraphIds(g.getInduced(), all);
+            if (g instanceof SimpleFamily)
+                addAltGraphIds(((SimpleFamily) g).getInducedRest(), all);
+        }
+
+        int n = all.size();
+        graphById = all.toArray(new SmallGraph[n]);
+        graphKind = new int[n];
+        implied = new long[n][];
+        contains = new int[n][];
+        induced = new int[n][][];
+        inducedRest = new int[n][][];
+
+        for (int i = 0; i < n; i++) {
+            SmallGraph g = graphById[i];
+            if (g instanceof Configuration)
+                graphKind[i] = KIND_CONFIGURATION;
+            else if (g instanceof Graph)
+                graphKind[i] = KIND_GRAPH;
+            else if (g instanceof SimpleFamily)
+                graphKind[i] = KIND_SIMPLEFAMILY;
+            else if (g instanceof UnionFamily)
+                graphKind[i] = KIND_UNIONFAMILY;
+            else if (g instanceof HMTFamily)
+                graphKind[i] = KIND_HMTFAMILY;
+            else if (g instanceof Family)
+                graphKind[i] = KIND_FAMILY;
+            else
+                graphKind[i] = KIND_OTHER;
+
+            implied[i] = BitRow.create(n);
+            BitRow.set(implied[i], i);
+            if (isgGraph.containsVertex(g)) {
+                for (DefaultEdge e : isgGraph.outgoingEdgesOf(g))
+                    BitRow.set(implied[i],
+                            graphIds.get(isgGraph.getEdgeTarget(e)));
+            } else
+                System.err.println("Vertex "+ g.getName() +" doesn't exist!");
+
+            contains[i] = toIds(containsOf(g));
+            induced[i] = altsToIds(g.getInduced());
+            if (g instanceof SimpleFamily)
+                inducedRest[i] =
+                        altsToIds(((SimpleFamily) g).getInducedRest());
+        }
+    }
+
+
+    /**
+     * Return the graphs that forbids checks one by one for g, or null.
+     */
+    private static Vector<SmallGraph> containsOf(SmallGraph g) {
+        if (g instanceof Configuration)
+            return ((Configuration) g).getContains();
+        if (g instanceof SimpleFamily)
+            return ((SimpleFamily) g).getContains();
+        if (g instanceof UnionFamily)
+            return ((UnionFamily) g).getSubfamilies();
+        if (g instanceof HMTFamily)
+            return ((HMTFamily) g).getSmallmembers();
+        return null;
+    }
+
+
+    /**
+     * Give g an id, if it doesn't have one yet.
+     */
+    private static void addGraphId(SmallGraph g, List<SmallGraph> all) {
+        if (!graphIds.containsKey(g)) {
+            graphIds.put(g, all.size());
+            all.add(g);
+        }
+    }
+
+
+    private static void addGraphIds(Vector<SmallGraph> graphs,
+            List<SmallGraph> all) {
+        if (graphs != null)
+            for (SmallGraph g : graphs)
+                addGraphId(g, all);
+    }
+
+
+    private static void addAltGraphIds(Vector<Vector<SmallGraph> > alts,
+            List<SmallGraph> all) {
+        if (alts != null)
+            for (Vector<SmallGraph> alt : alts)
+                addGraphIds(alt, all);
+    }
+
+
+    /**
+     * Return the ids of graphs, or null if graphs is null.
+     */
+    private static int[] toIds(Vector<SmallGraph> graphs) {
+        if (graphs == null)
+            return null;
+        int[] res = new int[graphs.size()];
+        for (int i = 0; i < res.length; i++)
+            res[i] = graphIds.get(graphs.get(i));
+        return res;
+    }
+
+
+    private static int[][] altsToIds(Vector<Vector<SmallGraph> > alts) {
+        if (alts == null)
+            return null;
+        int[][] res = new int[alts.size()][];
+        for (int i = 0; i < res.length; i++)
+            res[i] = toIds(alts.get(i));
+        return res;
+    }
+
+
     /**
      * Deletes superfluous elements from <tt>s</tt> and returned the cleaned
      * set.
@@ -476,101 +869,188 @@ public class ForbiddenClass extends GraphClass {
      */
     private static boolean forbids(Collection<SmallGraph> graphs,
             SmallGraph target, List<SmallGraph> witnesses) {
-        int i, j;
+        int t = graphId(target);
+        return t >= 0  &&  forbids(graphRow(graphs), t, witnesses);
+    }
 
-        if (!isgGraph.containsVertex(target))
-            System.err.println("Vertex "+ target.getName() +" doesn't exist!");
 
-        for (SmallGraph n : graphs) {
-            if (!isgGraph.containsVertex(n))
-                System.err.println("Vertex "+ n.getName() +" doesn't exist!");
-            if (target == n || isgGraph.containsEdge(target, n))
-                return true;
+    /**
+     * Return the sorted smallgraph ids of the graphs named in set, without
+     * duplicates, or null if the rules are not initialized or a name is
+     * unknown.
+     */
+    static int[] idsOf(Collection<String> set) {
+        if (graphIds == null)
+            return null;
+        int[] ids = new int[set.size()];
+        int i = 0;
+        for (String s : set) {
+            SmallGraph g = names.get(s);
+            Integer id = g == null ? null : graphIds.get(g);
+            if (id == null)
+                return null;
+            ids[i++] = id;
         }
-        
-        if (target instanceof Configuration) {
-            Configuration targetConf = (Configuration) target;
-            for (SmallGraph g : targetConf.getContains())
-                if (!forbids(graphs, g, witnesses)) {
-                    witnesses.add(g);
-                    witnesses.add(target);
-                    return false;
-                }
-            return true;
+        return distinctSorted(ids);
+    }
+
+
+    /**
+     * Return the sorted smallgraph ids of the graphs in the union of the
+     * sets of classes, without duplicates, or null if a class has no
+     * current ids. Equals idsOf on that union, without building it.
+     */
+    static int[] unionIdsOf(Collection<ForbiddenClass> classes) {
+        int n = 0;
+        for (ForbiddenClass fc : classes) {
+            if (!fc.hasGraphIds())
+                return null;
+            n += fc.graphs.length;
         }
-        
-        if (target instanceof Graph) {
-            witnesses.add(target);
-            return false;
+        int[] ids = new int[n];
+        n = 0;
+        for (ForbiddenClass fc : classes) {
+            System.arraycopy(fc.graphs, 0, ids, n, fc.graphs.length);
+            n += fc.graphs.length;
         }
+        return distinctSorted(ids);
+    }
 
-        if (!(target instanceof Family))
-            return false;
-        
-        Family targetFamily = (Family) target;
-        if (targetFamily.getInduced() != null) {
-            for (Vector<SmallGraph> ind : targetFamily.getInduced()) {
-                boolean isForbidden = true;
-                for (SmallGraph gs : ind)
-                    if (!forbids(graphs, gs, witnesses)) {
-                        isForbidden = false;
-                        break;
-                    }
-                if (isForbidden)
-                    return true;
-            }
+
+    /**
+     * Sort ids and return them without duplicates.
+     */
+    private static int[] distinctSorted(int[] ids) {
+        Arrays.sort(ids);
+        int n = 0;
+        for (int i = 0; i < ids.length; i++)
+            if (n == 0  ||  ids[n-1] != ids[i])
+                ids[n++] = ids[i];
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+
+    /**
+     * Return the id of g, or -1 (with a warning) if it is unknown.
+     */
+    private static int graphId(SmallGraph g) {
+        Integer id = graphIds.get(g);
+        if (id == null) {
+            System.err.println("Vertex "+ g.getName() +" doesn't exist!");
+            return -1;
         }
-        
-        if (targetFamily instanceof SimpleFamily) {
-            SimpleFamily targetSF = (SimpleFamily)targetFamily;
-        
-            if (targetSF.getInducedRest() != null) {
-                for (SmallGraph g : targetSF.getContains())
+        return id;
+    }
+
+
+    /**
+     * Return the known graphs as a bit row over the smallgraph ids.
+     */
+    private static long[] graphRow(Collection<SmallGraph> graphs) {
+        long[] row = BitRow.create(graphById.length);
+        for (SmallGraph g : graphs) {
+            int id = graphId(g);
+            if (id >= 0)
+                BitRow.set(row, id);
+        }
+        return row;
+    }
+
+
+    /**
+     * Does forbidding the graphs in row forbid the graph with id target?
+     * Witnesses are added as in forbids(Collection, SmallGraph, List).
+     */
+    private static boolean forbids(long[] graphs, int target,
+            List<SmallGraph> witnesses) {
+        // target itself or a graph it contains is forbidden
+        if (BitRow.intersects(implied[target], graphs))
+            return true;
+
+        switch (graphKind[target]) {
+            case KIND_CONFIGURATION:
+                for (int g : contains[target])
                     if (!forbids(graphs, g, witnesses)) {
-                        witnesses.add(g);
-                        witnesses.add(targetSF);
+                        witnesses.add(graphById[g]);
+                        witnesses.add(graphById[target]);
                         return false;
                     }
+                return true;
 
-                for (Vector<SmallGraph> indRest : targetSF.getInducedRest()) {
-                    boolean isForbidden = true;
-                    for (SmallGraph g : indRest)
+            case KIND_GRAPH:
+                witnesses.add(graphById[target]);
+                return false;
+
+            case KIND_OTHER:
+                return false;
+        }
+
+        // Family
+        if (induced[target] != null  &&
+                forbidsAll(graphs, induced[target], witnesses))
+            return true;
+
+        switch (graphKind[target]) {
+            case KIND_SIMPLEFAMILY:
+                if (inducedRest[target] != null) {
+                    for (int g : contains[target])
                         if (!forbids(graphs, g, witnesses)) {
-                            isForbidden = false;
-                            break;
+                            witnesses.add(graphById[g]);
+                            witnesses.add(graphById[target]);
+                            return false;
                         }
-                    if (isForbidden)
+                    if (forbidsAll(graphs, inducedRest[target], witnesses))
                         return true;
                 }
-            }
-        }
-        else if (targetFamily instanceof UnionFamily) {
-            UnionFamily targetUF = (UnionFamily)targetFamily;
-            if (targetUF.getSubfamilies() != null) {
-                for (SmallGraph g : targetUF.getSubfamilies())
-                    if (!forbids(graphs, g, witnesses)) {
-                        /*witnesses.add(g);   not necessarily concrete
-                        witnesses.add(targetUF);  counter example */
-                        return false;
-                    }
-                return true;
-            } else
-                System.err.println("UnionFamily "+ targetUF.getName() +
-                    " without subfamilies!");
+                break;
+
+            case KIND_UNIONFAMILY:
+                if (contains[target] != null) {
+                    for (int g : contains[target])
+                        if (!forbids(graphs, g, witnesses)) {
+                            /*witnesses.add(g);   not necessarily concrete
+                            witnesses.add(targetUF);  counter example */
+                            return false;
+                        }
+                    return true;
+                } else
+                    System.err.println("UnionFamily "+
+                        graphById[target].getName() +" without subfamilies!");
+                break;
+
+            case KIND_HMTFAMILY:
+                if (contains[target] != null) {
+                    for (int g : contains[target])
+                        if (!forbids(graphs, g, witnesses)) {
+                            witnesses.add(graphById[g]);
+                            witnesses.add(graphById[target]);
+                            return false;
+                        }
+                    return true;
+                }
+                break;
         }
-        else if (targetFamily instanceof HMTFamily) {
-            HMTFamily targetHF = (HMTFamily)targetFamily;
-            if (targetHF.getSmallmembers() != null) {
-                for (SmallGraph g : targetHF.getSmallmembers())
-                    if (!forbids(graphs, g, witnesses)) {
-                        witnesses.add(g);
-                        witnesses.add(targetHF);
-                        return false;
-                    }
+
+        return false;
+    }
+
+
+    /**
+     * Return true iff for some alternative in alts, all graphs in it are
+     * forbidden by graphs.
+     */
+    private static boolean forbidsAll(long[] graphs, int[][] alts,
+            List<SmallGraph> witnesses) {
+        for (int[] alt : alts) {
+            boolean isForbidden = true;
+            for (int g : alt)
+                if (!forbids(graphs, g, witnesses)) {
+                    isForbidden = false;
+                    break;
+                }
+            if (isForbidden)
                 return true;
-            }
         }
-        
         return false;
     }
 
@@ -166,6 +166,15 @@ public abstract class GraphClass {
     }
 
 
+    /**
+     * Returns the explicitly set name, or null if there is none. Unlike
+     * toString, this never constructs the name.
+     */
+    public String getExplicitName() {
+        return nameExplicit ? name : null;
+    }
+
+
     /**
      * Checks if the set of graphs described by this graphclass is a subset
      * of the set described by <tt>gc</tt>.<br>
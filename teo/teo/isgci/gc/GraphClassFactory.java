@@ -0,0 +1,271 @@
+/*
+ * Creates derived graph classes, building every class only once.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.gc;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+import teo.isgci.util.UnaryFunction;
+
+/**
+ * Creates forbidden, intersection, union, complement and clique classes.
+ * The classes are interned by a cheap structural key, so asking again for
+ * the same class returns the same object without constructing it, and
+ * HashMaps that already contain the object find it by identity instead of
+ * a deep equals. The key of a forbidden class is the sorted array of the
+ * distinct smallgraph ids of its graphs, before they are reduced to a
+ * minimal set. The other classes are keyed by their
+ * members or their base, compared by identity, as these are the interned
+ * nodes of the deducer. Asking for a class with equal but not identical
+ * members builds it again, so interning the members only makes the lookups
+ * hit more often.
+ * A newly built class is passed through the resolver, which can replace it
+ * by an equal class that exists already, e.g. a vertex of a graph.
+ * Not thread-safe.
+ */
+public class GraphClassFactory {
+    /** The interned classes by key */
+    private HashMap<IdsKey,GraphClass> forbiddens;
+    private HashMap<MembersKey,GraphClass> intersects, unions;
+    private IdentityHashMap<GraphClass,GraphClass> complements, cliques;
+    /** Maps newly built classes to the objects to intern */
+    private UnaryFunction<GraphClass,GraphClass> resolver;
+
+
+    /**
+     * Create a new factory that interns the classes it builds.
+     */
+    public GraphClassFactory() {
+        this(null);
+    }
+
+
+    /**
+     * Create a new factory that interns resolver.execute(gc) for every class
+     * gc it builds. The resolver may be null.
+     */
+    public GraphClassFactory(UnaryFunction<GraphClass,GraphClass> resolver) {
+        this.forbiddens = new HashMap<IdsKey,GraphClass>();
+        this.intersects = new HashMap<MembersKey,GraphClass>();
+        this.unions = new HashMap<MembersKey,GraphClass>();
+        this.complements = new IdentityHashMap<GraphClass,GraphClass>();
+        this.cliques = new IdentityHashMap<GraphClass,GraphClass>();
+        this.resolver = resolver;
+    }
+
+
+    /**
+     * Return the class defined by forbidding the smallgraphs in set.
+     * Without smallgraph ids (the rules are not initialized), the class is
+     * built and resolved, but not interned.
+     */
+    public GraphClass forbidden(Collection<String> set) {
+        return forbidden(set, ForbiddenClass.idsOf(set));
+    }
+
+
+    /**
+     * Return the class defined by forbidding the smallgraphs of all the
+     * classes in set, like forbidden on the union of their sets. The key is
+     * taken from the smallgraph ids of the classes, so the union of their
+     * sets is only built if the class is not interned yet.
+     */
+    public GraphClass forbiddenUnion(Collection<ForbiddenClass> set) {
+        int[] ids = ForbiddenClass.unionIdsOf(set);
+        if (ids != null) {
+            GraphClass res = forbiddens.get(new IdsKey(ids));
+            if (res != null)
+                return res;
+        }
+
+        HashSet<String> union = new HashSet<String>();
+        for (ForbiddenClass fc : set)
+            union.addAll(fc.getSet());
+        return forbidden(union, ids != null ? ids :
+                ForbiddenClass.idsOf(union));
+    }
+
+
+    /**
+     * Return the class defined by forbidding the smallgraphs in set, whose
+     * ids are ids, or null if they are not known.
+     */
+    private GraphClass forbidden(Collection<String> set, int[] ids) {
+        if (ids == null)
+            return resolve(new ForbiddenClass(set));
+
+        IdsKey key = new IdsKey(ids);
+        GraphClass res = forbiddens.get(key);
+        if (res == null) {
+            res = resolve(new ForbiddenClass(set));
+            forbiddens.put(key, res);
+        }
+        return res;
+    }
+
+
+    /**
+     * Return the intersection of the classes in set.
+     */
+    public GraphClass intersect(Collection<GraphClass> set) {
+        MembersKey key = new MembersKey(set);
+        GraphClass res = intersects.get(key);
+        if (res == null) {
+            res = resolve(new IntersectClass(set));
+            intersects.put(key, res);
+        }
+        return res;
+    }
+
+
+    /**
+     * Return the union of the classes in set.
+     */
+    public GraphClass unite(Collection<GraphClass> set) {
+        MembersKey key = new MembersKey(set);
+        GraphClass res = unions.get(key);
+        if (res == null) {
+            res = resolve(new UnionClass(set));
+            unions.put(key, res);
+        }
+        return res;
+    }
+
+
+    /**
+     * Return the class of complements of graphs in base.
+     */
+    public GraphClass complement(GraphClass base) {
+        GraphClass res = complements.get(base);
+        if (res == null) {
+            res = resolve(new ComplementClass(base));
+            complements.put(base, res);
+        }
+        return res;
+    }
+
+
+    /**
+     * Return the class of clique graphs of graphs in base.
+     */
+    public GraphClass clique(GraphClass base) {
+        GraphClass res = cliques.get(base);
+        if (res == null) {
+            res = resolve(new CliqueClass(base));
+            cliques.put(base, res);
+        }
+        return res;
+    }
+
+
+    /**
+     * Forget all interned classes.
+     */
+    public void clear() {
+        forbiddens.clear();
+        intersects.clear();
+        unions.clear();
+        complements.clear();
+        cliques.clear();
+    }
+
+
+    /**
+     * Return the object to intern for the newly built gc.
+     */
+    private GraphClass resolve(GraphClass gc) {
+        return resolver != null ? resolver.execute(gc) : gc;
+    }
+
+
+    /**
+     * The sorted smallgraph ids of a forbidden class.
+     */
+    private static final class IdsKey {
+        private final int[] ids;
+        private final int hash;
+
+        IdsKey(int[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode(ids);
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof IdsKey  &&
+                    Arrays.equals(ids, ((IdsKey) o).ids);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    /**
+     * The members of a set class without duplicates, compared by identity
+     * and regardless of their order. The sets are small, so they are
+     * compared by searching.
+     */
+    private static final class MembersKey {
+        private final GraphClass[] members;
+        private final int hash;
+
+        MembersKey(Collection<GraphClass> set) {
+            GraphClass[] a = new GraphClass[set.size()];
+            int n = 0, h = 0;
+            for (GraphClass gc : set) {
+                if (contains(a, n, gc))
+                    continue;
+                a[n++] = gc;
+                h += System.identityHashCode(gc);
+            }
+            members = n == a.length ? a : Arrays.copyOf(a, n);
+            hash = h;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof MembersKey))
+                return false;
+            GraphClass[] other = ((MembersKey) o).members;
+            return contains(members, other)  &&  contains(other, members);
+        }
+
+        /**
+         * Return true iff every class in b is in a.
+         */
+        private static boolean contains(GraphClass[] a, GraphClass[] b) {
+            for (GraphClass gc : b)
+                if (!contains(a, a.length, gc))
+                    return false;
+            return true;
+        }
+
+        /**
+         * Return true iff gc is among the first n classes of a.
+         */
+        private static boolean contains(GraphClass[] a, int n,
+                GraphClass gc) {
+            for (int i = 0; i < n; i++)
+                if (a[i] == gc)
+                    return true;
+            return false;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
+
+/* EOF */
@@ -53,6 +53,20 @@ public class Annotation<V, E, D> {
         this.edgeCreator = edgeCreator;
     }
 
+    /**
+     * Return a new annotation for the given graph. If g is frozen, the node
+     * data is stored in an array over its VertexIndex.
+     */
+    public static <V,E,D> Annotation<V,E,D> create(Graph<V,E> g,
+            UnaryFunction<V,D> nodeCreator, UnaryFunction<E,D> edgeCreator) {
+        VertexIndex<V> index = VertexIndex.getFrozen(g);
+        if (index != null)
+            return new IndexedAnnotation<V,E,D>(g, index, nodeCreator,
+                    edgeCreator);
+        return new Annotation<V,E,D>(g, nodeCreator, edgeCreator);
+    }
+
+
     /**
      * Set the node creator.
      */
@@ -20,6 +20,9 @@ import org.jgrapht.DirectedGraph;
 public class BFSWalker<V,E> extends GraphWalker<V,E> {
     protected Queue<V> q;
     protected V start;
+    /** Distances to start, used instead of WalkerInfo.distance when the
+     * walker creates its own WalkerInfos for a frozen graph */
+    protected IndexedIntAnnotation<V> distances;
 
 
     /**
@@ -39,6 +42,9 @@ public class BFSWalker<V,E> extends GraphWalker<V,E> {
         dynamic = initCode == InitCode.DYNAMIC;
         this.dataAnn = mark != null ? mark :
                  WalkerInfo.createAnnotation(graph);
+        if (mark == null  &&  VertexIndex.getFrozen(graph) != null)
+            distances = new IndexedIntAnnotation<V>(
+                    VertexIndex.getFrozen(graph), -1);
         q = new ArrayDeque<V>();
        
         if (initCode == InitCode.CREATE) {
@@ -50,11 +56,33 @@ public class BFSWalker<V,E> extends GraphWalker<V,E> {
         }
         
         WalkerInfo<V,E> wi = getDataNode(start);
-        wi.distance=0;
+        setDistance(start, 0);
         wi.parent=null;
     }
 
 
+    /**
+     * Return the distance of v to the start node, or -1 if v hasn't been
+     * discovered.
+     */
+    public int getDistance(V v) {
+        int i = distances != null ? distances.getIndex().indexOf(v) : -1;
+        return i >= 0 ? distances.getNode(i) : getDataNode(v).distance;
+    }
+
+
+    /**
+     * Set the distance of v to the start node.
+     */
+    protected void setDistance(V v, int d) {
+        int i = distances != null ? distances.getIndex().indexOf(v) : -1;
+        if (i >= 0)
+            distances.setNode(i, d);
+        else
+            getDataNode(v).distance = d;
+    }
+
+
     public void run() {
         discover(start);
         while (!q.isEmpty())
@@ -70,13 +98,11 @@ public class BFSWalker<V,E> extends GraphWalker<V,E> {
     
 
     public void explore(E e, V from, V to) {
-        WalkerInfo<V,E> wiTo, wiFrom;
-        wiTo = getDataNode(to);
+        WalkerInfo<V,E> wiTo = getDataNode(to);
         
         if (wiTo.status == Status.UNSEEN) {
-            wiFrom = getDataNode(from);
             wiTo.parent = e;
-            wiTo.distance = wiFrom.distance+1;
+            setDistance(to, getDistance(from)+1);
             discover(to);
         } else {
             see(to);
@@ -0,0 +1,262 @@
+/*
+ * Calculates the transitive closure of a graph using bit rows.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.jgrapht.DirectedGraph;
+
+import teo.isgci.util.BitRow;
+
+/**
+ * Transitively closes a graph. This makes exactly the same DFS as
+ * ClosingDFS and adds the missing edges in exactly the same order, which
+ * matters to callers that later keep only one of several equivalent edges:
+ * Deducer.deleteSuperfluousEdges keeps the edges that come first, so
+ * another order changes which inclusions end up in the documents.
+ * <p>
+ * ClosingDFS gathers the subnodes of every node in a HashSet, adds all
+ * subnodes of every out-neighbour to it and adds the edges in the iteration
+ * order of the sets. Here the contents of the sets are bit rows, so an
+ * out-neighbour whose subnodes are all known already costs a single row
+ * comparison. A HashSet is still filled in the same insertion order as in
+ * ClosingDFS, but only once per node, to obtain its iteration order; that
+ * order depends on the HashSet implementation, so it cannot be derived
+ * from the rows. The HashSet is dropped right away.
+ * <p>
+ * Like in ClosingDFS, the nodes of an SCC end up using the set of the
+ * first of them that was discovered. The set of a node is dropped as soon
+ * as no node uses it anymore, so only one row and order per SCC is kept.
+ * On the ISGCI input (1437 nodes, 168k edges in the closure) the rows and
+ * orders take 0.71MB instead of 0.85MB with a set per node. The orders
+ * hold one int per edge of the closure, so they are most of it.
+ */
+class BitClosure<V,E> {
+    private static final byte UNSEEN = 0, SEEN = 1, FINISHED = 2;
+
+    /** The graph to close */
+    private DirectedGraph<V,E> graph;
+    private VertexIndex<V> index;
+    /** Out- and in-neighbours in the order of the graph */
+    private int[][] out, in;
+
+    /** DFS state per node */
+    private byte[] status;
+    private int[] discover, finish;
+    private int time;
+    /** The nodes with an edge to v found while v was on the stack */
+    private int[][] back;
+    private int[] backCount;
+
+    /** The node whose set of subnodes v uses, as in ClosingInfo.sub */
+    private int[] set;
+    /** The number of nodes that use the set of v */
+    private int[] users;
+    /** Contents and iteration order of the set of subnodes of v, once v is
+     * finished */
+    private long[][] contents;
+    private int[][] order;
+
+    /** Work arrays: the DFS stack, the next out-edge to explore per node,
+     * an insertion order and the stack of distribute */
+    private int[] stack, next, seq, todo;
+
+
+    /**
+     * Create a BitClosure for graph g.
+     */
+    public BitClosure(DirectedGraph<V,E> g) {
+        graph = g;
+    }
+
+
+    /**
+     * Transform the graph into its transitive closure.
+     * Returns the number of edges added.
+     */
+    public int run() {
+        init();
+        for (int v = 0; v < out.length; v++)
+            if (status[v] == UNSEEN)
+                dfs(v);
+
+        int added = 0;
+        long[] have = BitRow.create(out.length);    // Existing out-nbs of v
+        for (int v = 0; v < out.length; v++) {
+            V from = index.get(v);
+            for (int w : out[v])
+                BitRow.set(have, w);
+            for (int w : order[set[v]]) {
+                if (w != v  &&  !BitRow.get(have, w)) {
+                    graph.addEdge(from, index.get(w));
+                    added++;
+                }
+            }
+            for (int w : out[v])
+                BitRow.clear(have, w);
+        }
+
+        return added;
+    }
+
+
+    /**
+     * Index the graph and initialize the DFS state.
+     */
+    private void init() {
+        index = new VertexIndex<V>(graph.vertexSet());
+        int n = index.size();
+        out = new int[n][];
+        in = new int[n][];
+        for (int v = 0; v < n; v++) {
+            V x = index.get(v);
+            out[v] = new int[graph.outDegreeOf(x)];
+            int i = 0;
+            for (V w : GAlg.outNeighboursOf(graph, x))
+                out[v][i++] = index.indexOf(w);
+            in[v] = new int[graph.inDegreeOf(x)];
+            i = 0;
+            for (V w : GAlg.inNeighboursOf(graph, x))
+                in[v][i++] = index.indexOf(w);
+        }
+
+        status = new byte[n];
+        discover = new int[n];
+        finish = new int[n];
+        time = 0;
+        back = new int[n][];
+        backCount = new int[n];
+        set = new int[n];
+        users = new int[n];
+        for (int v = 0; v < n; v++) {
+            set[v] = v;
+            users[v] = 1;
+        }
+        contents = new long[n][];
+        order = new int[n][];
+        stack = new int[n];
+        next = new int[n];
+        seq = new int[n];
+        todo = new int[n];
+    }
+
+
+    /**
+     * Do the DFS from root, without recursion, in the same order as
+     * DFSWalker.
+     */
+    private void dfs(int root) {
+        int top = 0;
+
+        status[root] = SEEN;
+        discover[root] = ++time;
+        stack[top++] = root;
+        while (top > 0) {
+            int v = stack[top-1];
+            if (next[v] < out[v].length) {
+                int w = out[v][next[v]++];
+                if (status[w] == UNSEEN) {
+                    status[w] = SEEN;
+                    discover[w] = ++time;
+                    stack[top++] = w;
+                } else if (status[w] == SEEN) {
+                    addBack(w, v);
+                }
+            } else {
+                top--;
+                status[v] = FINISHED;
+                finish[v] = ++time;
+                gather(v);
+            }
+        }
+    }
+
+
+    /**
+     * Remember that from has an edge to v, which is on the stack.
+     */
+    private void addBack(int v, int from) {
+        if (back[v] == null)
+            back[v] = new int[4];
+        else if (backCount[v] == back[v].length)
+            back[v] = Arrays.copyOf(back[v], 2 * backCount[v]);
+        back[v][backCount[v]++] = from;
+    }
+
+
+    /**
+     * Gather the subnodes of the just finished v as ClosingDFS.finish does
+     * and distribute them over the backedges.
+     */
+    private void gather(int v) {
+        long[] row = BitRow.create(out.length);
+        int size = 0;
+
+        BitRow.set(row, v);
+        seq[size++] = v;
+        for (int w : out[v]) {
+            int s = set[w];
+            if (order[s] == null  ||  BitRow.containsAll(row, contents[s]))
+                continue;
+            for (int x : order[s]) {
+                if (!BitRow.get(row, x)) {
+                    BitRow.set(row, x);
+                    seq[size++] = x;
+                }
+            }
+        }
+
+        HashSet<V> sub = new HashSet<V>();
+        for (int i = 0; i < size; i++)
+            sub.add(index.get(seq[i]));
+        int i = 0;
+        for (V x : sub)
+            seq[i++] = index.indexOf(x);
+        contents[v] = row;
+        order[v] = Arrays.copyOf(seq, size);
+
+        for (int b = 0; b < backCount[v]; b++)
+            distribute(back[v][b], v);
+        back[v] = null;
+    }
+
+
+    /**
+     * Let all supernodes of start that are finished and in the subtree of
+     * owner use the set of owner, as ClosingDFS.distribute does.
+     */
+    private void distribute(int start, int owner) {
+        int top = 0;
+
+        todo[top++] = start;
+        while (top > 0) {
+            int v = todo[--top];
+            if (status[v] != FINISHED  ||  set[v] == owner  ||
+                    !(discover[owner] < discover[v]  &&
+                      finish[v] < finish[owner]))
+                continue;
+            if (--users[set[v]] == 0) {
+                contents[set[v]] = null;
+                order[set[v]] = null;
+            }
+            set[v] = owner;
+            users[owner]++;
+            for (int w : in[v]) {
+                if (top == todo.length)
+                    todo = Arrays.copyOf(todo, 2 * top);
+                todo[top++] = w;
+            }
+        }
+    }
+}
+
+/* EOF */
@@ -18,22 +18,41 @@ import org.jgrapht.event.GraphListener;
 import org.jgrapht.event.GraphVertexChangeEvent;
 import org.jgrapht.graph.ListenableDirectedGraph;
 
-import teo.isgci.util.Pair;
+import teo.isgci.util.LongMap;
 
 
+/**
+ * Every cached node gets a dense integer id, and edges are cached by the
+ * ids of their endpoints packed into a long. Lookups don't allocate or
+ * modify the cache, so any number of threads can query a CacheGraph that
+ * isn't modified concurrently. setReadOnly(true) enforces the latter.
+ */
 public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
         implements GraphListener<V,E> {
 
+    /** A cached node and its id */
+    private static class Node<V> {
+        final V vertex;
+        final int id;
+
+        Node(V vertex, int id) {
+            this.vertex = vertex;
+            this.id = id;
+        }
+    }
+
     /** The graph we're caching */
     private DirectedGraph<V,E> graph;
     /** Cache for nodes */
-    private HashMap<V,V> nodeCache;
-    /** Cache for edges (for fast getEdge) */
-    private HashMap<Pair,E> edgeCache;
-    /** For looking up edges */
-    private Pair reusablePair;
+    private HashMap<V,Node<V> > nodeCache;
+    /** Cache for edges (for fast getEdge), keyed by edgeKey */
+    private LongMap<E> edgeCache;
+    /** The id for the next new node. Ids are never reused. */
+    private int nextId;
     /** Perform consistency checks? */
     private boolean checking;
+    /** Refuse modifications? */
+    private boolean readOnly;
 
     /**
      * Creates a new CacheGraph that caches base. The initial size of the
@@ -44,20 +63,20 @@ public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
         super(base);
         graph = base;
         checking = false;
-        reusablePair = new Pair();
+        readOnly = false;
+        nextId = 0;
 
         //---- Fill nodeCache
-        nodeCache = new HashMap<V,V>(nodeSize);
+        nodeCache = new HashMap<V,Node<V> >(nodeSize);
         for (V v : base.vertexSet())
-            if (nodeCache.put(v,v) != null)
+            if (nodeCache.put(v, new Node<V>(v, nextId++)) != null)
                 throw new IllegalArgumentException(v +
                     " already exists in graph!");
 
         //---- Fill edgeCache
-        edgeCache = new HashMap<Pair,E>();
+        edgeCache = new LongMap<E>(base.edgeSet().size());
         for (E e : base.edgeSet())
-            if (edgeCache.put( new Pair(graph.getEdgeSource(e),
-                        graph.getEdgeTarget(e)), e) != null)
+            if (edgeCache.put(edgeKey(e), e) != null)
                 throw new IllegalArgumentException(e +
                     " already exists in graph!");
 
@@ -70,7 +89,8 @@ public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
      * Find the given vertex and return it or null if it doesn't exist.
      */
     public V findVertex(V v) {
-        return nodeCache.get(v);
+        Node<V> n = nodeCache.get(v);
+        return n != null ? n.vertex : null;
     }
 
 
@@ -78,9 +98,13 @@ public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
      * Find the given edge and return it or null if it doesn't exist.
      */
     public E findEdge(V source, V target) {
-        reusablePair.first = source;
-        reusablePair.second = target;
-        return edgeCache.get(reusablePair);
+        Node<V> s = nodeCache.get(source);
+        if (s == null)
+            return null;
+        Node<V> t = nodeCache.get(target);
+        if (t == null)
+            return null;
+        return edgeCache.get(edgeKey(s.id, t.id));
     }
 
 
@@ -104,6 +128,77 @@ public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
         return findEdge(source, target) != null;
     }
 
+    public boolean addVertex(V v) {
+        checkWritable();
+        return super.addVertex(v);
+    }
+
+    public E addEdge(V source, V target) {
+        checkWritable();
+        return super.addEdge(source, target);
+    }
+
+    public boolean addEdge(V source, V target, E e) {
+        checkWritable();
+        return super.addEdge(source, target, e);
+    }
+
+    public E removeEdge(V source, V target) {
+        checkWritable();
+        return super.removeEdge(source, target);
+    }
+
+    public boolean removeEdge(E e) {
+        checkWritable();
+        return super.removeEdge(e);
+    }
+
+    public boolean removeVertex(V v) {
+        checkWritable();
+        return super.removeVertex(v);
+    }
+
+    //------------------------- read-only mode -------------------------------
+
+    /**
+     * Set the read-only flag and return the old value. While it is set,
+     * all modifications throw an IllegalStateException, so the graph can
+     * be shared between threads.
+     */
+    public boolean setReadOnly(boolean r) {
+        boolean old = readOnly;
+        readOnly = r;
+        return old;
+    }
+
+
+    /**
+     * Throw an exception if the graph is read-only.
+     */
+    private void checkWritable() {
+        if (readOnly)
+            throw new IllegalStateException("Graph is read-only");
+    }
+
+    //------------------------- edge keys ------------------------------------
+
+    /**
+     * Return the key in edgeCache for the edge between the nodes with the
+     * given ids.
+     */
+    private static long edgeKey(int source, int target) {
+        return ((long) source << 32) | (target & 0xffffffffL);
+    }
+
+
+    /**
+     * Return the key in edgeCache for the edge e of graph.
+     */
+    private long edgeKey(E e) {
+        return edgeKey(nodeCache.get(graph.getEdgeSource(e)).id,
+                nodeCache.get(graph.getEdgeTarget(e)).id);
+    }
+
     //------------------------- checking methods -----------------------------
 
     /**
@@ -124,8 +219,8 @@ public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
             throw new RuntimeException("nodeCache has "+ nodeCache.size() +
                     "nodes and graph has "+ graph.vertexSet().size());
         if (graph.edgeSet().size() != edgeCache.size())
-            throw new RuntimeException("nodeCache has "+ edgeCache.size() +
-                    "nodes and graph has "+ graph.edgeSet().size());
+            throw new RuntimeException("edgeCache has "+ edgeCache.size() +
+                    "edges and graph has "+ graph.edgeSet().size());
     }
 
 
@@ -153,12 +248,12 @@ public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
     public void vertexAdded(GraphVertexChangeEvent<V> ev) {
         V v = ev.getVertex();
 
-        if (nodeCache.put(v, v) != null)
+        if (nodeCache.put(v, new Node<V>(v, nextId++)) != null)
             throw new IllegalArgumentException(v +" already exists in graph!");
 
         if (checking) {
             checkSizes();
-            if (!graph.containsVertex(nodeCache.get(v)))
+            if (!graph.containsVertex(findVertex(v)))
                 throw new RuntimeException(
                         "Error caching addition of node "+ v);
         }
@@ -183,8 +278,7 @@ public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
     public void edgeAdded(GraphEdgeChangeEvent<V,E> ev) {
         E e = ev.getEdge();
 
-        if (null != edgeCache.put(
-                new Pair(graph.getEdgeSource(e), graph.getEdgeTarget(e)), e))
+        if (null != edgeCache.put(edgeKey(e), e))
             throw new IllegalArgumentException(ev.getEdge() +
                 " already exists in graph!");
 
@@ -199,8 +293,7 @@ public class CacheGraph<V,E> extends ListenableDirectedGraph<V,E>
 
     public void edgeRemoved(GraphEdgeChangeEvent<V,E> ev) {
         E e = ev.getEdge();
-        if (null == edgeCache.remove(
-                new Pair(graph.getEdgeSource(e), graph.getEdgeTarget(e))))
+        if (null == edgeCache.remove(edgeKey(e)))
             throw new IllegalArgumentException(ev.getEdge() +
                 " doesn't exist in graph!");
 
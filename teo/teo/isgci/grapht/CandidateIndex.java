@@ -0,0 +1,353 @@
+/*
+ * Finds the classes that a rule could possibly relate to a given class.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.jgrapht.DirectedGraph;
+
+import teo.isgci.gc.CliqueClass;
+import teo.isgci.gc.ForbiddenClass;
+import teo.isgci.gc.GraphClass;
+import teo.isgci.gc.HereditaryClass;
+import teo.isgci.gc.IntersectClass;
+import teo.isgci.gc.ProbeClass;
+import teo.isgci.gc.UnionClass;
+import teo.isgci.util.BitRow;
+
+/**
+ * An index over the vertices of a VertexIndex by class kind and
+ * constituent, used by Deducer to avoid testing pairs of classes that can
+ * never be related by subClassOf. The candidate rows returned contain every
+ * vertex for which the test may succeed, but also some for which it
+ * doesn't, so the real test must still be done.
+ * The index only depends on the vertices, not on the edges. It is not
+ * modified after construction, so it can be queried by several threads.
+ */
+class CandidateIndex {
+    /** The indexed vertices */
+    private final VertexIndex<GraphClass> index;
+    /** Maps a class to the unions it is a member of */
+    private final HashMap<GraphClass,List<Integer> > unionsByMember;
+    /** Maps a class to the intersections it is a member of */
+    private final HashMap<GraphClass,List<Integer> > intersectsByMember;
+    /** Maps a class to the probe classes based on it */
+    private final HashMap<GraphClass,List<Integer> > probesByBase;
+    /** Maps a class to the hereditary classes based on it */
+    private final HashMap<GraphClass,List<Integer> > hereditariesByBase;
+    /** Maps a smallgraph name to the positions in forbiddens of the
+     * ForbiddenClasses that forbid it by definition */
+    private final HashMap<String,List<Integer> > forbiddensByName;
+    /** All ForbiddenClasses */
+    private final List<Integer> forbiddens;
+    /** All CliqueClasses */
+    private final List<Integer> cliques;
+    /** The id of the clique graphs (gc_141), -1 if not present */
+    private int clique141;
+
+
+    /**
+     * Create an index for the vertices in index.
+     */
+    public CandidateIndex(VertexIndex<GraphClass> index) {
+        this.index = index;
+        unionsByMember = new HashMap<GraphClass,List<Integer> >();
+        intersectsByMember = new HashMap<GraphClass,List<Integer> >();
+        probesByBase = new HashMap<GraphClass,List<Integer> >();
+        hereditariesByBase = new HashMap<GraphClass,List<Integer> >();
+        forbiddensByName = new HashMap<String,List<Integer> >();
+        forbiddens = new ArrayList<Integer>();
+        cliques = new ArrayList<Integer>();
+        clique141 = -1;
+
+        for (int i = 0; i < index.size(); i++) {
+            GraphClass gc = index.get(i);
+            if ("gc_141".equals(gc.getID()))
+                clique141 = i;
+
+            if (gc instanceof UnionClass) {
+                for (GraphClass m : ((UnionClass) gc).getSet())
+                    put(unionsByMember, m, i);
+            } else if (gc instanceof IntersectClass) {
+                for (GraphClass m : ((IntersectClass) gc).getSet())
+                    put(intersectsByMember, m, i);
+            } else if (gc instanceof ProbeClass) {
+                put(probesByBase, ((ProbeClass) gc).getBase(), i);
+            } else if (gc instanceof HereditaryClass) {
+                put(hereditariesByBase, ((HereditaryClass) gc).getBase(), i);
+            } else if (gc instanceof ForbiddenClass) {
+                for (String s : ((ForbiddenClass) gc).getSet())
+                    put(forbiddensByName, s, forbiddens.size());
+                forbiddens.add(i);
+            } else if (gc instanceof CliqueClass) {
+                cliques.add(i);
+            }
+        }
+    }
+
+
+    /**
+     * Add i to the list of key in map.
+     */
+    private static <K> void put(HashMap<K,List<Integer> > map, K key, int i){
+        List<Integer> l = map.get(key);
+        if (l == null) {
+            l = new ArrayList<Integer>();
+            map.put(key, l);
+        }
+        l.add(i);
+    }
+
+
+    /**
+     * Set the bits of the ids in list (if not null) in row.
+     */
+    private static void setAll(long[] row, List<Integer> list) {
+        if (list != null)
+            for (int i : list)
+                BitRow.set(row, i);
+    }
+
+
+    /**
+     * Return the size of list, 0 for null.
+     */
+    private static int size(List<Integer> list) {
+        return list == null ? 0 : list.size();
+    }
+
+
+    /**
+     * Set the bit of the vertex equal to gc in row, if there is one.
+     */
+    private void setVertex(long[] row, GraphClass gc) {
+        int i = index.indexOf(gc);
+        if (i >= 0)
+            BitRow.set(row, i);
+    }
+
+
+    /**
+     * Return the vertex index.
+     */
+    public VertexIndex<GraphClass> getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Return the list in map for the member of set with the shortest list.
+     * Returns null if some member has no list.
+     */
+    private static List<Integer> shortest(
+            HashMap<GraphClass,List<Integer> > map, Set<GraphClass> set) {
+        List<Integer> res = null;
+        for (GraphClass m : set) {
+            List<Integer> l = map.get(m);
+            if (l == null)
+                return null;
+            if (res == null  ||  l.size() < res.size())
+                res = l;
+        }
+        return res;
+    }
+
+
+    /**
+     * Return a row containing every vertex gj for which gi.subClassOf(gj)
+     * may be true. gi itself may be included.
+     */
+    public long[] supersOf(GraphClass gi) {
+        long[] row = BitRow.create(index.size());
+
+        // A << A+B+..., A << probe A
+        setAll(row, unionsByMember.get(gi));
+        setAll(row, probesByBase.get(gi));
+
+        if (gi instanceof UnionClass) {
+            // A+B << A+B+C: Every member of gi is in gj
+            setAll(row, shortest(unionsByMember, ((UnionClass) gi).getSet()));
+        } else if (gi instanceof IntersectClass) {
+            // A*B << A, A*B*C << A*B: Some member of gi is (in) gj
+            for (GraphClass m : ((IntersectClass) gi).getSet()) {
+                setVertex(row, m);
+                setAll(row, intersectsByMember.get(m));
+            }
+        } else if (gi instanceof HereditaryClass) {
+            GraphClass base = ((HereditaryClass) gi).getBase();
+            setVertex(row, base);
+            setAll(row, hereditariesByBase.get(base));
+        } else if (gi instanceof CliqueClass) {
+            if (clique141 >= 0)
+                BitRow.set(row, clique141);
+        } else if (gi instanceof ForbiddenClass) {
+            setForbiddenSupers(row, (ForbiddenClass) gi);
+        }
+
+        return row;
+    }
+
+
+    /**
+     * Set in row the ForbiddenClasses gj for which gi.subClassOf(gj) holds.
+     * That is the case iff gi forbids every smallgraph in the set of gj, so
+     * every smallgraph that occurs in some ForbiddenClass is tested only
+     * once against gi, instead of once for every gj.
+     */
+    private void setForbiddenSupers(long[] row, ForbiddenClass gi) {
+        int[] found = new int[forbiddens.size()];
+        for (String s : gi.forbiddenAmong(forbiddensByName.keySet()))
+            for (int p : forbiddensByName.get(s))
+                found[p]++;
+
+        for (int p = 0; p < found.length; p++) {
+            int j = forbiddens.get(p);
+            if (found[p] ==
+                    ((ForbiddenClass) index.get(j)).getSet().size())
+                BitRow.set(row, j);
+        }
+    }
+
+
+    /**
+     * Return a row containing every vertex gj for which gj.subClassOf(gi)
+     * may be true. gi itself may be included.
+     */
+    public long[] subsOf(GraphClass gi) {
+        long[] row = BitRow.create(index.size());
+
+        // A*B << A, A << hereditary A
+        setAll(row, intersectsByMember.get(gi));
+        setAll(row, hereditariesByBase.get(gi));
+
+        if (gi instanceof UnionClass) {
+            // A << A+B, A+B << A+B+C: Every member of gj is in gi
+            for (GraphClass m : ((UnionClass) gi).getSet()) {
+                setVertex(row, m);
+                setAll(row, unionsByMember.get(m));
+            }
+        } else if (gi instanceof IntersectClass) {
+            // A*B*C << A*B: Every member of gi is in gj
+            setAll(row, shortest(intersectsByMember,
+                    ((IntersectClass) gi).getSet()));
+        } else if (gi instanceof ProbeClass) {
+            setVertex(row, ((ProbeClass) gi).getBase());
+        } else if (gi instanceof HereditaryClass) {
+            setAll(row,
+                    hereditariesByBase.get(((HereditaryClass) gi).getBase()));
+        } else if (gi instanceof ForbiddenClass) {
+            setAll(row, forbiddens);
+        }
+        // clique X << clique graphs
+        if ("gc_141".equals(gi.getID()))
+            setAll(row, cliques);
+
+        return row;
+    }
+
+
+    /**
+     * Return a row containing every vertex gj for which union(gj, gi) may
+     * currently deduce gj >> gi in g. As gj must be a superclass of every
+     * member of gi that it doesn't contain itself, only the in-neighbours of
+     * a single member m need to be considered, besides m and the unions
+     * containing m.
+     * Edges added by union(gj, gi) don't invalidate the row for gi, as every
+     * vertex that gets a new out-edge then also gets an edge to gi.
+     */
+    public <E> long[] unionPartnersOf(UnionClass gi,
+            DirectedGraph<GraphClass,E> g) {
+        long[] row = BitRow.create(index.size());
+        GraphClass best = null;
+        int bestCost = Integer.MAX_VALUE;
+
+        for (GraphClass m : gi.getSet()) {
+            int k = index.indexOf(m);
+            int cost = (k >= 0 ? g.inDegreeOf(index.get(k)) + 1 : 0) +
+                    size(unionsByMember.get(m));
+            if (cost < bestCost) {
+                best = m;
+                bestCost = cost;
+            }
+        }
+
+        if (best != null) {
+            int k = index.indexOf(best);
+            if (k >= 0) {
+                BitRow.set(row, k);
+                for (GraphClass v : GAlg.inNeighboursOf(g, index.get(k)))
+                    setVertex(row, v);
+            }
+            setAll(row, unionsByMember.get(best));
+        }
+        return row;
+    }
+
+
+    /**
+     * Return a row containing every vertex gj for which intersect(gi, gj)
+     * may currently deduce gi >> gj in g. As gj must be a subclass of every
+     * member of gi that it doesn't contain itself, only the out-neighbours
+     * of a single member m need to be considered, besides m and the
+     * intersections containing m.
+     * Edges added by intersect(gi, gj) don't invalidate the row for gi, as
+     * every vertex that gets a new in-edge then also gets an edge from gi.
+     */
+    public <E> long[] intersectPartnersOf(IntersectClass gi,
+            DirectedGraph<GraphClass,E> g) {
+        long[] row = BitRow.create(index.size());
+        GraphClass best = null;
+        int bestCost = Integer.MAX_VALUE;
+
+        for (GraphClass m : gi.getSet()) {
+            int k = index.indexOf(m);
+            int cost = (k >= 0 ? g.outDegreeOf(index.get(k)) + 1 : 0) +
+                    size(intersectsByMember.get(m));
+            if (cost < bestCost) {
+                best = m;
+                bestCost = cost;
+            }
+        }
+
+        if (best != null) {
+            int k = index.indexOf(best);
+            if (k >= 0) {
+                BitRow.set(row, k);
+                for (GraphClass v : GAlg.outNeighboursOf(g, index.get(k)))
+                    setVertex(row, v);
+            }
+            setAll(row, intersectsByMember.get(best));
+        }
+        return row;
+    }
+
+
+    /**
+     * Return a row containing every vertex gj for which hereditary(gi, gj)
+     * may currently deduce gi >> gj in g: the out-neighbours of the base of
+     * gi. The row stays valid while hereditary(gi, ...) adds edges, like
+     * for intersectPartnersOf.
+     */
+    public <E> long[] hereditaryPartnersOf(HereditaryClass gi,
+            DirectedGraph<GraphClass,E> g) {
+        long[] row = BitRow.create(index.size());
+        int k = index.indexOf(gi.getBase());
+        if (k >= 0)
+            for (GraphClass v : GAlg.outNeighboursOf(g, index.get(k)))
+                setVertex(row, v);
+        return row;
+    }
+}
+
+/* EOF */
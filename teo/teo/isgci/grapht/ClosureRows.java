@@ -0,0 +1,179 @@
+/*
+ * Successor and predecessor bit rows of a transitively closed graph.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.Arrays;
+
+import org.jgrapht.DirectedGraph;
+
+import teo.isgci.util.BitRow;
+
+/**
+ * Keeps the edges of a directed graph as successor and predecessor bit rows
+ * over a growing VertexIndex. Used by Deducer to maintain transitivity with
+ * row operations instead of an edge lookup per pair of vertices.
+ * The rows are not connected to the graph: Every vertex and edge added to
+ * the graph must also be added here. Removals are not supported.
+ */
+class ClosureRows<V> {
+    /** The vertex ids */
+    private final VertexIndex<V> index;
+    /** succ[i] contains j iff there's an edge i -> j */
+    private long[][] succ;
+    /** pred[i] contains j iff there's an edge j -> i */
+    private long[][] pred;
+    /** Number of vertices for which the rows have room */
+    private int capacity;
+
+
+    /**
+     * Create rows for the vertices and edges of g.
+     */
+    public <E> ClosureRows(DirectedGraph<V,E> g) {
+        index = new VertexIndex<V>(g.vertexSet());
+        capacity = 64;
+        while (capacity < index.size())
+            capacity *= 2;
+        capacity *= 2;               // Room for the classes to be deduced
+        succ = new long[capacity][];
+        pred = new long[capacity][];
+        for (int i = 0; i < index.size(); i++)
+            newRows(i);
+        for (E e : g.edgeSet())
+            addEdge(g.getEdgeSource(e), g.getEdgeTarget(e));
+    }
+
+
+    /**
+     * Allocate empty rows for vertex i.
+     */
+    private void newRows(int i) {
+        succ[i] = BitRow.create(capacity);
+        pred[i] = BitRow.create(capacity);
+    }
+
+
+    /**
+     * Add v (without edges) and return its id.
+     */
+    public int addVertex(V v) {
+        int i = index.indexOf(v);
+        if (i >= 0)
+            return i;
+
+        i = index.add(v);
+        if (i >= capacity) {
+            capacity *= 2;
+            succ = Arrays.copyOf(succ, capacity);
+            pred = Arrays.copyOf(pred, capacity);
+            int words = BitRow.words(capacity);
+            for (int j = 0; j < i; j++) {
+                succ[j] = Arrays.copyOf(succ[j], words);
+                pred[j] = Arrays.copyOf(pred[j], words);
+            }
+        }
+        newRows(i);
+        return i;
+    }
+
+
+    /**
+     * Return the id of v, or -1 if it doesn't exist.
+     */
+    public int indexOf(V v) {
+        return index.indexOf(v);
+    }
+
+
+    /**
+     * Add the edge from -> to. Both vertices must exist.
+     */
+    public void addEdge(V from, V to) {
+        int i = index.indexOf(from);
+        int j = index.indexOf(to);
+        BitRow.set(succ[i], j);
+        BitRow.set(pred[j], i);
+    }
+
+
+    /**
+     * Return true iff the edge from -> to exists.
+     */
+    public boolean containsEdge(V from, V to) {
+        int i = index.indexOf(from);
+        int j = index.indexOf(to);
+        return i >= 0  &&  j >= 0  &&  BitRow.get(succ[i], j);
+    }
+
+
+    /**
+     * Return true iff the edge i -> j exists.
+     */
+    public boolean containsEdge(int i, int j) {
+        return BitRow.get(succ[i], j);
+    }
+
+
+    /**
+     * Return a new row containing i and its successors.
+     */
+    public long[] closedSuccessors(int i) {
+        long[] row = succ[i].clone();
+        BitRow.set(row, i);
+        return row;
+    }
+
+
+    /**
+     * Return a new row containing the predecessors of i that are not
+     * predecessors of j.
+     */
+    public long[] predecessorsNotOf(int i, int j) {
+        long[] row = pred[i].clone();
+        long[] other = pred[j];
+        for (int k = 0; k < row.length; k++)
+            row[k] &= ~other[k];
+        return row;
+    }
+
+
+    /**
+     * Add edges from i to every vertex in targets except i itself, and
+     * store in added the targets that were not successors of i yet.
+     * Returns true iff some edge was added.
+     */
+    public boolean addEdges(int i, long[] targets, long[] added) {
+        boolean self = BitRow.get(succ[i], i);
+        if (!BitRow.or(succ[i], targets, added))
+            return false;
+        if (!self  &&  BitRow.get(added, i)) {
+            BitRow.clear(succ[i], i);
+            BitRow.clear(added, i);
+        }
+        boolean any = false;
+        for (int j = BitRow.nextSetBit(added, 0); j >= 0;
+                j = BitRow.nextSetBit(added, j+1)) {
+            BitRow.set(pred[j], i);
+            any = true;
+        }
+        return any;
+    }
+
+
+    /**
+     * Return the number of words in a row.
+     */
+    public int words() {
+        return BitRow.words(capacity);
+    }
+}
+
+/* EOF */
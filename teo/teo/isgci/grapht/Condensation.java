@@ -0,0 +1,193 @@
+/*
+ * The strongly connected components of a graph, on int ids.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.Arrays;
+
+import org.jgrapht.DirectedGraph;
+
+import teo.isgci.util.BitRow;
+
+/**
+ * A snapshot of a directed graph as int adjacency arrays, together with its
+ * strongly connected components.
+ * The SCCs are numbered 0..count-1 in reverse topological order: every edge
+ * between two different SCCs goes from a higher to a lower number.
+ * Optionally, the reachability relation is calculated as one bit row (over
+ * the vertex ids) per SCC.
+ * Later changes to the graph are not reflected in a Condensation.
+ */
+class Condensation<V,E> {
+    /** The graph we're condensing */
+    final DirectedGraph<V,E> graph;
+    /** Vertex ids */
+    final VertexIndex<V> index;
+    /** out[v] are the ids of the out-neighbours of v */
+    final int[][] out;
+    /** comp[v] is the SCC of v */
+    final int[] comp;
+    /** Number of SCCs */
+    final int count;
+    /** reach[c] contains the vertices reachable from SCC c, including c */
+    long[][] reach;
+
+
+    /**
+     * Create the condensation of g, numbering the vertices in the order of
+     * g.vertexSet().
+     */
+    public Condensation(DirectedGraph<V,E> g) {
+        graph = g;
+        index = new VertexIndex<V>(g.vertexSet());
+
+        int n = index.size();
+        out = new int[n][];
+        for (int v = 0; v < n; v++) {
+            int[] vout = new int[g.outDegreeOf(index.get(v))];
+            int i = 0;
+            for (V w : GAlg.outNeighboursOf(g, index.get(v)))
+                vout[i++] = index.indexOf(w);
+            out[v] = vout;
+        }
+
+        comp = new int[n];
+        count = tarjan();
+        reach = null;
+    }
+
+
+    /**
+     * Return the number of vertices.
+     */
+    public int size() {
+        return out.length;
+    }
+
+
+    /**
+     * Return the members of every SCC, indexed by SCC number.
+     */
+    public int[][] members() {
+        int[] sizes = new int[count];
+        for (int c : comp)
+            sizes[c]++;
+
+        int[][] res = new int[count][];
+        for (int c = 0; c < count; c++)
+            res[c] = new int[sizes[c]];
+        for (int v = comp.length-1; v >= 0; v--)
+            res[comp[v]][--sizes[comp[v]]] = v;
+        return res;
+    }
+
+
+    /**
+     * Calculate the reach rows, if not done yet.
+     */
+    public void calcReach() {
+        if (reach != null)
+            return;
+
+        int n = size();
+        int[][] members = members();
+        int[] lastOred = new int[count];       // Prevents OR-ing twice
+        Arrays.fill(lastOred, -1);
+
+        reach = new long[count][];
+        for (int c = 0; c < count; c++) {
+            long[] row = BitRow.create(n);
+            for (int v : members[c]) {
+                BitRow.set(row, v);
+                for (int w : out[v]) {
+                    int d = comp[w];
+                    if (d != c  &&  lastOred[d] != c) {
+                        BitRow.or(row, reach[d]);
+                        lastOred[d] = c;
+                    }
+                }
+            }
+            reach[c] = row;
+        }
+    }
+
+
+    /**
+     * Return true iff there is a path from vertex v to vertex w. calcReach()
+     * must have been called.
+     */
+    public boolean reaches(int v, int w) {
+        return BitRow.get(reach[comp[v]], w);
+    }
+
+
+    /**
+     * Fill comp using Tarjan's algorithm and return the number of SCCs.
+     * Iterative, as the recursive version overflows the stack on long paths.
+     */
+    private int tarjan() {
+        int n = size();
+        int[] num = new int[n];         // DFS number, 0 = unseen
+        int[] low = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];       // Tarjan's vertex stack
+        int sp = 0;
+        int[] callV = new int[n];       // DFS call stack: vertex...
+        int[] callI = new int[n];       // ...and next out-edge to try
+        int top;
+        int counter = 0;
+        int res = 0;
+
+        for (int s = 0; s < n; s++) {
+            if (num[s] != 0)
+                continue;
+
+            num[s] = low[s] = ++counter;
+            stack[sp++] = s;
+            onStack[s] = true;
+            top = 0;
+            callV[0] = s;
+            callI[0] = 0;
+
+            while (top >= 0) {
+                int v = callV[top];
+                if (callI[top] < out[v].length) {
+                    int w = out[v][callI[top]++];
+                    if (num[w] == 0) {
+                        num[w] = low[w] = ++counter;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        callV[++top] = w;
+                        callI[top] = 0;
+                    } else if (onStack[w]  &&  num[w] < low[v]) {
+                        low[v] = num[w];
+                    }
+                } else {
+                    top--;
+                    if (top >= 0  &&  low[v] < low[callV[top]])
+                        low[callV[top]] = low[v];
+                    if (low[v] == num[v]) {
+                        int w;
+                        do {
+                            w = stack[--sp];
+                            onStack[w] = false;
+                            comp[w] = res;
+                        } while (w != v);
+                        res++;
+                    }
+                }
+            }
+        }
+
+        return res;
+    }
+}
+
+/* EOF */
@@ -14,6 +14,10 @@ import org.jgrapht.DirectedGraph;
 
 public class DFSWalker<V,E> extends GraphWalker<V,E> {
     protected int time;
+    /** Discover and finish times, used instead of WalkerInfo.discover and
+     * WalkerInfo.finish when the walker creates its own WalkerInfos for a
+     * frozen graph */
+    protected IndexedIntAnnotation<V> discovers, finishes;
     
     /**
      * @param graph the graph in which to walk
@@ -29,6 +33,11 @@ public class DFSWalker<V,E> extends GraphWalker<V,E> {
         dynamic = initCode == InitCode.DYNAMIC;
         this.dataAnn = mark != null ? mark :
                  WalkerInfo.createAnnotation(graph);
+        if (mark == null  &&  VertexIndex.getFrozen(graph) != null) {
+            discovers = new IndexedIntAnnotation<V>(
+                    VertexIndex.getFrozen(graph), 0);
+            finishes = new IndexedIntAnnotation<V>(discovers.getIndex(), 0);
+        }
         time = 0;
         
         if (initCode == InitCode.CREATE) {
@@ -41,6 +50,24 @@ public class DFSWalker<V,E> extends GraphWalker<V,E> {
     }
 
 
+    /**
+     * Return the time at which v was discovered, or 0 if it wasn't.
+     */
+    public int getDiscover(V v) {
+        int i = discovers != null ? discovers.getIndex().indexOf(v) : -1;
+        return i >= 0 ? discovers.getNode(i) : getDataNode(v).discover;
+    }
+
+
+    /**
+     * Return the time at which v was finished, or 0 if it wasn't.
+     */
+    public int getFinish(V v) {
+        int i = finishes != null ? finishes.getIndex().indexOf(v) : -1;
+        return i >= 0 ? finishes.getNode(i) : getDataNode(v).finish;
+    }
+
+
     public void run() {
         WalkerInfo wi;
 
@@ -76,7 +103,11 @@ public class DFSWalker<V,E> extends GraphWalker<V,E> {
     public void discover(V v) {
         WalkerInfo wi = getDataNode(v);
         wi.status = Status.SEEN;
-        wi.discover = ++time;
+        int i = discovers != null ? discovers.getIndex().indexOf(v) : -1;
+        if (i >= 0)
+            discovers.setNode(i, ++time);
+        else
+            wi.discover = ++time;
         visit(v);
     }
 
@@ -87,7 +118,11 @@ public class DFSWalker<V,E> extends GraphWalker<V,E> {
     public void finish(V v) {
         WalkerInfo wi = getDataNode(v);
         wi.status = Status.FINISHED;
-        wi.finish = ++time;
+        int i = finishes != null ? finishes.getIndex().indexOf(v) : -1;
+        if (i >= 0)
+            finishes.setNode(i, ++time);
+        else
+            wi.finish = ++time;
     }
 
 
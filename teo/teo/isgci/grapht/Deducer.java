@@ -11,22 +11,25 @@
 
 package teo.isgci.grapht;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.jgrapht.DirectedGraph;
-import org.jgrapht.WeightedGraph;
-import org.jgrapht.alg.FloydWarshallShortestPaths;
-import org.jgrapht.graph.SimpleDirectedGraph;
+import org.jgrapht.graph.DirectedMaskSubgraph;
+import org.jgrapht.graph.MaskFunctor;
 
 import teo.isgci.db.AbstractRelation;
 import teo.isgci.db.Disjointness;
@@ -36,14 +39,18 @@ import teo.isgci.gc.CliqueClass;
 import teo.isgci.gc.ComplementClass;
 import teo.isgci.gc.ForbiddenClass;
 import teo.isgci.gc.GraphClass;
+import teo.isgci.gc.GraphClassFactory;
 import teo.isgci.gc.HereditaryClass;
 import teo.isgci.gc.IntersectClass;
 import teo.isgci.gc.ProbeClass;
 import teo.isgci.gc.SetClass;
 import teo.isgci.gc.UnionClass;
+import teo.isgci.util.BitRow;
 import teo.isgci.util.IDGenerator;
 import teo.isgci.util.Itera;
 import teo.isgci.util.Iterators;
+import teo.isgci.util.ParallelBlocks;
+import teo.isgci.util.UnaryFunction;
 
 public class Deducer {
     
@@ -58,10 +65,12 @@ public class Deducer {
     boolean trace;
     /** Perform consistency checks? */
     boolean checking;
+    /** Keeps the tracedata */
+    private TraceStore traceStore;
     /** Tracedata why the inclusion holds */
-    Annotation<GraphClass,Inclusion,TraceData> traceAnn;
+    TraceStore.View traceAnn;
     /** Tracedata why the inclusion is of this type (properness) */
-    Annotation<GraphClass,Inclusion,TraceData> traceRelAnn;
+    TraceStore.View traceRelAnn;
     /** Classes added in the last run of findTrivialInclusions */
     private ArrayList<GraphClass> newclasses;
     /** The edges that were deduced with subClassOf() */
@@ -72,12 +81,41 @@ public class Deducer {
     private HashSet<Inclusion> uncertains;
     /** Generates the ids for automatically deduces classes (AUTO_*) */
     private IDGenerator idgenerator;
+    /** Builds the derived classes for the ensure*Node calls */
+    private GraphClassFactory factory;
     /** Prefix when printing newly created nodes */
     private String nodedebugprefix;
     /** Print new classes as they are created? */
     private boolean printnewclasses;
     /** Iteration number */
     private int iteration;
+    /** Runs the pairwise scans in findTrivialOnce, null if sequential */
+    private ParallelBlocks parallel;
+    /** Plausible rule partners during findTrivialOnce */
+    private CandidateIndex ruleIndex;
+    /** Vertex ids during a parallel findTrivialOnce */
+    private VertexIndex<GraphClass> scanIndex;
+    /** The edges of graph as bit rows over scanIndex, kept up to date */
+    private long[][] scanEdges;
+    /** Vertices that got new out-/in-edges in the current scan phase */
+    private long[] scanNewOut, scanNewIn;
+    /** Maintain transitivity with bit rows? */
+    private boolean useClosureRows;
+    /** The edges as bit rows during findTrivialInclusions, or null */
+    private ClosureRows<GraphClass> closure;
+    /** The SCCs during findTrivialInclusions, or null */
+    private SCCSets<GraphClass> sccs;
+    /** Collects time and counters per rule, or null */
+    private DeductionProfile profile;
+    /** Leave the sanity checks of findTrivialInclusions to the caller? */
+    private boolean deferChecks;
+    /** The deferred sanity checks of findTrivialInclusions, or null */
+    private SanityChecks sanityChecks;
+    /** The confidence level at which every derived node was added */
+    private HashMap<GraphClass,Integer> nodeLevels;
+    /** The state when continuing from a snapshot (see continueFrom), or
+     * null */
+    private SnapshotContinuation continuation;
     
     
     public Deducer(DirectedGraph<GraphClass,Inclusion> g, boolean trace,
@@ -86,16 +124,136 @@ public class Deducer {
                 1*1000*1000, 5*1000*1000);
         graph.setChecking(checking);
         temporaries = new HashSet<GraphClass>(g.vertexSet().size());
+        // Intern the nodes of the graph, so later requests for the same
+        // class find the node by identity
+        factory = new GraphClassFactory(
+                new UnaryFunction<GraphClass,GraphClass>() {
+                    public GraphClass execute(GraphClass gc) {
+                        GraphClass n = graph.findVertex(gc);
+                        return n != null ? n : gc;
+                    }
+                });
         directs = new HashSet<Inclusion>(1*1000*1000);
         idgenerator = null;
         this.trace = trace;
         this.checking = checking;
         printnewclasses = true;
-        if (trace) {
-            traceAnn = new Annotation<GraphClass,Inclusion,TraceData>(graph);
-            traceRelAnn= new Annotation<GraphClass,Inclusion,TraceData>(graph);
-        }
+        if (trace)
+            setTraceStore(new TraceStore());
         newclasses = null;
+        parallel = null;
+        ruleIndex = null;
+        scanIndex = null;
+        scanEdges = null;
+        useClosureRows = false;
+        closure = null;
+        sccs = null;
+        profile = null;
+        deferChecks = false;
+        sanityChecks = null;
+        nodeLevels = new HashMap<GraphClass,Integer>();
+        continuation = null;
+    }
+
+
+    /**
+     * Set the number of threads used for the pairwise scans of
+     * findTrivialOnce. The results do not depend on the number of threads.
+     */
+    public void setThreads(int threads) {
+        parallel = threads > 1 ? new ParallelBlocks(threads) : null;
+    }
+
+
+    /**
+     * If set, findTrivialInclusions doesn't perform its sanity checks, but
+     * leaves them, on a copy of the graph, to be obtained with
+     * getSanityChecks and run at a convenient time.
+     */
+    public void setDeferredChecks(boolean deferChecks) {
+        this.deferChecks = deferChecks;
+    }
+
+
+    /**
+     * Return the sanity checks deferred by findTrivialInclusions, or null if
+     * there are none.
+     */
+    public SanityChecks getSanityChecks() {
+        return sanityChecks;
+    }
+
+
+    /**
+     * Maintain transitivity in findTrivialInclusions using successor and
+     * predecessor bit rows next to the graph, rather than an edge lookup per
+     * pair of vertices. The results are the same either way.
+     */
+    public void setClosureRows(boolean useClosureRows) {
+        this.useClosureRows = useClosureRows;
+    }
+
+
+    /**
+     * Collect time and counters per rule in the given profile (null for
+     * none).
+     */
+    public void setProfile(DeductionProfile profile) {
+        this.profile = profile;
+    }
+
+
+    /**
+     * Start profiling rule on the current confidence level.
+     */
+    private void startRule(String rule) {
+        nodedebugprefix = "#"+ rule;
+        if (profile != null)
+            profile.start(rule, confidence);
+    }
+
+
+    /**
+     * Stop profiling the current rule.
+     */
+    private void stopRule() {
+        if (profile != null)
+            profile.stop();
+    }
+
+
+    /**
+     * Count n evaluations of the current rule.
+     */
+    private void evaluated(long n) {
+        if (profile != null)
+            profile.evaluated(n);
+    }
+
+
+    /**
+     * Keep the tracedata in the given memory mapped file instead of on the
+     * heap. Must be called before deducing.
+     */
+    public void setTraceFile(String filename) throws IOException {
+        if (trace)
+            setTraceStore(new TraceStore(new File(filename)));
+    }
+
+
+    /**
+     * Close the file that keeps the tracedata, if any.
+     */
+    public void closeTraceFile() throws IOException {
+        if (traceStore != null)
+            traceStore.close();
+    }
+
+
+    private void setTraceStore(TraceStore store) {
+        traceStore = store;
+        traceAnn = store.getView(0);
+        traceRelAnn = store.getView(1);
     }
 
 
@@ -170,6 +328,18 @@ public class Deducer {
             System.out.print((100.0 * count)/edgecount);
             System.out.println("%)");
         }
+
+        long hits = ForbiddenClass.getForbidsCacheHits();
+        long misses = ForbiddenClass.getForbidsCacheMisses();
+        System.out.print("Forbids cache: ");
+        System.out.print(hits);
+        System.out.print(" hits, ");
+        System.out.print(misses);
+        System.out.print(" misses (");
+        System.out.print((100.0 * hits)/Math.max(1, hits + misses));
+        System.out.print("%), ");
+        System.out.print(ForbiddenClass.getForbidsCacheSize());
+        System.out.println(" entries");
     }
 
 
@@ -182,6 +352,51 @@ public class Deducer {
     }
 
 
+    /**
+     * Return the confidence level at which the derived node gc was added,
+     * or the highest one for an input class.
+     */
+    int getNodeLevel(GraphClass gc) {
+        Integer level = nodeLevels.get(gc);
+        return level != null ? level : Inclusion.CONFIDENCE_HIGHEST;
+    }
+
+
+    /**
+     * Give the restored derived class gc the id it had in the snapshot, also
+     * when the deductions create it again.
+     */
+    void restoreID(GraphClass gc) {
+        idgenerator.putID(gc.toString(), gc.getID());
+    }
+
+
+    /**
+     * Let findTrivialInclusions and findTrivialPropers continue from a
+     * graph restored by DeductionSnapshot, instead of deducing everything
+     * again. The restored graph must be closed and deduced for a subset of
+     * the current inputs, with the proper flags of the input inclusions,
+     * and must not contain the inputs that were added since.
+     * As the deductions only add to the graph, the classes get the same
+     * inclusions as in a full run. The restored inclusions of the lower
+     * confidence levels are added back in the saved order and keep their
+     * tracedata, so the same ones are kept by deleteSuperfluousEdges. Only
+     * the order of the inclusions in the graph can differ.
+     * @param loaded the SCCs of the loaded graph, for the sanity checks
+     * @param restored the restored nodes and their confidence level, in
+     * graph order. The ids of the derived classes are kept by restoreID.
+     * @param added the input inclusions that are not in the graph
+     * @param propers the restored inclusions that were proper
+     */
+    void continueFrom(Map<GraphClass,Set<GraphClass> > loaded,
+            Map<GraphClass,Integer> restored, List<Inclusion> added,
+            List<Inclusion> propers) {
+        continuation = new SnapshotContinuation(loaded, restored, added,
+                propers);
+        nodeLevels.putAll(restored);
+    }
+
+
     /**
      * Return the number of edges with the given confidence level.
      */
@@ -203,14 +418,25 @@ public class Deducer {
     public Collection<Inclusion> deleteSuperfluousEdges() {
         Collection<Inclusion> deleted = new ArrayList<Inclusion>();
 
-        // First delete the bulk using weighted shortest paths
-        WeightedGraph<GraphClass,Inclusion> wg = keeperWeightedGraph();
-        FloydWarshallShortestPaths<GraphClass,Inclusion> fw =
-            new FloydWarshallShortestPaths<GraphClass,Inclusion>(wg);
-        for (Inclusion e : graph.edgeSet())
-            if (keeperWeight(e) > fw.shortestDistance(
-                    graph.getEdgeSource(e), graph.getEdgeTarget(e)))
+        // First delete the bulk: All edges with prio 1 that are bridged by a
+        // path of prio 2 edges and with prio 0 that are bridged by a path of
+        // prio 1 and 2 edges. Such paths remain, as prio 2 is never deleted.
+        Condensation<GraphClass,Inclusion> over2 =
+                new Condensation<GraphClass,Inclusion>(keeperSubgraph(2));
+        Condensation<GraphClass,Inclusion> over1 =
+                new Condensation<GraphClass,Inclusion>(keeperSubgraph(1));
+        over2.calcReach();
+        over1.calcReach();
+        for (Inclusion e : graph.edgeSet()) {
+            int prio = keeperPrio(e);
+            if (prio == 2)
+                continue;
+            Condensation<GraphClass,Inclusion> over = prio == 1 ? over2:over1;
+            if (over.reaches(over.index.indexOf(graph.getEdgeSource(e)),
+                    over.index.indexOf(graph.getEdgeTarget(e))))
                 deleted.add(e);
+        }
+        over1 = over2 = null;
         for (Inclusion e : deleted)
             removeEdge(e);
 
@@ -222,14 +448,20 @@ public class Deducer {
 
 
     /**
-     * Return a weighted version of the deductions graph, designed for easily
-     * recognizing edges that can deleted (see keeperWeight).
+     * Return the subgraph of the deductions graph with the edges of at least
+     * the given keeperPrio.
      */
-    protected WeightedGraph<GraphClass,Inclusion> keeperWeightedGraph() {
-        Map<Inclusion,Double> map = new HashMap<Inclusion,Double>();
-        for (Inclusion e : graph.edgeSet())
-            map.put(e, new Double(keeperWeight(e)));
-        return new AsWeightedDirectedGraph(graph, map);
+    private DirectedGraph<GraphClass,Inclusion> keeperSubgraph(
+            final int prio) {
+        return new DirectedMaskSubgraph<GraphClass,Inclusion>(graph,
+                new MaskFunctor<GraphClass,Inclusion>() {
+                    public boolean isEdgeMasked(Inclusion e) {
+                        return keeperPrio(e) < prio;
+                    }
+                    public boolean isVertexMasked(GraphClass v) {
+                        return false;
+                    }
+                });
     }
 
 
@@ -240,35 +472,12 @@ public class Deducer {
      */
     public Collection<Inclusion> deleteSuperfluousEdges(int prio){
         final HashSet<Inclusion> deleted = new HashSet<Inclusion>();
+        TransitiveReducer<GraphClass,Inclusion> reducer =
+                new TransitiveReducer<GraphClass,Inclusion>(graph);
 
         for (Inclusion edge : graph.edgeSet()) {
-            if (keeperPrio(edge) != prio)
-                continue;
-
-            final GraphClass src = graph.getEdgeSource(edge);
-            final GraphClass dest = graph.getEdgeTarget(edge);
-            final Inclusion theedge = edge;
-            final ArrayList reached = new ArrayList();
-
-            new BFSWalker<GraphClass,Inclusion>(graph, src, null,
-                    GraphWalker.InitCode.DYNAMIC) {
-                public void explore(Inclusion e, GraphClass from,
-                        GraphClass to) {
-                    if (e != theedge  &&  !deleted.contains(e))
-                        super.explore(e, graph.getEdgeSource(e),
-                                graph.getEdgeTarget(e));
-                }
-                public void visit(GraphClass v) {
-                    if (v == dest) {
-                        reached.add(v);
-                        q.clear();
-                    }
-                    else
-                        super.visit(v);
-                }
-
-            }.run();
-            if (!reached.isEmpty())
+            if (keeperPrio(edge) == prio  &&
+                    reducer.deleteIfSuperfluous(edge))
                 deleted.add(edge);
         }
 
@@ -288,28 +497,15 @@ public class Deducer {
         if (e.getRefs() != null  &&  !e.getRefs().isEmpty())
             return 2;
 
-        TraceData td = traceAnn.getEdge(e);
+        String desc = traceAnn.getDesc(e);
 
-        if (td == null  ||  "Transitivity".equals(td.desc))
+        if (desc == null  ||  "Transitivity".equals(desc))
             return 0;
 
         return 1;
     }
 
 
-    /*
-     * Return weights for the edges of the deductions graph, designed for
-     * easily recognizing edges that can deleted. Every edge has weight
-     * depending on keeperPrio: 2->0.0001, 1->1, 0->10000. If the shortest path
-     * a->b is shorter than the edge weight, this means the edge can surely be
-     * deleted.
-     */
-    private double keeperWeight(Inclusion e) {
-        final double[] weights = {10000.0, 1.0, 0.0001};
-        return weights[keeperPrio(e)];
-    }
-
-
     /**
      * Reduction that removes edges between SCCs for which a path exists.
      * Sort of a transitive reduction except that edges inside an SCC are
@@ -319,38 +515,12 @@ public class Deducer {
      * Returns the deleted edges.
      */
     public Collection<Inclusion> deleteSuperfluousEdgesFull(){
-        int i;
         final List<Inclusion> deleted = new ArrayList<Inclusion>();
-        Map<GraphClass,Set<GraphClass> > scc = GAlg.calcSCCMap(graph);
+        TransitiveReducer<GraphClass,Inclusion> reducer =
+                new TransitiveReducer<GraphClass,Inclusion>(graph);
 
         for (Inclusion edge : graph.edgeSet()) {
-            final GraphClass src = graph.getEdgeSource(edge);
-            final GraphClass dest = graph.getEdgeTarget(edge);
-
-            if (scc.get(src) == scc.get(dest))
-                continue;
-
-            final Inclusion theedge = edge;
-            final ArrayList reached = new ArrayList();
-
-            new BFSWalker<GraphClass,Inclusion>(graph, src, null,
-                    GraphWalker.InitCode.DYNAMIC) {
-                public void explore(Inclusion e, GraphClass from,
-                        GraphClass to) {
-                    if (e != theedge  &&  !deleted.contains(e))
-                        super.explore(e, from, to);
-                }
-                public void visit(GraphClass v) {
-                    if (v == dest) {
-                        reached.add(v);
-                        q.clear();
-                    }
-                    else
-                        super.visit(v);
-                }
-
-            }.run();
-            if (!reached.isEmpty())
+            if (!reducer.isInner(edge)  &&  reducer.deleteIfSuperfluous(edge))
                 deleted.add(edge);
         }
 
@@ -364,26 +534,26 @@ public class Deducer {
      * Adds reference strings for trivially deduced inclusions.
      */
     public void addRefs() {
-        TraceData tr;
+        String desc;
 
         for (Inclusion e : graph.edgeSet()) {
-            tr = traceAnn.getEdge(e);
-            if (tr == null)
+            desc = traceAnn.getDesc(e);
+            if (desc == null)
                 continue;
 
-            if ("direct".equals(tr.desc)) {
+            if ("direct".equals(desc)) {
                 e.addRef(new Ref( graph.getEdgeTarget(e).whySubClassOf() ));
-            } else if ("addForbiddenSuper".equals(tr.desc)) {
+            } else if ("addForbiddenSuper".equals(desc)) {
                 e.addRef(new Ref("forbidden"));
-            } else if ("addForbiddenSuperConfig".equals(tr.desc)) {
+            } else if ("addForbiddenSuperConfig".equals(desc)) {
                 e.addRef(new Ref("forbidden"));
-            } else if ("extendForbidden".equals(tr.desc)) {
+            } else if ("extendForbidden".equals(desc)) {
                 e.addRef(new Ref("forbidden"));
-            } else if ("complement".equals(tr.desc)) {
+            } else if ("complement".equals(desc)) {
                 e.addRef(new Ref("complement"));
-            } else if ("probeclass".equals(tr.desc)) {
+            } else if ("probeclass".equals(desc)) {
                 e.addRef(new Ref("basederived"));
-            } else if ("cliqueclass".equals(tr.desc)) {
+            } else if ("cliqueclass".equals(desc)) {
                 e.addRef(new Ref("basederived"));
             }
         }
@@ -392,12 +562,14 @@ public class Deducer {
 
     /**
      * Remove the edges with confidence levels below the highest one and store
-     * them in uncertains.
+     * them in uncertains. The edges of a restored graph are kept in the saved
+     * order, which is the order in which the full run added them.
      */
     private void separateUncertains() {
         int i;
 
-        uncertains = new HashSet<Inclusion>();
+        uncertains = continuation == null ? new HashSet<Inclusion>() :
+                new LinkedHashSet<Inclusion>();
         for (Inclusion e : graph.edgeSet()) {
             if (e.getConfidence() < Inclusion.CONFIDENCE_HIGHEST)
                 uncertains.add(e);
@@ -411,7 +583,9 @@ public class Deducer {
 
     /**
      * Add the uncertains of the current confidence level back into the graph.
-     * They are removed from uncertains.
+     * They are removed from uncertains. When continuing from a snapshot, a
+     * restored inclusion keeps its tracedata, as its refs and keeperPrio()
+     * follow from it.
      * Returns the number of edges added.
      */
     private int addUncertains() {
@@ -422,12 +596,24 @@ public class Deducer {
         while (iter.hasNext()) {
             e =  iter.next();
             if (e.getConfidence() == confidence) {
-                if (!containsEdge(e.getSuper(), e.getSub())) {
-                    Inclusion e2 = addTrivialEdge(e.getSuper(), e.getSub());
+                GraphClass from = e.getSuper();
+                GraphClass to = e.getSub();
+                if (continuation != null) {
+                    // A restored node can have been deduced again
+                    from = graph.findVertex(from);
+                    to = graph.findVertex(to);
+                }
+                if (!containsEdge(from, to)) {
+                    Inclusion e2 = addTrivialEdge(from, to);
                     e2.setConfidence(e.getConfidence());
                     e2.setProper(e.isProper());
                     e2.setRefs(e.getRefs());
+                    if (continuation != null  &&  trace)
+                        traceAnn.setEdge(e2, traceAnn.getEdge(e));
                 }
+                // A restored inclusion is not new
+                if (continuation != null)
+                    continuation.addedEdges.remove(getEdge(from, to));
                 iter.remove();
                 i++;
             }
@@ -436,6 +622,99 @@ public class Deducer {
     }
 
 
+    /**
+     * Add the uncertains of the current confidence level back into the
+     * graph, and when continuing from a snapshot also the restored nodes
+     * and the added inputs of this level.
+     * Returns the number of nodes and edges added.
+     */
+    private int addLevel() {
+        if (continuation == null)
+            return addUncertains();
+        return addLaterNodes() + addAddedInputs() + addUncertains();
+    }
+
+
+    /**
+     * Return true iff restored nodes or added inputs of lower confidence
+     * levels are still to be added.
+     */
+    private boolean hasLaterInputs() {
+        return continuation != null  &&
+                continuation.hasLaterInputs(confidence);
+    }
+
+
+    /**
+     * Add the added inputs of the current confidence level into the graph,
+     * when continuing from a snapshot. An input takes over the refs of an
+     * inclusion that was deduced on the same level.
+     * Returns the number of inputs added.
+     */
+    private int addAddedInputs() {
+        int i = 0;
+
+        for (Inclusion e : continuation.addedInputs) {
+            if (e.getConfidence() != confidence)
+                continue;
+            GraphClass from = graph.findVertex(e.getSuper());
+            GraphClass to = graph.findVertex(e.getSub());
+            Inclusion e2 = getEdge(from, to);
+            if (e2 == null) {
+                e2 = addTrivialEdge(from, to);
+                e2.setConfidence(e.getConfidence());
+            } else if (e2.getConfidence() != confidence) {
+                continue;
+            } else if (trace) {
+                traceAnn.setEdge(e2, null);
+            }
+            e2.setProper(e.isProper());
+            e2.setRefs(e.getRefs());
+            i++;
+        }
+        return i;
+    }
+
+
+    /**
+     * Remove the restored nodes of lower confidence levels from the graph,
+     * when continuing from a snapshot. Their inclusions must be removed
+     * already.
+     */
+    private void separateLaterNodes() {
+        for (GraphClass gc : continuation.laterNodes.keySet())
+            graph.removeVertex(gc);
+    }
+
+
+    /**
+     * Add the restored nodes of the current confidence level back into the
+     * graph, unless they were deduced again already. They are removed from
+     * laterNodes.
+     * Returns the number of nodes added.
+     */
+    private int addLaterNodes() {
+        int i = 0;
+
+        Iterator<Map.Entry<GraphClass,Integer> > iter =
+                continuation.laterNodes.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<GraphClass,Integer> entry = iter.next();
+            if (entry.getValue() != confidence)
+                continue;
+            GraphClass gc = entry.getKey();
+            if (graph.findVertex(gc) == null) {
+                graph.addVertex(gc);
+                if (closure != null)
+                    closure.addVertex(gc);
+            }
+            iter.remove();
+            i++;
+        }
+        return i;
+    }
+
+
     /**
      * Deduce all trivial inclusions. The resulting graph is transitively
      * closed.
@@ -445,15 +724,28 @@ public class Deducer {
 
         /*markOriginals();*/
         //buildHash();
-        sccBefore = GAlg.calcSCCMap(graph);
+        boolean restored = continuation != null;
+        sccBefore = restored ? continuation.loadedSCCs :
+                GAlg.calcSCCMap(graph);
         separateUncertains();
+        if (restored)
+            separateLaterNodes();
         if (checking)
             graph.check();
-        GAlg.transitiveClosure(graph);
+        // A restored graph is closed already
+        if (!restored)
+            GAlg.transitiveClosure(graph);
         //buildEdgeCache();
+        if (useClosureRows)
+            closure = new ClosureRows<GraphClass>(graph);
+        sccs = new SCCSets<GraphClass>(graph);
 
         confidence = Inclusion.CONFIDENCE_HIGHEST;
         iteration = 0;
+        if (restored) {
+            startRule("uncertain");
+            addAddedInputs();
+        }
         do {
             System.out.print("confidence level: ");
             System.out.println(confidence);
@@ -464,14 +756,17 @@ public class Deducer {
             if (checking)
                 graph.check();
 
-            if (uncertains.isEmpty())
+            if (uncertains.isEmpty()  &&  !hasLaterInputs())
                 break;
 
             do {
                 confidence--;
+                startRule("uncertain");
             } while (confidence >= Inclusion.CONFIDENCE_LOWEST  &&
-                    addUncertains() == 0);
+                    addLevel() == 0);
         } while (confidence >= Inclusion.CONFIDENCE_LOWEST);
+        stopRule();
+        closure = null;
 
         /*System.out.println("Adding complements");
         Vector classes = (Vector) nodeList.clone();
@@ -480,10 +775,17 @@ public class Deducer {
         System.out.println("     Edges: "+countEdges());*/
 
         tempify();
-        sccAfter = GAlg.calcSCCMap(graph);
-        sanityCheckSCC(sccBefore, sccAfter);
-        sanityCheckForbidden();
-        sanityCheckForbiddenNonEdge();
+        checkSCCs();
+        sccAfter = sccs.toMap(graph.vertexSet());
+        sccs = null;
+        SanityChecks checks = new SanityChecks(graph, sccBefore, sccAfter,
+                parallel != null ? parallel.getThreads() : 1);
+        if (deferChecks) {
+            sanityChecks = checks;
+        } else {
+            checks.run();
+            checks.print(System.out);
+        }
     }
 
 
@@ -511,22 +813,22 @@ public class Deducer {
                 // Sort added classes by id
                 sortByID(added);
                 // (A,B)-free ==> A-free \cap B-free
-                nodedebugprefix = "#forbidden2intersect";
+                startRule("forbidden2intersect");
                 forbidden2Intersect(added);
                 // A-free \cap B-free ==> (A,B)-free
-                nodedebugprefix = "#extendforbidden";
+                startRule("extendforbidden");
                 extendForbidden();              // Uses inclusions!
                 // X ==> clique X for clique fixed
-                nodedebugprefix = "#addcliquefixed";
+                startRule("addcliquefixed");
                 addCliqueFixed(added);
                 // X ==> co-X for forbidden and self-compl
-                nodedebugprefix = "#addcomplements1";
+                startRule("addcomplements1");
                 addComplements1(added);
                 // co-(A-free) ==> (co-A)-free
-                nodedebugprefix = "#correspond";
+                startRule("correspond");
                 correspondCompAndForbidden(added);
                 // For A\c.p B add co-(A\c.p B) <==> co-A \c.p co-B
-                nodedebugprefix = "#addcomplements2";
+                startRule("addcomplements2");
                 addComplements2();
                 lastnewclasses.addAll(added);
             } while (newclasses.size() > 0); 
@@ -542,6 +844,7 @@ public class Deducer {
         TraceData tr;
         Inclusion e;
         int i, j;
+        long[] row;
 
         ArrayList<ComplementClass> complements =
                 new ArrayList<ComplementClass>();
@@ -567,15 +870,32 @@ public class Deducer {
                 cliques.add((CliqueClass) g);
         }
 
+        // Only pairs in the rows of ruleIndex are tested. The pairs are
+        // visited in vertexSet() order, like an exhaustive loop would.
+        startRule("candidateindex");
+        ruleIndex = new CandidateIndex(
+                new VertexIndex<GraphClass>(graph.vertexSet()));
+        VertexIndex<GraphClass> index = ruleIndex.getIndex();
+        if (parallel != null)
+            startScan();
+
         // find direct trivial inclusions and insert corresponding edges
         System.out.println("direct");
+        startRule("direct");
         tr = trace ? new TraceData("direct") : null;
-        if (graph.vertexSet().size() > classes.size()) {
+        if (parallel != null) {
+            scanDirect(classes, tr);
+        } else if (graph.vertexSet().size() > classes.size()) {
             // Some classes pre-existing, some new: Check all-new and new-all
             for (GraphClass gi : classes) {
-                for (GraphClass gj : graph.vertexSet())  {
+                row = ruleIndex.supersOf(gi);
+                BitRow.or(row, ruleIndex.subsOf(gi));
+                for (j = BitRow.nextSetBit(row, 0); j >= 0;
+                        j = BitRow.nextSetBit(row, j+1)) {
+                    GraphClass gj = index.get(j);
                     if (gi == gj)
                         continue;
+                    evaluated(2);
                     if (!containsEdge(gj, gi)  &&  gi.subClassOf(gj)) {
                         if ((e = addTrivialEdge(gj, gi, tr)) != null)
                             directs.add(e);
@@ -589,9 +909,13 @@ public class Deducer {
         } else {   // All classes are new
             for (GraphClass gi : graph.vertexSet())  {
                 //System.out.println(gi.getID());
-                for (GraphClass gj : graph.vertexSet()) {
+                row = ruleIndex.supersOf(gi);
+                for (j = BitRow.nextSetBit(row, 0); j >= 0;
+                        j = BitRow.nextSetBit(row, j+1)) {
+                    GraphClass gj = index.get(j);
                     if (gi == gj)
                         continue;
+                    evaluated(1);
                     if (!containsEdge(gj, gi)  &&  gi.subClassOf(gj)) {
                         //System.out.println("   "+ gj.getID() +" -> "+
                                 //gi.getID());
@@ -604,6 +928,7 @@ public class Deducer {
 
         // Complement must be handled specially (works in all ways)
         System.out.println("complement");
+        startRule("complement");
         for (i = complements.size()-1; i >= 0; i--) {
             for (j = 0; j <= i; j++)    // i=j important for self-compls
                 complement(complements.get(i), complements.get(j));
@@ -611,39 +936,61 @@ public class Deducer {
 
         // Everything works against unions
         System.out.println("union");
-        for (UnionClass gi : unions) {
-            for (GraphClass gj : graph.vertexSet()) {
-                if (gi == gj)
-                    continue;
-                if (!containsEdge(gj, gi))
-                    union(gj, gi);
+        startRule("union");
+        if (parallel != null)
+            scanUnions(unions);
+        else
+            for (UnionClass gi : unions) {
+                row = ruleIndex.unionPartnersOf(gi, graph);
+                for (j = BitRow.nextSetBit(row, 0); j >= 0;
+                        j = BitRow.nextSetBit(row, j+1)) {
+                    GraphClass gj = index.get(j);
+                    if (gi == gj)
+                        continue;
+                    if (!containsEdge(gj, gi))
+                        union(gj, gi);
+                }
             }
-        }
 
         // Intersects work against everything
         System.out.println("intersect");
-        for (IntersectClass gi : intersects) {
-            for (GraphClass gj : graph.vertexSet()) {
-                if (gi == gj)
-                    continue;
-                if (!containsEdge(gi, gj))
-                    intersect(gi, gj);
+        startRule("intersect");
+        if (parallel != null)
+            scanIntersects(intersects);
+        else
+            for (IntersectClass gi : intersects) {
+                row = ruleIndex.intersectPartnersOf(gi, graph);
+                for (j = BitRow.nextSetBit(row, 0); j >= 0;
+                        j = BitRow.nextSetBit(row, j+1)) {
+                    GraphClass gj = index.get(j);
+                    if (gi == gj)
+                        continue;
+                    if (!containsEdge(gi, gj))
+                        intersect(gi, gj);
+                }
             }
-        }
 
         // Hereditaries work against everything
         System.out.println("hereditary");
-        for (HereditaryClass gi : hereditaries) {
-            for (GraphClass gj : graph.vertexSet()) {
-                if (gi == gj)
-                    continue;
-                if (!containsEdge(gi, gj))
-                    hereditary(gi, gj);
+        startRule("hereditary");
+        if (parallel != null)
+            scanHereditaries(hereditaries);
+        else
+            for (HereditaryClass gi : hereditaries) {
+                row = ruleIndex.hereditaryPartnersOf(gi, graph);
+                for (j = BitRow.nextSetBit(row, 0); j >= 0;
+                        j = BitRow.nextSetBit(row, j+1)) {
+                    GraphClass gj = index.get(j);
+                    if (gi == gj)
+                        continue;
+                    if (!containsEdge(gi, gj))
+                        hereditary(gi, gj);
+                }
             }
-        }
 
         // Probes work against probes
         System.out.println("probe");
+        startRule("probe");
         for (ProbeClass gi : probes) {
             for (ProbeClass gj : probes) {
                 if (gi == gj)
@@ -655,6 +1002,7 @@ public class Deducer {
 
         // Cliques work against cliques
         System.out.println("clique");
+        startRule("clique");
         for (CliqueClass gi : cliques) {
             for (CliqueClass gj : cliques) {
                 if (gi == gj)
@@ -663,10 +1011,395 @@ public class Deducer {
                     clique(gi, gj);
             }
         }
+
+        endScan();
+        stopRule();
+    }
+
+
+    //------------------------ Parallel scans ---------------------------
+    //
+    // The pairwise tests of findTrivialOnce are evaluated by several threads
+    // against scanEdges, while the graph is not modified. The pairs for
+    // which a test succeeded are then applied by a single thread in the
+    // same order as the sequential loops do, so the deduced edges and their
+    // tracedata are the same.
+    // As edges are only added, a test that succeeded stays true. A test that
+    // failed is re-evaluated during replay if the edges it depends on may
+    // have changed (scanNewOut/scanNewIn).
+
+    /**
+     * Number the vertices and mirror the edges into scanEdges.
+     */
+    private void startScan() {
+        scanIndex = ruleIndex.getIndex();
+        int n = scanIndex.size();
+        scanEdges = new long[n][];
+        for (int i = 0; i < n; i++)
+            scanEdges[i] = BitRow.create(n);
+        for (Inclusion e : graph.edgeSet())
+            BitRow.set(scanEdges[scanIndex.indexOf(graph.getEdgeSource(e))],
+                    scanIndex.indexOf(graph.getEdgeTarget(e)));
+        scanNewOut = BitRow.create(n);
+        scanNewIn = BitRow.create(n);
+    }
+
+
+    /**
+     * Free the candidate index and the data of the parallel scans.
+     */
+    private void endScan() {
+        ruleIndex = null;
+        scanIndex = null;
+        scanEdges = null;
+        scanNewOut = scanNewIn = null;
+    }
+
+
+    /**
+     * Start a new scan phase: Forget which vertices got new edges.
+     */
+    private void resetScanPhase() {
+        Arrays.fill(scanNewOut, 0L);
+        Arrays.fill(scanNewIn, 0L);
+    }
+
+
+    /**
+     * Register the addition of edge from -> to for the scans.
+     */
+    private void scanEdgeAdded(GraphClass from, GraphClass to) {
+        int i = scanIndex.indexOf(from);
+        int j = scanIndex.indexOf(to);
+        BitRow.set(scanEdges[i], j);
+        BitRow.set(scanNewOut, i);
+        BitRow.set(scanNewIn, j);
+    }
+
+
+    /**
+     * Return true iff scanEdges contains an edge from -> to. Vertices
+     * that are not in the graph have no edges.
+     */
+    private boolean scanContains(GraphClass from, int to) {
+        int i = scanIndex.indexOf(from);
+        return i >= 0  &&  BitRow.get(scanEdges[i], to);
+    }
+
+
+    /**
+     * Run f in parallel over n items with the graph read-only, so the
+     * blocks can query it, but a block that tries to modify it fails.
+     */
+    private <T> List<T> runReadOnly(int n,
+            ParallelBlocks.BlockFunction<T> f) {
+        boolean old = graph.setReadOnly(true);
+        try {
+            return parallel.run(n, f);
+        } finally {
+            graph.setReadOnly(old);
+        }
+    }
+
+
+    /**
+     * Concatenate the candidate lists produced by the blocks of a scan.
+     */
+    private static List<Long> mergeCandidates(List<List<Long> > blocks) {
+        List<Long> res = new ArrayList<Long>();
+        for (List<Long> block : blocks)
+            res.addAll(block);
+        return res;
+    }
+
+
+    /**
+     * Parallel version of the direct phase of findTrivialOnce.
+     * Candidates are encoded as (row*n + column)*2 + direction.
+     */
+    private void scanDirect(ArrayList<GraphClass> classes, TraceData tr) {
+        Inclusion e;
+        final int n = scanIndex.size();
+        // Rows are the new classes, or all classes if all are new
+        final boolean allNew = n <= classes.size();
+        final List<GraphClass> rows = allNew ?
+                new ArrayList<GraphClass>(graph.vertexSet()) : classes;
+
+        resetScanPhase();
+        List<Long> candidates = mergeCandidates(runReadOnly(rows.size(),
+                new ParallelBlocks.BlockFunction<List<Long> >() {
+            public List<Long> execute(int from, int to) {
+                List<Long> res = new ArrayList<Long>();
+                long tests = 0;
+                for (int r = from; r < to; r++) {
+                    GraphClass gi = rows.get(r);
+                    int i = scanIndex.indexOf(gi);
+                    long[] row = ruleIndex.supersOf(gi);
+                    if (!allNew)
+                        BitRow.or(row, ruleIndex.subsOf(gi));
+                    for (int j = BitRow.nextSetBit(row, 0); j >= 0;
+                            j = BitRow.nextSetBit(row, j+1)) {
+                        GraphClass gj = scanIndex.get(j);
+                        if (gi == gj)
+                            continue;
+                        tests += allNew ? 1 : 2;
+                        long key = ((long) r * n + j) * 2;
+                        if (!BitRow.get(scanEdges[j], i)  &&
+                                gi.subClassOf(gj))
+                            res.add(key);
+                        if (!allNew  &&  !BitRow.get(scanEdges[i], j)  &&
+                                gj.subClassOf(gi))
+                            res.add(key + 1);
+                    }
+                }
+                evaluated(tests);
+                return res;
+            }
+        }));
+
+        // The tests are independent of the edges, so only the candidates
+        // need to be replayed.
+        for (long key : candidates) {
+            GraphClass gi = rows.get((int) (key / 2 / n));
+            GraphClass gj = scanIndex.get((int) (key / 2 % n));
+            if (key % 2 == 0) {
+                if (!containsEdge(gj, gi)) {
+                    if ((e = addTrivialEdge(gj, gi, tr)) != null)
+                        directs.add(e);
+                }
+            } else {
+                if (!containsEdge(gi, gj)) {
+                    if ((e = addTrivialEdge(gi, gj, tr)) != null)
+                        directs.add(e);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Parallel version of the union phase of findTrivialOnce.
+     */
+    private void scanUnions(final List<UnionClass> unions) {
+        final int n = scanIndex.size();
+        // The rows are taken here, as the blocks don't query the graph
+        final long[][] rows = new long[unions.size()][];
+        for (int r = 0; r < rows.length; r++)
+            rows[r] = ruleIndex.unionPartnersOf(unions.get(r), graph);
+
+        resetScanPhase();
+        List<Long> candidates = mergeCandidates(runReadOnly(
+                unions.size(),
+                new ParallelBlocks.BlockFunction<List<Long> >() {
+            public List<Long> execute(int from, int to) {
+                List<Long> res = new ArrayList<Long>();
+                for (int r = from; r < to; r++) {
+                    UnionClass gi = unions.get(r);
+                    int i = scanIndex.indexOf(gi);
+                    long[] row = rows[r];
+                    for (int j = BitRow.nextSetBit(row, 0); j >= 0;
+                            j = BitRow.nextSetBit(row, j+1)) {
+                        if (j != i  &&  !BitRow.get(scanEdges[j], i)  &&
+                                scanUnion(j, gi))
+                            res.add((long) r * n + j);
+                    }
+                }
+                return res;
+            }
+        }));
+
+        // union(gj, gi) depends on the out-edges of gj only, so a pair that
+        // was not a candidate can only succeed if gj got new out-edges. Like
+        // in the sequential loop, the row is taken from the current graph
+        // and every pair without an edge counts as an evaluation.
+        int next = 0;
+        for (int r = 0; r < unions.size(); r++) {
+            UnionClass gi = unions.get(r);
+            long[] row = ruleIndex.unionPartnersOf(gi, graph);
+            for (int j = BitRow.nextSetBit(row, 0); j >= 0;
+                    j = BitRow.nextSetBit(row, j+1)) {
+                long key = (long) r * n + j;
+                while (next < candidates.size()  &&
+                        candidates.get(next) < key)
+                    next++;
+                GraphClass gj = scanIndex.get(j);
+                if (gi == gj  ||  containsEdge(gj, gi))
+                    continue;
+                if ((next < candidates.size()  &&
+                        candidates.get(next) == key)  ||
+                        BitRow.get(scanNewOut, j))
+                    union(gj, gi);
+                else
+                    evaluated(1);
+            }
+        }
+    }
+
+
+    /**
+     * Return true iff union(gj, gi) would deduce an edge in scanEdges.
+     */
+    private boolean scanUnion(int j, UnionClass gi) {
+        GraphClass gj = scanIndex.get(j);
+        Set<GraphClass> jset = gj instanceof UnionClass ?
+                ((UnionClass) gj).getSet() : null;
+
+        for (GraphClass gc : gi.getSet()) {
+            if (jset != null ? jset.contains(gc) : gc.equals(gj))
+                continue;
+            int k = scanIndex.indexOf(gc);
+            if (k < 0  ||  !BitRow.get(scanEdges[j], k))
+                return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Parallel version of the intersect phase of findTrivialOnce.
+     */
+    private void scanIntersects(final List<IntersectClass> intersects) {
+        final int n = scanIndex.size();
+        // The rows are taken here, as the blocks don't query the graph
+        final long[][] rows = new long[intersects.size()][];
+        for (int r = 0; r < rows.length; r++)
+            rows[r] = ruleIndex.intersectPartnersOf(intersects.get(r),
+                    graph);
+
+        resetScanPhase();
+        List<Long> candidates = mergeCandidates(runReadOnly(
+                intersects.size(),
+                new ParallelBlocks.BlockFunction<List<Long> >() {
+            public List<Long> execute(int from, int to) {
+                List<Long> res = new ArrayList<Long>();
+                for (int r = from; r < to; r++) {
+                    IntersectClass gi = intersects.get(r);
+                    int i = scanIndex.indexOf(gi);
+                    long[] row = rows[r];
+                    for (int j = BitRow.nextSetBit(row, 0); j >= 0;
+                            j = BitRow.nextSetBit(row, j+1)) {
+                        if (j != i  &&  !BitRow.get(scanEdges[i], j)  &&
+                                scanIntersect(gi, j))
+                            res.add((long) r * n + j);
+                    }
+                }
+                return res;
+            }
+        }));
+
+        // intersect(gi, gj) depends on the in-edges of gj only, see scanUnions
+        int next = 0;
+        for (int r = 0; r < intersects.size(); r++) {
+            IntersectClass gi = intersects.get(r);
+            long[] row = ruleIndex.intersectPartnersOf(gi, graph);
+            for (int j = BitRow.nextSetBit(row, 0); j >= 0;
+                    j = BitRow.nextSetBit(row, j+1)) {
+                long key = (long) r * n + j;
+                while (next < candidates.size()  &&
+                        candidates.get(next) < key)
+                    next++;
+                GraphClass gj = scanIndex.get(j);
+                if (gi == gj  ||  containsEdge(gi, gj))
+                    continue;
+                if ((next < candidates.size()  &&
+                        candidates.get(next) == key)  ||
+                        BitRow.get(scanNewIn, j))
+                    intersect(gi, gj);
+                else
+                    evaluated(1);
+            }
+        }
+    }
+
+
+    /**
+     * Return true iff intersect(gi, gj) would deduce an edge in scanEdges.
+     */
+    private boolean scanIntersect(IntersectClass gi, int j) {
+        GraphClass gj = scanIndex.get(j);
+        Set<GraphClass> jset = gj instanceof IntersectClass ?
+                ((IntersectClass) gj).getSet() : null;
+
+        for (GraphClass gc : gi.getSet()) {
+            if (jset != null ? jset.contains(gc) : gc.equals(gj))
+                continue;
+            if (!scanContains(gc, j))
+                return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Parallel version of the hereditary phase of findTrivialOnce.
+     */
+    private void scanHereditaries(final List<HereditaryClass> hereditaries) {
+        final int n = scanIndex.size();
+        // The rows are taken here, as the blocks don't query the graph
+        final long[][] rows = new long[hereditaries.size()][];
+        for (int r = 0; r < rows.length; r++)
+            rows[r] = ruleIndex.hereditaryPartnersOf(hereditaries.get(r),
+                    graph);
+
+        resetScanPhase();
+        List<Long> candidates = mergeCandidates(runReadOnly(
+                hereditaries.size(),
+                new ParallelBlocks.BlockFunction<List<Long> >() {
+            public List<Long> execute(int from, int to) {
+                List<Long> res = new ArrayList<Long>();
+                for (int r = from; r < to; r++) {
+                    HereditaryClass gi = hereditaries.get(r);
+                    int i = scanIndex.indexOf(gi);
+                    long[] row = rows[r];
+                    for (int j = BitRow.nextSetBit(row, 0); j >= 0;
+                            j = BitRow.nextSetBit(row, j+1)) {
+                        if (j != i  &&  !BitRow.get(scanEdges[i], j)  &&
+                                scanHereditary(gi, j))
+                            res.add((long) r * n + j);
+                    }
+                }
+                return res;
+            }
+        }));
+
+        // hereditary(gi, gj) depends on the in-edges of gj only, see
+        // scanUnions
+        int next = 0;
+        for (int r = 0; r < hereditaries.size(); r++) {
+            HereditaryClass gi = hereditaries.get(r);
+            long[] row = ruleIndex.hereditaryPartnersOf(gi, graph);
+            for (int j = BitRow.nextSetBit(row, 0); j >= 0;
+                    j = BitRow.nextSetBit(row, j+1)) {
+                long key = (long) r * n + j;
+                while (next < candidates.size()  &&
+                        candidates.get(next) < key)
+                    next++;
+                GraphClass gj = scanIndex.get(j);
+                if (gi == gj  ||  containsEdge(gi, gj))
+                    continue;
+                if ((next < candidates.size()  &&
+                        candidates.get(next) == key)  ||
+                        BitRow.get(scanNewIn, j))
+                    hereditary(gi, gj);
+                else
+                    evaluated(1);
+            }
+        }
+    }
+
+
+    /**
+     * Return true iff hereditary(gi, gj) would deduce an edge in scanEdges.
+     */
+    private boolean scanHereditary(HereditaryClass gi, int j) {
+        GraphClass gj = scanIndex.get(j);
+        return scanContains(gi.getBase(), j)  &&
+                gj.getHereditariness().compareTo(gi.getHereditariness()) >= 0;
     }
 
 
     public void complement(ComplementClass gc1, ComplementClass gc2){
+        evaluated(1);
         GraphClass gc3 = gc1.getBase();
         GraphClass gc4 = gc2.getBase();
 
@@ -706,6 +1439,8 @@ public class Deducer {
      */
     public boolean hereditary(HereditaryClass gc1, GraphClass gc2) {
         TraceData tr = null;
+
+        evaluated(1);
         GraphClass gc3 = gc1.getBase();
         
         if (containsEdge(gc3,gc2)  &&  gc2.getHereditariness().compareTo(
@@ -725,6 +1460,8 @@ public class Deducer {
      */
     public boolean probe(ProbeClass gc1, ProbeClass gc2) {
         TraceData tr = null;
+
+        evaluated(1);
         GraphClass gc3 = gc1.getBase();
         GraphClass gc4 = gc2.getBase();
         
@@ -744,6 +1481,8 @@ public class Deducer {
      */
     public boolean clique(CliqueClass gc1, CliqueClass gc2) {
         TraceData tr = null;
+
+        evaluated(1);
         GraphClass gc3 = gc1.getBase();
         GraphClass gc4 = gc2.getBase();
         
@@ -766,6 +1505,8 @@ public class Deducer {
         ArrayList<Inclusion> traces = new ArrayList<Inclusion>();
         TraceData tr = null;
 
+        evaluated(1);
+
         hs1 = new HashSet<GraphClass>(gc1.getSet());
         if (gc2 instanceof IntersectClass){
             hs1.removeAll(((IntersectClass)gc2).getSet());
@@ -801,6 +1542,8 @@ public class Deducer {
         ArrayList<Inclusion> traces = new ArrayList<Inclusion>();
         TraceData tr = null;
 
+        evaluated(1);
+
         hs2 = new HashSet<GraphClass>(((UnionClass)gc2).getSet());
         if (gc1 instanceof UnionClass){
             hs2.removeAll(((UnionClass)gc1).getSet());
@@ -843,7 +1586,9 @@ public class Deducer {
         /* Contains the ForbiddenClass that we will consider replacing into
          * interHS. */
         ArrayList<ForbiddenClass> forbid = new ArrayList<ForbiddenClass>();
-        Map<GraphClass,Set<GraphClass> > scc = GAlg.calcSCCMap(graph);
+        checkSCCs();
+        SCCSets<GraphClass> scc = sccs != null ? sccs :
+                new SCCSets<GraphClass>(GAlg.calcSCCMap(graph));
         HashSet hasEqForb = new HashSet();
         
         // Collect interGC, interHS and forbid
@@ -928,34 +1673,33 @@ allvertices:
         //System.out.println("hash: "+icSet);
         //System.out.println("class: "+ic);
         GraphClass v;
-        int cntF = 0;
-        HashSet fb = new HashSet();       // Set of forbidden subgraphs
+        // Forbidden classes, whose sets are melted
+        ArrayList<ForbiddenClass> fb = new ArrayList<ForbiddenClass>();
         // Non-forbidden GraphClasses
         HashSet<GraphClass> gcs = new HashSet<GraphClass>();
 
         // Divide icSet into forbiddens (fb) and others (gcs)
         for (GraphClass gc : icSet) {
-            if (gc instanceof ForbiddenClass) {
-                fb.addAll(((ForbiddenClass)gc).getSet());
-                cntF++;
-            } else
+            if (gc instanceof ForbiddenClass)
+                fb.add((ForbiddenClass) gc);
+            else
                 gcs.add(gc);
         }
         
-        if (cntF<2)                      // nothing to melt with up to 1 class
+        if (fb.size()<2)                 // nothing to melt with up to 1 class
             return;
         // found >=2 forbidden classes that are melted, so create new node
         if (temp)
-            v = ensureTempNode(new ForbiddenClass(fb));
+            v = ensureTempNode(factory.forbiddenUnion(fb));
         else
-            v = ensureTrivialNode(new ForbiddenClass(fb));
+            v = ensureTrivialNode(factory.forbiddenUnion(fb));
         
         if (!gcs.isEmpty()) {            // if other classes were found
             gcs.add(v);
             if (temp)
-                v = ensureTempNode(new IntersectClass(gcs));
+                v = ensureTempNode(factory.intersect(gcs));
             else
-                v = ensureTrivialNode(new IntersectClass(gcs));
+                v = ensureTrivialNode(factory.intersect(gcs));
         }
         addTrivialEdge(ic, v,
             trace ? new TraceData("extendForbidden") : null);
@@ -996,13 +1740,13 @@ allvertices:
         for (Object forb : node.getSet()) {
             one = new HashSet();
             one.add(forb);
-            sup = ensureTempNode(new ForbiddenClass(one));
+            sup = ensureTempNode(factory.forbidden(one));
             addForbiddenSuperConfig((ForbiddenClass) sup);
             supers.add(sup);
             addTrivialEdge(sup, node, tr);
         }
 
-        sup = ensureTempNode(new IntersectClass(supers));
+        sup = ensureTempNode(factory.intersect(supers));
         addTrivialEdge(sup, node, tr);
         addTrivialEdge(node, sup, tr);
     }
@@ -1026,16 +1770,16 @@ allvertices:
         if (isgSet.size() == 1) {
             one = new HashSet<String>();
             one.add(isgSet.iterator().next());
-            sup = ensureTempNode(new ForbiddenClass(one));
+            sup = ensureTempNode(factory.forbidden(one));
         } else {
             for (String s : isgSet) {
                 one = new HashSet<String>();
                 one.add(s);
-                sup = ensureTempNode(new ForbiddenClass(one));
+                sup = ensureTempNode(factory.forbidden(one));
                 supers.add(sup);
                 addTrivialEdge(sup, node, tr);
             }
-            sup = ensureTempNode(new IntersectClass(supers));
+            sup = ensureTempNode(factory.intersect(supers));
         }
         addTrivialEdge(sup, node, tr);
         addTrivialEdge(node, sup, tr);
@@ -1054,7 +1798,7 @@ allvertices:
 
         for (GraphClass gc : classes) {
             if (gc.isCliqueFixed()) {
-                con = ensureTempNode(new CliqueClass(gc));
+                con = ensureTempNode(factory.clique(gc));
                 addTrivialEdge(gc,con, new TraceData("clique-fixed"));
                 addTrivialEdge(con,gc, new TraceData("clique-fixed"));
             }
@@ -1071,9 +1815,9 @@ allvertices:
 
         for (GraphClass gc : classes) {
             if (gc instanceof ForbiddenClass) {
-                ensureTempNode(new ComplementClass(gc));
+                ensureTempNode(factory.complement(gc));
             } else if (gc.isSelfComplementary()) {
-                con = ensureTempNode(new ComplementClass(gc));
+                con = ensureTempNode(factory.complement(gc));
                 addTrivialEdge(gc,con, new TraceData("self-complementary"));
                 addTrivialEdge(con,gc, new TraceData("self-complementary"));
             }
@@ -1116,7 +1860,7 @@ allvertices:
                 return false;
         }
 
-        gcco = ensureTempNode(new ComplementClass(gc));
+        gcco = ensureTempNode(factory.complement(gc));
         cogc = ensureTempNode(cogc);
         addTrivialEdge(cogc, gcco, tr);
         addTrivialEdge(gcco, cogc, tr);
@@ -1225,6 +1969,7 @@ nextnode:
         ArrayList<HereditaryClass> hereds = new ArrayList<HereditaryClass>();
 
         System.out.println("findTrivialPropers");
+        startRule("propers");
 
         //---- Gather classes according to type
         for (GraphClass gi : graph.vertexSet()) {
@@ -1244,9 +1989,11 @@ nextnode:
             if (e.isProper())
                 propers.add(e);
         }
-        for (Inclusion e : propers) {
-            e.setProper(false);
-            setProper(e, null);
+        if (!continuePropers(propers)) {
+            for (Inclusion e : propers) {
+                e.setProper(false);
+                setProper(e, null);
+            }
         }
         propers = null;         // Free memory
 
@@ -1272,8 +2019,79 @@ nextnode:
             System.out.println("forbidden");
             newproper = newproper | properForbiddenSub();
         } while (newproper);
+        stopRule();
 
         sanityCheckProper();
+        continuation = null;
+    }
+
+
+    /**
+     * When continuing from a snapshot, mark the restored propers again and
+     * deduce what follows from them and the propers of the inputs in
+     * combination with the added inclusions. The direct rules and the
+     * repeated ones must still be applied afterwards.
+     * Returns false if not continuing from a snapshot, or if an added
+     * inclusion invalidates a condition that a restored proper can rely on:
+     * that two restored classes are not equivalent, or that two restored
+     * forbidden classes are unrelated. Also a restored proper whose
+     * confidence changed invalidates them, as it might only have been proper
+     * as an input. Then the propers must be deduced from scratch.
+     * @param propers the propers of the inputs
+     */
+    private boolean continuePropers(List<Inclusion> propers) {
+        if (continuation == null)
+            return false;
+
+        for (Inclusion e : continuation.addedEdges) {
+            GraphClass from = graph.getEdgeSource(e);
+            GraphClass to = graph.getEdgeTarget(e);
+            if (continuation.isRestored(from)  &&
+                    continuation.isRestored(to)  &&
+                    (containsEdge(to, from)  ||
+                    (from instanceof ForbiddenClass  &&
+                     to instanceof ForbiddenClass))) {
+                System.out.println("Restored propers invalidated by "+
+                        from.getID() +" -> "+ to.getID());
+                return false;
+            }
+        }
+
+        List<Inclusion> restored = new ArrayList<Inclusion>();
+        for (Inclusion old : continuation.restoredPropers) {
+            Inclusion e = getEdge(graph.findVertex(old.getSuper()),
+                    graph.findVertex(old.getSub()));
+            if (e == null  ||  e.getConfidence() != old.getConfidence()) {
+                System.out.println("Restored propers invalidated by "+
+                        "confidence of "+ old);
+                return false;
+            }
+            restored.add(e);
+        }
+
+        // The restored propers are transitively closed already
+        for (Inclusion e : propers)
+            e.setProper(false);
+        for (Inclusion e : restored)
+            e.setProper(true);
+        for (Inclusion e : propers)
+            if (!e.isProper())
+                setProper(e, null);
+
+        // Combine the propers with the added inclusions
+        for (Inclusion e : continuation.addedEdges) {
+            GraphClass from = graph.getEdgeSource(e);
+            GraphClass to = graph.getEdgeTarget(e);
+            for (Inclusion f : graph.incomingEdgesOf(from))
+                if (f.isProper()  &&  graph.getEdgeSource(f) != to)
+                    setProper(getEdge(graph.getEdgeSource(f), to),
+                            newTraceData("Transitivity", f, e));
+            for (Inclusion f : graph.outgoingEdgesOf(to))
+                if (f.isProper()  &&  graph.getEdgeTarget(f) != from)
+                    setProper(getEdge(from, graph.getEdgeTarget(f)),
+                            newTraceData("Transitivity", e, f));
+        }
+        return true;
     }
 
 
@@ -1493,138 +2311,6 @@ nextnode:
 
     //------------------------ Sanity checks ---------------------------
     
-    /**
-     * Print SCC that have merged as a result of deducing inclusions.
-     */
-    private void sanityCheckSCC(
-            Map<GraphClass,Set<GraphClass> > before,
-            Map<GraphClass,Set<GraphClass> > after) {
-        Set<GraphClass> vecBefore1, vecAfter1, vecBefore2, vecAfter2;
-        // Maps after-SCC to beforeSCCs
-        HashMap<Set<GraphClass>, Set<Set<GraphClass> > > scc =
-                new HashMap<Set<GraphClass>, Set<Set<GraphClass> > >();
-        HashSet<Set<GraphClass> > hs;
-
-        for (GraphClass node1 : graph.vertexSet()) {
-            if (before.get(node1) == null)
-                continue;
-            vecBefore1 = before.get(node1);
-            vecAfter1 = after.get(node1);
-
-            for (GraphClass node2 : graph.vertexSet()) {
-                if (before.get(node2) == null)
-                    continue;
-                vecBefore2 = before.get(node2);
-                vecAfter2 = after.get(node2);
-
-                if (vecBefore1 != vecBefore2  &&  vecAfter1 == vecAfter2) {
-                    if (scc.containsKey(vecAfter1))
-                        scc.get(vecAfter1).add(vecBefore1);
-                    else {
-                        hs = new HashSet<Set<GraphClass> >();
-                        hs.add(vecBefore1);
-                        scc.put(vecAfter1, hs);
-                    }
-                    
-                    if (scc.containsKey(vecAfter2))
-                        scc.get(vecAfter2).add(vecBefore1);
-                    else {
-                        hs = new HashSet<Set<GraphClass> >();
-                        hs.add(vecBefore1);
-                        scc.put(vecAfter2, hs);
-                    }
-                }
-            }
-        }
-
-        System.out.println("sanityCheckSCC");
-        for (Map.Entry<Set<GraphClass>, Set<Set<GraphClass> > > entry :
-                scc.entrySet()) {
-            vecAfter1 = entry.getKey();
-            System.out.println("sccBefore: ");
-            for (Set<GraphClass> bfor : entry.getValue()) {
-                System.out.print("[");
-                for (GraphClass gc : bfor)
-                    System.out.print( gc.getID() +" ("+ gc.toString() +"), ");
-                System.out.println("]");
-            }
-            System.out.print("sccAfter:\n[");
-            for (GraphClass gc : vecAfter1)
-                System.out.print( gc.getID() +" ("+ gc.toString() +"), ");
-            System.out.println("]");
-        }
-        System.out.println("end sanityCheckSCC");
-    }
-
-
-    /**
-     * Prints inclusions between ForbiddenClasses that were derived, but can't
-     * be confirmed by ForbiddenClass.subClassOf.
-     */
-    private void sanityCheckForbidden() {
-        GraphClass from, to;
-        HashSet<GraphClass> hs = new HashSet<GraphClass>();
-        DirectedGraph<GraphClass,Inclusion> inducedSub;
-        
-        for (Inclusion e : graph.edgeSet()) {
-            from = graph.getEdgeSource(e);
-            to = graph.getEdgeTarget(e);
-            if (from instanceof ForbiddenClass && to instanceof ForbiddenClass)
-                if (!to.subClassOf(from)) {
-                    hs.add(from);
-                    hs.add(to);
-                }
-        }
-        if (hs.isEmpty())
-            return;
-            
-        //TODO
-        /*inducedSub = (ISGCIGraph) createSubgraph(hs.elements());
-        inducedSub.contractSCC();
-        inducedSub.transitiveReduction();*/
-        inducedSub = new SimpleDirectedGraph<GraphClass,Inclusion>(
-                Inclusion.class);
-        GAlg.copyInduced(graph, hs, inducedSub);
-        
-        System.out.println("sanityCheckForbidden");
-        for (Inclusion e : inducedSub.edgeSet()) {
-            from = inducedSub.getEdgeSource(e);
-            to = inducedSub.getEdgeTarget(e);
-            if (!to.subClassOf(from))
-                System.out.println(from +" ("+ from.getID()+ ") -> "+
-                    to +" ("+ to.getID() +") ");
-        }
-        System.out.println("end sanityCheckForbidden");
-    }
-
-
-    /**
-     * Prints pairs of ForbiddenClasses that have no inclusion, but no witness
-     * for this is found.
-     */
-    private void sanityCheckForbiddenNonEdge() {
-        System.out.println("begin sanityCheckForbiddenNonEdge");
-        for (GraphClass gc1 : graph.vertexSet()) {
-            if (!(gc1 instanceof ForbiddenClass))
-                continue;
-            for (GraphClass gc2 : graph.vertexSet()) {
-                if (gc2 == gc1  ||  !(gc2 instanceof ForbiddenClass)  ||
-                        containsEdge(gc1, gc2))
-                    continue;
-
-                StringBuilder s = new StringBuilder();
-                boolean b = ((ForbiddenClass) gc2).notSubClassOf(
-                        (ForbiddenClass) gc1, s);
-                if (!b)
-                    System.out.println("Unconfirmed non-inclusion "+
-                            gc1 + " ("+ gc1.getID()+ ") -> "+
-                            gc2 +" ("+ gc2.getID() +") ");
-            }
-        }
-        System.out.println("end sanityCheckForbiddenNonEdge");
-    }
-
-    
     /**
      * Check consistency for disjoint/incomparable relations.
      */
@@ -1715,9 +2401,10 @@ nextnode:
      */
     public void tempify() {
         ArrayList<ForbiddenClass> forb = new ArrayList<ForbiddenClass>();
-        List<Set<GraphClass> > sccs = GAlg.calcSCCList(graph);
+        List<Set<GraphClass> > eqsets = sccs != null ? sccs.nonTrivial() :
+                GAlg.calcSCCList(graph);
 
-        for (Set<GraphClass> eqs : sccs) {
+        for (Set<GraphClass> eqs : eqsets) {
             if (eqs.size() <= 1)
                 continue;
             forb.clear();
@@ -1794,11 +2481,29 @@ nextnode:
 
 
     /**
-     * Remove nodes marked as temporary.
+     * With extra checks on, compare the incrementally maintained SCCs with a
+     * full recomputation, and continue with the latter if they differ.
+     */
+    private void checkSCCs() {
+        if (!checking  ||  sccs == null)
+            return;
+        Map<GraphClass,Set<GraphClass> > full = GAlg.calcSCCMap(graph);
+        if (!sccs.matches(full)) {
+            System.err.println("Incremental SCCs differ from calcSCCMap");
+            sccs = new SCCSets<GraphClass>(full);
+        }
+    }
+
+
+    /**
+     * Remove nodes marked as temporary. This ends the deduction, so the
+     * interned classes and the cached forbids results are dropped as well.
      */
     public void removeTemp() {
         for (GraphClass temp : temporaries)
             graph.removeVertex(temp);
+        factory.clear();
+        ForbiddenClass.clearForbidsCache();
     }
 
 
@@ -1815,6 +2520,11 @@ nextnode:
             traceAnn.setEdge(e, tr);
         /*e.setData(orgIx, null);*/
 
+        if (closure != null) {
+            addTransitiveEdges(from, to, e);
+            return e;
+        }
+
         //---- Maintain transitivity
         Inclusion trans;
         // Collect out-neighbours of to in tos
@@ -1871,6 +2581,84 @@ nextnode:
     }
 
 
+    /**
+     * Restore transitivity after adding e = from -> to, using the closure
+     * rows. Every vertex in {from} + in(from) gets edges to {to} + out(to);
+     * the new ones are found with a row OR per vertex. Vertices that already
+     * had an edge to to are skipped, as they already reach out(to). The
+     * edges are added in the same order as the row-less version does.
+     */
+    private void addTransitiveEdges(GraphClass from, GraphClass to,
+            Inclusion e) {
+        int f = closure.indexOf(from);
+        int t = closure.indexOf(to);
+        long[] targets = closure.closedSuccessors(t);
+        long[] sources = closure.predecessorsNotOf(f, t);
+        long[] added = new long[closure.words()];
+        Inclusion trans;
+
+        boolean fromAdded = closure.addEdges(f, targets, added);
+        if (!fromAdded  &&  BitRow.isEmpty(sources))
+            return;
+
+        // Out-neighbours of to, in the graph's order
+        GraphClass[] tos = new GraphClass[graph.outDegreeOf(to)];
+        int[] toIds = new int[tos.length];
+        int i = 0;
+        for (GraphClass g : GAlg.outNeighboursOf(graph, to)) {
+            toIds[i] = closure.indexOf(g);
+            tos[i++] = g;
+        }
+
+        // Add from -> tos
+        if (fromAdded)
+            for (i = 0; i < tos.length; i++)
+                if (BitRow.get(added, toIds[i])) {
+                    if (from.equals(tos[i]))
+                        System.err.println("Equals: "+ from.getID() +" "+
+                        from +" = "+ tos[i].getID() +" "+ tos[i]);
+                    trans = addEdge(from, tos[i]);
+                    if (trace) {
+                        traceAnn.setEdge(trans, new TraceData("Transitivity",
+                                e, getEdge(to, tos[i])));
+                    }
+                }
+
+        if (BitRow.isEmpty(sources))
+            return;
+
+        for (GraphClass v : GAlg.inNeighboursOf(graph, from)) {
+            int vi = closure.indexOf(v);
+            if (!BitRow.get(sources, vi)  ||
+                    !closure.addEdges(vi, targets, added))
+                continue;
+            // add super(from) -> to
+            if (BitRow.get(added, t)) {
+                if (v.equals(to))
+                    System.err.println("Equals: "+
+                        v.getID() +" "+ v +" = "+ to.getID() +" "+ to);
+                trans = addEdge(v, to);
+                if (trace)
+                    traceAnn.setEdge(trans,
+                           new TraceData("Transitivity", getEdge(v, from), e));
+            }
+            // add super(from) -> tos
+            for (i = 0; i < tos.length; i++)
+                if (BitRow.get(added, toIds[i])) {
+                    if (v.equals(tos[i]))
+                        System.err.println("Equals: "+ v.getID() +" "+ v +
+                        " = "+ tos[i].getID() +" "+ tos[i]);
+                    trans = addEdge(v, tos[i]);
+                    if (trace) {
+                        traceAnn.setEdge(trans,
+                               new TraceData("Transitivity", getEdge(v, from),
+                                       e, getEdge(to, tos[i])));
+                    }
+                }
+        }
+    }
+
+
     /**
      * If a node for graphclass gc exists, return it, otherwise add it as a
      * trivial node.
@@ -1912,6 +2700,8 @@ nextnode:
         }
 
         GraphClass v = doAddTrivialNode(gc);
+        if (profile != null)
+            profile.nodeAdded(false);
         //System.out.println("new: "+gc);
         return v;
     }
@@ -1923,6 +2713,8 @@ nextnode:
     private GraphClass addTempNode(GraphClass gc) {
         GraphClass v = doAddTrivialNode(gc);
         temporaries.add(v);
+        if (profile != null)
+            profile.nodeAdded(true);
         //System.out.println("new (temp): "+gc);
         return v;
     }
@@ -1930,9 +2722,12 @@ nextnode:
 
     private GraphClass doAddTrivialNode(GraphClass gc) {
         graph.addVertex(gc);
+        if (closure != null)
+            closure.addVertex(gc);
         gc.setID(idgenerator.getID(gc.toString()));
         temporaries.remove(gc);
         newclasses.add(gc);
+        nodeLevels.put(gc, confidence);
         /*System.out.print(iteration);
         System.out.print("\t");
         System.out.print(nodedebugprefix);
@@ -1950,6 +2745,16 @@ nextnode:
     public Inclusion addEdge(GraphClass src, GraphClass dest) {
         Inclusion e = graph.addEdge(src, dest);
         e.setConfidence(confidence);
+        if (scanEdges != null)
+            scanEdgeAdded(src, dest);
+        if (closure != null)
+            closure.addEdge(src, dest);
+        if (sccs != null  &&  containsEdge(dest, src))
+            sccs.union(src, dest);
+        if (continuation != null)
+            continuation.addedEdges.add(e);
+        if (profile != null)
+            profile.edgeAdded();
         return e;
     }
 
@@ -1958,6 +2763,8 @@ nextnode:
      * Return true iff graph contains an edge between from and to.
      */
     public boolean containsEdge(GraphClass from, GraphClass to) {
+        if (closure != null)
+            return closure.containsEdge(from, to);
         return graph.containsEdge(from, to);
     }
 
@@ -2046,7 +2853,7 @@ nextnode:
      */
     public void printTrace(PrintWriter writer, Inclusion e) {
         if (trace)
-            TraceData.print(writer, e, traceAnn);
+            traceAnn.print(writer, e);
     }
 
 
@@ -2055,7 +2862,7 @@ nextnode:
      */
     public void printRelationTrace(PrintWriter writer, Inclusion e) {
         if (trace  &&  e.isProper())
-            TraceData.print(writer, e, traceRelAnn);
+            traceRelAnn.print(writer, e);
     }
 
 
@@ -2081,123 +2888,4 @@ nextnode:
     }
 }
 
-//============================== TraceData ==================================
-
-//TODO Use varargs
-class TraceData {
-    String desc;                        // Description.
-    ArrayList<Inclusion> prereqs;       // Prerequisite edges.
-
-    public TraceData() {
-        prereqs = new ArrayList<Inclusion>();
-    }
-
-    public TraceData(TraceData t) {
-        this.desc = t.desc;
-        this.prereqs = (ArrayList<Inclusion>) t.prereqs.clone();
-    }
-
-    public TraceData(String desc) {
-        this();
-        set(desc);
-    }
-
-    public TraceData(String desc, Inclusion a) {
-        this();
-        set(desc, a);
-    }
-
-    public TraceData(String desc, Inclusion a, Inclusion b) {
-        this();
-        set(desc, a, b);
-    }
-
-    public TraceData(String desc, Inclusion a, Inclusion b, Inclusion c) {
-        this();
-        set(desc, a, b, c);
-    }
-
-    public TraceData(String desc, Inclusion a, Inclusion b, Inclusion c,
-            Inclusion d) {
-        this();
-        set(desc, a,b,c,d);
-    }
-
-    public TraceData(String desc, ArrayList<Inclusion> v) {
-        this();
-        set(desc, v);
-    }
-
-    public TraceData set(String desc) {
-        this.desc = desc;
-        return this;
-    }
-
-    public TraceData set(String desc, Inclusion a) {
-        this.desc = desc;
-        prereqs.clear();
-        prereqs.add(a);
-        return this;
-    }
-
-    public TraceData set(String desc, Inclusion a, Inclusion b) {
-        this.desc = desc;
-        prereqs.clear();
-        prereqs.add(a);
-        prereqs.add(b);
-        return this;
-    }
-
-    public TraceData set(String desc, Inclusion a, Inclusion b, Inclusion c) {
-        this.desc = desc;
-        prereqs.clear();
-        prereqs.add(a);
-        prereqs.add(b);
-        prereqs.add(c);
-        return this;
-    }
-
-    public TraceData set(String desc, Inclusion a, Inclusion b, Inclusion c,
-            Inclusion d) {
-        this.desc = desc;
-        prereqs.clear();
-        prereqs.add(a);
-        prereqs.add(b);
-        prereqs.add(c);
-        prereqs.add(d);
-        return this;
-    }
-
-    public TraceData set(String desc, ArrayList<Inclusion> v) {
-        this.desc = desc;
-        prereqs = (ArrayList<Inclusion>) v.clone();
-        return this;
-    }
-
-    public static void print(PrintWriter writer, Inclusion e,
-            Annotation<GraphClass,Inclusion,TraceData> traceAnn) {
-        print(writer, e, traceAnn, "");
-    }
-
-    private static void print(PrintWriter writer, Inclusion edge,
-            Annotation<GraphClass,Inclusion,TraceData> traceAnn,
-            String prefix) {
-        writer.print(prefix);
-        writer.print(edge);
-        writer.print("  ");
-        TraceData td = traceAnn.getEdge(edge);
-        if (td != null) {
-            writer.print(td.desc);
-            writer.println();
-            for (Inclusion e : td.prereqs) {
-                writer.print(prefix+" ");
-                writer.println(e);
-            }
-        } else {
-            writer.print("(no tracedata)");
-            writer.println();
-        }
-    }
-}
-
 /* EOF */
@@ -0,0 +1,212 @@
+/*
+ * Time and counters per deduction rule.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records for every deduction rule and confidence level the wall time spent,
+ * the number of times the rule was evaluated, and the number of edges,
+ * nodes and temporary nodes it added. The Deducer starts a rule and
+ * everything up to the start of the next rule (or stop()) is attributed to
+ * it. Edges added to maintain transitivity count for the rule that caused
+ * them.
+ * Evaluations may be counted from several threads, the other counters only
+ * from the deducing thread.
+ * When the relations were restored from a snapshot nothing is deduced, and
+ * the profile is marked restored.
+ */
+public class DeductionProfile {
+
+    /** The counters of a single rule on a single confidence level */
+    public static class Entry {
+        final String rule;
+        final int confidence;
+        long nanos;
+        final AtomicLong evaluations;
+        int edges;
+        int nodes;
+        int temporaries;
+
+        Entry(String rule, int confidence) {
+            this.rule = rule;
+            this.confidence = confidence;
+            evaluations = new AtomicLong();
+        }
+
+        public String getRule() { return rule; }
+        public int getConfidence() { return confidence; }
+        public long getNanos() { return nanos; }
+        public long getEvaluations() { return evaluations.get(); }
+        public int getEdges() { return edges; }
+        public int getNodes() { return nodes; }
+        public int getTemporaries() { return temporaries; }
+    }
+
+    /** The entries in order of first use, keyed by rule and confidence */
+    private final LinkedHashMap<String,Entry> entries;
+    /** The running rule, or null */
+    private Entry current;
+    /** When current was started */
+    private long started;
+    /** Were the relations restored from a snapshot? */
+    private boolean restored;
+
+
+    public DeductionProfile() {
+        entries = new LinkedHashMap<String,Entry>();
+        current = null;
+        restored = false;
+    }
+
+
+    /**
+     * Get/Set whether the relations were restored from a snapshot.
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    public void setRestored(boolean b) {
+        restored = b;
+    }
+
+
+    /**
+     * Stop the running rule (if any) and start rule on the given confidence
+     * level.
+     */
+    public void start(String rule, int confidence) {
+        stop();
+        String key = rule +"\t"+ confidence;
+        current = entries.get(key);
+        if (current == null) {
+            current = new Entry(rule, confidence);
+            entries.put(key, current);
+        }
+        started = System.nanoTime();
+    }
+
+
+    /**
+     * Stop the running rule, if any.
+     */
+    public void stop() {
+        if (current != null)
+            current.nanos += System.nanoTime() - started;
+        current = null;
+    }
+
+
+    /** Count n evaluations for the running rule. */
+    public void evaluated(long n) {
+        Entry e = current;
+        if (e != null)
+            e.evaluations.addAndGet(n);
+    }
+
+    /** Count an edge added by the running rule. */
+    public void edgeAdded() {
+        if (current != null)
+            current.edges++;
+    }
+
+    /** Count a node added by the running rule. */
+    public void nodeAdded(boolean temporary) {
+        if (current != null) {
+            current.nodes++;
+            if (temporary)
+                current.temporaries++;
+        }
+    }
+
+
+    /**
+     * Return the entries in order of first use.
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries.values());
+    }
+
+
+    /**
+     * Print the profile as a table to out.
+     */
+    public void print(PrintStream out) {
+        Entry total = new Entry("total", 0);
+        out.println("Deduction profile");
+        out.println(String.format("%-24s %5s %10s %12s %10s %7s %7s",
+                "rule", "conf", "ms", "evaluations", "edges", "nodes",
+                "temps"));
+        for (Entry e : entries.values()) {
+            print(out, e, Integer.toString(e.confidence));
+            total.nanos += e.nanos;
+            total.evaluations.addAndGet(e.evaluations.get());
+            total.edges += e.edges;
+            total.nodes += e.nodes;
+            total.temporaries += e.temporaries;
+        }
+        print(out, total, "");
+    }
+
+
+    private static void print(PrintStream out, Entry e, String confidence) {
+        out.println(String.format("%-24s %5s %10d %12d %10d %7d %7d",
+                e.rule, confidence, e.nanos / 1000000,
+                e.evaluations.get(), e.edges, e.nodes, e.temporaries));
+    }
+
+
+    /**
+     * Write the profile in JSON to the given file. A restored profile has
+     * "restored": true, so it isn't mistaken for the profile of a full
+     * deduction.
+     */
+    public void writeJSON(String filename) throws IOException {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(filename), "UTF-8"));
+        out.print("{\"restored\": ");
+        out.print(restored);
+        out.println(", \"rules\": [");
+        int i = 0;
+        for (Entry e : entries.values()) {
+            out.print("  {\"rule\": \"");
+            out.print(e.rule.replace("\\", "\\\\").replace("\"", "\\\""));
+            out.print("\", \"confidence\": ");
+            out.print(e.confidence);
+            out.print(", \"nanos\": ");
+            out.print(e.nanos);
+            out.print(", \"evaluations\": ");
+            out.print(e.evaluations.get());
+            out.print(", \"edges\": ");
+            out.print(e.edges);
+            out.print(", \"nodes\": ");
+            out.print(e.nodes);
+            out.print(", \"temporaries\": ");
+            out.print(e.temporaries);
+            out.println(++i < entries.size() ? "}," : "}");
+        }
+        out.println("]}");
+        out.close();
+        if (out.checkError())
+            throw new IOException("Error writing profile "+ filename);
+    }
+}
+
+/* EOF */
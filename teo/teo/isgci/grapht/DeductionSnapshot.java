@@ -0,0 +1,587 @@
+/*
+ * Saves and restores the result of the trivial deductions.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.DirectedGraph;
+
+import teo.isgci.gc.BaseClass;
+import teo.isgci.gc.CliqueClass;
+import teo.isgci.gc.ComplementClass;
+import teo.isgci.gc.ConnectedHereditaryClass;
+import teo.isgci.gc.DerivedClass;
+import teo.isgci.gc.ForbiddenClass;
+import teo.isgci.gc.GraphClass;
+import teo.isgci.gc.InducedHereditaryClass;
+import teo.isgci.gc.IntersectClass;
+import teo.isgci.gc.IsometricHereditaryClass;
+import teo.isgci.gc.ProbeClass;
+import teo.isgci.gc.SetClass;
+import teo.isgci.gc.UnionClass;
+
+/**
+ * A snapshot of the graph of a Deducer after findTrivialInclusions and
+ * findTrivialPropers: the derived classes, the temporaries and the closed
+ * set of inclusions with their confidence, properness and the description
+ * of their tracedata.
+ * The snapshot also records the inputs of the deductions (the classes and
+ * inclusions of the masterdata, the smallgraphs and the AUTO_* cache). If
+ * these are unchanged in a later run, the snapshot can be restored instead
+ * of deducing again. If classes or inclusions were only added, the
+ * deducer continues from the snapshot with the added inputs (see
+ * Deducer.continueFrom), unless an added inclusion is part of an
+ * equivalence. Any other change requires a full deduction.
+ * Complexities are not part of the inputs, as they are distributed after
+ * the deductions anyway.
+ *
+ * The file has one record per line, with tab separated fields:
+ * <pre>
+ * input  line describing an input item
+ * class  key id type member...   (a derived class, not necessarily a node)
+ * node   key confidence          (a derived node, in vertexSet() order,
+ *                                 with the level at which it was added)
+ * temp   key
+ * named  key                     (an input class whose name was constructed
+ *                                 by the deductions)
+ * edge   superkey subkey confidence proper origin tracedesc
+ * </pre>
+ * Input classes have their id as key, other classes @0, @1, ...
+ */
+public class DeductionSnapshot {
+    static final String HEADER = "# ISGCI deduction snapshot 2";
+    static final String NONE = "-";
+
+    /** The deducer whose graph we're saving or restoring */
+    private Deducer deducer;
+    /** The input classes, by id */
+    private Map<String,GraphClass> inputClasses;
+    /** The input inclusions, by "superid subid" */
+    private Map<String,Inclusion> inputEdges;
+    /** Description of the inputs, sorted */
+    private List<String> inputs;
+
+
+    /**
+     * Create a snapshot for deducer, whose graph must still be in its
+     * initial (loaded) state. smallgraphs and autocache are the filenames of
+     * the other inputs of the deductions.
+     */
+    public DeductionSnapshot(Deducer deducer, String smallgraphs,
+            String autocache) {
+        this.deducer = deducer;
+        inputClasses = new HashMap<String,GraphClass>();
+        inputEdges = new HashMap<String,Inclusion>();
+        inputs = new ArrayList<String>();
+
+        DirectedGraph<GraphClass,Inclusion> g = deducer.graph;
+        for (GraphClass gc : g.vertexSet()) {
+            inputClasses.put(gc.getID(), gc);
+            inputs.add(describeInput(gc));
+        }
+        for (Inclusion e : g.edgeSet()) {
+            String key = edgeKey(e.getSuper(), e.getSub());
+            if (!inputEdges.containsKey(key))
+                inputEdges.put(key, e);
+            inputs.add(describeInput(e));
+        }
+        inputs.add("file\tsmallgraphs\t"+ digest(smallgraphs));
+        inputs.add("file\tautocache\t"+
+                (autocache == null ? NONE : digest(autocache)));
+        Collections.sort(inputs);
+    }
+
+
+    /**
+     * Return a line describing input class gc. A name that is not set
+     * explicitly follows from the members and is not constructed here, as
+     * the writers print the names of input classes only until then.
+     */
+    private static String describeInput(GraphClass gc) {
+        String name = gc.getExplicitName();
+        StringBuilder s = new StringBuilder("class\t");
+        s.append(gc.getID()).append('\t');
+        s.append(gc.getClass().getSimpleName()).append('\t');
+        s.append(name == null ? NONE : name).append('\t');
+        s.append(gc.getHereditariness()).append('\t');
+        s.append(gc.isCliqueFixed()).append('\t');
+        s.append(gc.isSelfComplementary());
+        for (String m : members(gc, null))
+            s.append('\t').append(m);
+        return s.toString();
+    }
+
+
+    /**
+     * Return a line describing input inclusion e.
+     */
+    private static String describeInput(Inclusion e) {
+        return "incl\t"+ e.getSuper().getID() +"\t"+ e.getSub().getID() +
+                "\t"+ e.getConfidence() +"\t"+ (e.isProper() ? "y" : "n");
+    }
+
+
+    /**
+     * Return the key of the edge from -> to.
+     */
+    private static String edgeKey(GraphClass from, GraphClass to) {
+        return from.getID() +" "+ to.getID();
+    }
+
+
+    /**
+     * Return the md5 digest of the given file in hex, or null if it cannot
+     * be read.
+     */
+    private static String digest(String filename) {
+        InputStream in = null;
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            in = new FileInputStream(filename);
+            byte[] buf = new byte[64*1024];
+            int n;
+            while ((n = in.read(buf)) > 0)
+                md.update(buf, 0, n);
+
+            StringBuilder s = new StringBuilder();
+            for (byte b : md.digest())
+                s.append(String.format("%02x", b));
+            return s.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null)
+                try {
+                    in.close();
+                } catch (IOException e) {}
+        }
+    }
+
+
+    /**
+     * Return true iff all inputs could be described.
+     */
+    private boolean inputsComplete() {
+        for (String s : inputs)
+            if (s.endsWith("\tnull"))
+                return false;
+        return true;
+    }
+
+
+    /**
+     * Return the members of gc: smallgraph names for a ForbiddenClass, the
+     * name for a BaseClass and otherwise the keys of the member classes.
+     * If keys is null, the ids of the members are used.
+     */
+    private static List<String> members(GraphClass gc,
+            Map<GraphClass,String> keys) {
+        List<String> res = new ArrayList<String>();
+        List<GraphClass> classes = new ArrayList<GraphClass>();
+
+        if (gc instanceof ForbiddenClass)
+            res.addAll(((ForbiddenClass) gc).getSet());
+        else if (gc instanceof BaseClass)
+            res.add(gc.toString());
+        else if (gc instanceof SetClass)
+            classes.addAll(((SetClass) gc).getSet());
+        else if (gc instanceof DerivedClass)
+            classes.add(((DerivedClass) gc).getBase());
+
+        for (GraphClass m : classes)
+            res.add(keys == null ? m.getID() : keys.get(m));
+        if (keys == null)
+            Collections.sort(res);
+        return res;
+    }
+
+
+    //---------------------------- Writing ------------------------------
+
+    /**
+     * Write the current state of the deducer to filename. Should be called
+     * after findTrivialPropers and before removeTemp.
+     */
+    public void write(String filename) throws IOException {
+        DirectedGraph<GraphClass,Inclusion> g = deducer.graph;
+        Map<GraphClass,String> keys = new IdentityHashMap<GraphClass,String>();
+        PrintWriter out = new PrintWriter(
+                new BufferedWriter(new FileWriter(filename), 64*1024));
+
+        for (GraphClass gc : inputClasses.values())
+            keys.put(gc, gc.getID());
+
+        out.println(HEADER);
+        for (String s : inputs) {
+            out.print("input\t");
+            out.println(s);
+        }
+
+        for (GraphClass gc : g.vertexSet()) {
+            writeClass(out, gc, keys);
+            if (inputClasses.get(gc.getID()) != gc) {
+                out.print("node\t");
+                out.print(keys.get(gc));
+                out.print("\t");
+                out.println(deducer.getNodeLevel(gc));
+            }
+        }
+
+        for (GraphClass gc : deducer.temporaries) {
+            out.print("temp\t");
+            out.println(keys.get(gc));
+        }
+
+        for (GraphClass gc : inputClasses.values()) {
+            if (!gc.namedExplicitly()) {
+                out.print("named\t");
+                out.println(keys.get(gc));
+            }
+        }
+
+        for (Inclusion e : g.edgeSet()) {
+            Inclusion in = inputEdges.get(edgeKey(e.getSuper(), e.getSub()));
+            String desc = deducer.traceAnn == null ? null :
+                    deducer.traceAnn.getDesc(e);
+
+            out.print("edge\t");
+            out.print(keys.get(e.getSuper()));
+            out.print("\t");
+            out.print(keys.get(e.getSub()));
+            out.print("\t");
+            out.print(e.getConfidence());
+            out.print(e.isProper() ? "\ty" : "\tn");
+            if (in == e)
+                out.print("\to");       // The input edge itself
+            else if (in != null  &&  in.getRefs() == e.getRefs())
+                out.print("\tr");       // Carries the refs of the input edge
+            else
+                out.print("\t"+ NONE);
+            out.print("\t");
+            out.println(desc == null ? NONE : desc);
+        }
+        out.close();
+        if (out.checkError())
+            throw new IOException("Error writing snapshot "+ filename);
+    }
+
+
+    /**
+     * Write class lines for gc and those of its members that have no key
+     * yet, members first.
+     */
+    private void writeClass(PrintWriter out, GraphClass gc,
+            Map<GraphClass,String> keys) {
+        if (keys.containsKey(gc))
+            return;
+
+        if (gc instanceof SetClass)
+            for (GraphClass m : ((SetClass) gc).getSet())
+                writeClass(out, m, keys);
+        else if (gc instanceof DerivedClass)
+            writeClass(out, ((DerivedClass) gc).getBase(), keys);
+
+        String key = "@"+ keys.size();
+        keys.put(gc, key);
+        out.print("class\t");
+        out.print(key);
+        out.print("\t");
+        out.print(gc.getID() == null ? NONE : gc.getID());
+        out.print("\t");
+        out.print(gc.getClass().getSimpleName());
+        for (String m : members(gc, keys)) {
+            out.print("\t");
+            out.print(m);
+        }
+        out.println();
+    }
+
+
+    //---------------------------- Reading ------------------------------
+
+    /**
+     * If filename contains a snapshot for the current inputs, restore it in
+     * the deducer and return true. If it contains one for a subset of the
+     * current inputs, restore it and let the deducer continue from it with
+     * the added inputs on the next findTrivialInclusions and
+     * findTrivialPropers, and return false. Otherwise, also when an added
+     * inclusion is part of an equivalence, print why and return false,
+     * leaving the deducer unchanged.
+     */
+    public boolean restore(String filename) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        List<String> oldInputs = new ArrayList<String>();
+        BufferedReader in;
+        String line;
+
+        if (!inputsComplete()) {
+            System.out.println("Snapshot: Cannot read all inputs");
+            return false;
+        }
+
+        try {
+            in = new BufferedReader(new FileReader(filename));
+        } catch (FileNotFoundException e) {
+            System.out.println("Snapshot: "+ filename +" not found");
+            return false;
+        }
+        if (!HEADER.equals(in.readLine())) {
+            in.close();
+            System.out.println("Snapshot: "+ filename +" has a wrong format");
+            return false;
+        }
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("input\t"))
+                oldInputs.add(line.substring("input\t".length()));
+            else
+                lines.add(line);
+        }
+        in.close();
+
+        Collections.sort(oldInputs);
+        if (oldInputs.equals(inputs)) {
+            System.out.println("Snapshot: Inputs unchanged, restoring "+
+                    filename);
+            restore(lines, null, null);
+            return true;
+        }
+
+        List<String> added = new ArrayList<String>();
+        if (!printDiff(oldInputs, inputs, added))
+            return false;
+
+        DirectedGraph<GraphClass,Inclusion> g = deducer.graph;
+        Map<GraphClass,Set<GraphClass> > loaded = GAlg.calcSCCMap(g);
+        Set<String> addedSet = new HashSet<String>(added);
+        List<Inclusion> addedEdges = new ArrayList<Inclusion>();
+        for (Inclusion e : g.edgeSet())
+            if (addedSet.contains(describeInput(e)))
+                addedEdges.add(e);
+
+        // Which member of an equivalence class keeps the inclusions of the
+        // class depends on the order in which they were deduced, and that
+        // order can't be followed when classes become equivalent.
+        for (Inclusion e : addedEdges) {
+            if (loaded.get(e.getSuper()).contains(e.getSub())) {
+                System.out.println("Snapshot: "+ e.getSuper().getID() +
+                        " -> "+ e.getSub().getID() +
+                        " is part of an equivalence, full deduction needed");
+                return false;
+            }
+        }
+
+        System.out.println("Snapshot: Continuing from "+ filename);
+
+        Map<GraphClass,Integer> levels =
+                new LinkedHashMap<GraphClass,Integer>();
+        for (String s : oldInputs)
+            if (s.startsWith("class\t"))
+                levels.put(inputClasses.get(s.split("\t")[1]),
+                        Inclusion.CONFIDENCE_HIGHEST);
+        List<Inclusion> propers = new ArrayList<Inclusion>();
+        restore(lines, levels, propers);
+        deducer.continueFrom(loaded, levels, addedEdges, propers);
+        return false;
+    }
+
+
+    /**
+     * Print the differences between the sorted lists of inputs and store
+     * the added inputs in added.
+     * Return true iff inputs were only added.
+     */
+    private static boolean printDiff(List<String> old, List<String> cur,
+            List<String> added) {
+        final int MAXSHOWN = 20;
+        int i = 0, j = 0, shown = 0, removed = 0;
+
+        System.out.println("Snapshot: Inputs changed");
+        while (i < old.size()  ||  j < cur.size()) {
+            int c = i == old.size() ? 1 : j == cur.size() ? -1 :
+                    old.get(i).compareTo(cur.get(j));
+            if (c == 0) {
+                i++;
+                j++;
+                continue;
+            }
+            String s;
+            if (c < 0) {
+                s = "- "+ old.get(i++);
+                removed++;
+            } else {
+                added.add(cur.get(j));
+                s = "+ "+ cur.get(j++);
+            }
+            if (shown++ < MAXSHOWN)
+                System.out.println("  "+ s);
+        }
+        System.out.println("Snapshot: "+ added.size() +" inputs added, "+
+                removed +" removed");
+        if (removed > 0)
+            System.out.println("Snapshot: Full deduction needed");
+        return removed == 0;
+    }
+
+
+    /**
+     * Restore the graph of the deducer from the given snapshot lines.
+     * If levels is null, the edges get their saved proper flags. Otherwise
+     * the derived nodes are added to levels with their confidence level,
+     * the derived classes keep their ids in the deducer, the edges keep the
+     * proper flags of the inputs and the saved propers are added to
+     * propers.
+     */
+    private void restore(List<String> lines, Map<GraphClass,Integer> levels,
+            List<Inclusion> propers) {
+        CacheGraph<GraphClass,Inclusion> g = deducer.graph;
+        Map<String,GraphClass> classes =
+                new HashMap<String,GraphClass>(inputClasses);
+        boolean edgesRemoved = false;
+
+        for (String line : lines) {
+            String[] f = line.split("\t");
+            if ("class".equals(f[0])) {
+                GraphClass gc = createClass(f[3],
+                        Arrays.asList(f).subList(4, f.length), classes);
+                if (!NONE.equals(f[2])) {
+                    gc.setID(f[2]);
+                    if (levels != null)
+                        deducer.restoreID(gc);
+                }
+                classes.put(f[1], gc);
+            } else if ("node".equals(f[0])) {
+                GraphClass gc = get(classes, f[1]);
+                g.addVertex(gc);
+                if (levels != null)
+                    levels.put(gc, Integer.valueOf(f[2]));
+            } else if ("temp".equals(f[0])) {
+                deducer.temporaries.add(get(classes, f[1]));
+            } else if ("named".equals(f[0])) {
+                get(classes, f[1]).toString();  // Constructs the name
+            } else if ("edge".equals(f[0])) {
+                // Edges are re-added in the saved order
+                if (!edgesRemoved) {
+                    g.removeAllEdges(new ArrayList<Inclusion>(g.edgeSet()));
+                    edgesRemoved = true;
+                }
+                restoreEdge(f, classes, propers);
+            } else {
+                throw new RuntimeException("Bad snapshot line: "+ line);
+            }
+        }
+    }
+
+
+    /**
+     * Restore the edge in the snapshot fields f. If propers is null, it gets
+     * its saved proper flag. Otherwise it keeps the flag of the input edge
+     * and is added to propers if it was saved as proper.
+     */
+    private void restoreEdge(String[] f, Map<String,GraphClass> classes,
+            List<Inclusion> propers) {
+        CacheGraph<GraphClass,Inclusion> g = deducer.graph;
+        GraphClass from = get(classes, f[1]);
+        GraphClass to = get(classes, f[2]);
+        Inclusion in = inputEdges.get(edgeKey(from, to));
+        Inclusion e;
+
+        if ("o".equals(f[5])) {
+            e = in;
+            g.addEdge(from, to, e);
+        } else {
+            e = g.addEdge(from, to);
+            if ("r".equals(f[5]))
+                e.setRefs(in.getRefs());
+        }
+        e.setConfidence(Integer.parseInt(f[3]));
+        if (propers == null) {
+            e.setProper("y".equals(f[4]));
+        } else {
+            if (!"o".equals(f[5]))
+                e.setProper("r".equals(f[5])  &&  in.isProper());
+            if ("y".equals(f[4]))
+                propers.add(e);
+        }
+        if (deducer.traceAnn != null  &&  !NONE.equals(f[6]))
+            deducer.traceAnn.setEdge(e, new TraceData(f[6]));
+    }
+
+
+    /**
+     * Return the class with the given key.
+     */
+    private static GraphClass get(Map<String,GraphClass> classes,
+            String key) {
+        GraphClass gc = classes.get(key);
+        if (gc == null)
+            throw new RuntimeException("Unknown class in snapshot: "+ key);
+        return gc;
+    }
+
+
+    /**
+     * Create a class of the given type (the simple name of its Java class)
+     * from its members.
+     */
+    private static GraphClass createClass(String type, List<String> members,
+            Map<String,GraphClass> classes) {
+        if ("ForbiddenClass".equals(type))
+            return new ForbiddenClass(members, true);
+        if ("BaseClass".equals(type))
+            return new BaseClass(members.get(0));
+        if ("IntersectClass".equals(type)  ||  "UnionClass".equals(type)) {
+            List<GraphClass> set = new ArrayList<GraphClass>();
+            for (String m : members)
+                set.add(get(classes, m));
+            return "IntersectClass".equals(type) ?
+                    new IntersectClass(set) : new UnionClass(set);
+        }
+
+        GraphClass base = get(classes, members.get(0));
+        if ("ComplementClass".equals(type))
+            return new ComplementClass(base);
+        if ("IsometricHereditaryClass".equals(type))
+            return new IsometricHereditaryClass(base);
+        if ("ConnectedHereditaryClass".equals(type))
+            return new ConnectedHereditaryClass(base);
+        if ("InducedHereditaryClass".equals(type))
+            return new InducedHereditaryClass(base);
+        if ("ProbeClass".equals(type))
+            return new ProbeClass(base);
+        if ("CliqueClass".equals(type))
+            return new CliqueClass(base);
+        throw new RuntimeException("Unknown class type in snapshot: "+ type);
+    }
+}
+
+/* EOF */
@@ -160,7 +160,7 @@ public class GAlg {
      * Transitively close g.
      */
     public static <V,E> void transitiveClosure(DirectedGraph<V,E> g) {
-        new ClosingDFS(g).run();
+        new BitClosure<V,E>(g).run();
     }
 
 
@@ -227,6 +227,21 @@ public class GAlg {
     }
 
 
+    /**
+     * Transitively reduce a possibly cyclic graph. The result is the same as
+     * that of transitiveReductionBruteForce, but the SCC condensation is used
+     * to decide whether an edge is necessary, instead of a path search.
+     */
+    public static <V,E> void transitiveReductionCyclic(DirectedGraph<V,E> g) {
+        TransitiveReducer<V,E> reducer = new TransitiveReducer<V,E>(g);
+        List<E> remove = new ArrayList<E>();
+        for (E edge : g.edgeSet())
+            if (reducer.deleteIfSuperfluous(edge))
+                remove.add(edge);
+        g.removeAllEdges(remove);
+    }
+
+
     public static void main(String[] args) {
         SimpleDirectedGraph<String,DefaultEdge> g =
                 new SimpleDirectedGraph<String,DefaultEdge>(DefaultEdge.class);
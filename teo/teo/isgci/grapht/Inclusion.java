@@ -25,10 +25,12 @@ public class Inclusion extends org.jgrapht.graph.DefaultEdge
 
     private boolean isProper;       // True if this incl is proper
     private RelationData rel;
+    int traceId;                    // Id in a TraceStore, -1 if none
 
     public Inclusion() {
         isProper = false;
         rel = new RelationData();
+        traceId = -1;
     }
 
     /*public boolean equals(Object other) {
@@ -0,0 +1,124 @@
+/*
+ * Data that is annotated to a node, stored in arrays.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.jgrapht.Graph;
+
+import teo.isgci.util.UnaryFunction;
+
+/**
+ * An Annotation that stores the node data in an array indexed by a
+ * VertexIndex, instead of in a map. The nodes in the index are checked to
+ * be in the graph once, when the annotation is created, so they must not be
+ * removed from the graph afterwards. Nodes that are not in the index and
+ * edges are stored and checked like in Annotation.
+ */
+public class IndexedAnnotation<V,E,D> extends Annotation<V,E,D> {
+    /** The numbering of the nodes */
+    private VertexIndex<V> index;
+    /** Annotations for the nodes in index */
+    private ArrayList<D> nodeData;
+
+
+    /**
+     * Create a new annotation for the given graph, storing the data for the
+     * nodes in index in an array.
+     */
+    public IndexedAnnotation(Graph<V,E> g, VertexIndex<V> index) {
+        this(g, index, null, null);
+    }
+
+
+    /**
+     * Create a new annotation for the given graph, storing the data for the
+     * nodes in index in an array. Unless index is the frozen index of g,
+     * every node in index must be in g, otherwise an
+     * IllegalArgumentException is thrown.
+     */
+    public IndexedAnnotation(Graph<V,E> g, VertexIndex<V> index,
+            UnaryFunction<V,D> nodeCreator, UnaryFunction<E,D> edgeCreator) {
+        super(g, nodeCreator, edgeCreator);
+        if (VertexIndex.getFrozen(g) != index)
+            for (int i = 0; i < index.size(); i++)
+                if (!g.containsVertex(index.get(i)))
+                    throw new IllegalArgumentException();
+        this.index = index;
+        this.nodeData = new ArrayList<D>(
+                Collections.<D>nCopies(index.size(), null));
+    }
+
+
+    /**
+     * Return the index of the nodes.
+     */
+    public VertexIndex<V> getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Return the data attached to node n or null.
+     */
+    public D getNode(V n) {
+        int i = index.indexOf(n);
+        if (i < 0)
+            return super.getNode(n);
+        return nodeData.get(i);
+    }
+
+
+    /**
+     * Return the data attached to the node with index i or null.
+     */
+    public D getNode(int i) {
+        return nodeData.get(i);
+    }
+
+
+    /**
+     * Set the data attached to node n.
+     */
+    public void setNode(V n, D data) {
+        int i = index.indexOf(n);
+        if (i < 0) {
+            super.setNode(n, data);
+            return;
+        }
+        nodeData.set(i, data);
+    }
+
+
+    /**
+     * Copy the data of the nodes in the index from a.
+     */
+    public void copyNodes(Annotation<V,E,D> a) {
+        for (int i = 0; i < nodeData.size(); i++)
+            nodeData.set(i, a.getNode(index.get(i)));
+    }
+
+
+    /**
+     * Return the data stored for nodes.
+     */
+    public Collection<D> nodeValues() {
+        Collection<D> res = new ArrayList<D>(super.nodeValues());
+        for (D d : nodeData)
+            if (d != null)
+                res.add(d);
+        return res;
+    }
+}
+
+/* EOF */
@@ -0,0 +1,97 @@
+/*
+ * An int that is annotated to a node, stored in an array.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.Arrays;
+
+/**
+ * Stores an int for every node in a VertexIndex, e.g. the distance or
+ * discovery time of a walk, without boxing and without an object per node.
+ */
+public class IndexedIntAnnotation<V> {
+    /** The numbering of the nodes */
+    private VertexIndex<V> index;
+    /** The values, by index */
+    private int[] data;
+
+
+    /**
+     * Create a new annotation for the nodes in index, all with value
+     * initial.
+     */
+    public IndexedIntAnnotation(VertexIndex<V> index, int initial) {
+        this.index = index;
+        this.data = new int[index.size()];
+        if (initial != 0)
+            Arrays.fill(data, initial);
+    }
+
+
+    /**
+     * Return the index of the nodes.
+     */
+    public VertexIndex<V> getIndex() {
+        return index;
+    }
+
+
+    /**
+     * Return the value of node n.
+     */
+    public int getNode(V n) {
+        return data[indexOf(n)];
+    }
+
+
+    /**
+     * Return the value of the node with index i.
+     */
+    public int getNode(int i) {
+        return data[i];
+    }
+
+
+    /**
+     * Set the value of node n.
+     */
+    public void setNode(V n, int value) {
+        data[indexOf(n)] = value;
+    }
+
+
+    /**
+     * Set the value of the node with index i.
+     */
+    public void setNode(int i, int value) {
+        data[i] = value;
+    }
+
+
+    /**
+     * Set the value of all nodes.
+     */
+    public void fill(int value) {
+        Arrays.fill(data, value);
+    }
+
+
+    /**
+     * Return the index of n, throw an exception if n is not in the index.
+     */
+    private int indexOf(V n) {
+        int i = index.indexOf(n);
+        if (i < 0)
+            throw new IllegalArgumentException();
+        return i;
+    }
+}
+
+/* EOF */
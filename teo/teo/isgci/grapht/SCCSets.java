@@ -0,0 +1,164 @@
+/*
+ * Incrementally maintained strongly connected components.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.DirectedGraph;
+
+/**
+ * The strongly connected components of a transitively closed graph to which
+ * edges are only added. In such a graph two vertices are in the same SCC
+ * iff there are edges in both directions between them, so the SCCs are
+ * kept up to date by calling union whenever an added edge closes a 2-cycle.
+ * Works as a union-find that merges the smaller set into the larger one, so
+ * the SCC of a vertex is found in O(1).
+ * Vertices that were never unioned are in an SCC of their own.
+ */
+class SCCSets<V> {
+    /** Maps vertices in a non-trivial SCC to their (shared) SCC */
+    private final HashMap<V,Set<V> > sets;
+
+
+    /**
+     * Create the SCCs of the transitively closed graph g.
+     */
+    public <E> SCCSets(DirectedGraph<V,E> g) {
+        sets = new HashMap<V,Set<V> >();
+        for (E e : g.edgeSet()) {
+            V from = g.getEdgeSource(e);
+            V to = g.getEdgeTarget(e);
+            if (g.containsEdge(to, from))
+                union(from, to);
+        }
+    }
+
+
+    /**
+     * Create the SCCs as given by a map like GAlg.calcSCCMap returns.
+     */
+    public SCCSets(Map<V,Set<V> > sccs) {
+        sets = new HashMap<V,Set<V> >();
+        for (Map.Entry<V,Set<V> > entry : sccs.entrySet())
+            if (entry.getValue().size() > 1)
+                union(entry.getKey(), entry.getValue().iterator().next());
+    }
+
+
+    /**
+     * Merge the SCCs of a and b.
+     */
+    public void union(V a, V b) {
+        Set<V> sa = sets.get(a);
+        Set<V> sb = sets.get(b);
+        if (sa != null  &&  sa == sb)
+            return;
+        if (sa == null) {
+            sa = new LinkedHashSet<V>();
+            sa.add(a);
+            sets.put(a, sa);
+        }
+        if (sb == null) {
+            sb = new LinkedHashSet<V>();
+            sb.add(b);
+            sets.put(b, sb);
+        }
+        if (sa.size() < sb.size()) {
+            Set<V> s = sa;
+            sa = sb;
+            sb = s;
+        }
+        sa.addAll(sb);
+        for (V v : sb)
+            sets.put(v, sa);
+    }
+
+
+    /**
+     * Return the SCC of v as an unmodifiable set.
+     */
+    public Set<V> get(V v) {
+        Set<V> s = sets.get(v);
+        return s == null ? Collections.singleton(v) :
+                Collections.unmodifiableSet(s);
+    }
+
+
+    /**
+     * Return the size of the SCC of v.
+     */
+    public int size(V v) {
+        Set<V> s = sets.get(v);
+        return s == null ? 1 : s.size();
+    }
+
+
+    /**
+     * Return the non-trivial SCCs, in no particular order.
+     */
+    public List<Set<V> > nonTrivial() {
+        List<Set<V> > res = new ArrayList<Set<V> >();
+        for (Map.Entry<V,Set<V> > entry : sets.entrySet())
+            if (entry.getValue().iterator().next() == entry.getKey())
+                res.add(Collections.unmodifiableSet(entry.getValue()));
+        return res;
+    }
+
+
+    /**
+     * Return a map from the given vertices to their SCCs, like
+     * GAlg.calcSCCMap: every SCC exists precisely once as an unmodifiable
+     * set.
+     */
+    public Map<V,Set<V> > toMap(Iterable<V> vertices) {
+        Map<V,Set<V> > res = new HashMap<V,Set<V> >();
+        IdentityHashMap<Set<V>,Set<V> > views =
+                new IdentityHashMap<Set<V>,Set<V> >();
+        for (V v : vertices) {
+            Set<V> s = sets.get(v);
+            if (s == null) {
+                res.put(v, Collections.singleton(v));
+            } else {
+                Set<V> view = views.get(s);
+                if (view == null) {
+                    view = Collections.unmodifiableSet(s);
+                    views.put(s, view);
+                }
+                res.put(v, view);
+            }
+        }
+        return res;
+    }
+
+
+    /**
+     * Return true iff these SCCs equal the ones in sccs for all vertices in
+     * sccs.
+     */
+    public boolean matches(Map<V,Set<V> > sccs) {
+        for (Map.Entry<V,Set<V> > entry : sccs.entrySet()) {
+            Set<V> s = sets.get(entry.getKey());
+            if (s == null ? entry.getValue().size() != 1 :
+                    !s.equals(entry.getValue()))
+                return false;
+        }
+        return true;
+    }
+}
+
+/* EOF */
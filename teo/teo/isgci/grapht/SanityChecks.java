@@ -0,0 +1,245 @@
+/*
+ * Sanity checks on the result of the deduction of trivial inclusions.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DirectedMultigraph;
+
+import teo.isgci.gc.ForbiddenClass;
+import teo.isgci.gc.GraphClass;
+import teo.isgci.util.ParallelBlocks;
+
+/**
+ * The sanity checks that follow findTrivialInclusions, on a frozen copy of
+ * the deduced graph:
+ * <ul>
+ * <li>SCCs of the input that have merged as a result of the deductions.
+ * <li>Inclusions between ForbiddenClasses that were derived, but can't be
+ *     confirmed by ForbiddenClass.subClassOf.
+ * <li>Pairs of ForbiddenClasses that have no inclusion, but no witness for
+ *     this is found.
+ * </ul>
+ * The pairwise tests are divided over ParallelBlocks, every block collects
+ * its messages in its own list, and print writes them in sorted order, so
+ * the report doesn't depend on the number of threads. As only the copy is
+ * read, run can be executed in a thread of its own while the original
+ * graph is changed.
+ */
+public class SanityChecks implements Runnable {
+
+    /** The frozen copy of the deduced graph */
+    private CacheGraph<GraphClass,Inclusion> graph;
+    /** The SCCs before and after the deductions */
+    private Map<GraphClass,Set<GraphClass> > sccBefore, sccAfter;
+    /** Divides the pairwise tests over the threads */
+    private ParallelBlocks parallel;
+    /** The messages of the checks, null until run */
+    private List<String> mergedSCCs, unconfirmedEdges, unconfirmedNonEdges;
+
+
+    /**
+     * Create the checks for the deduced graph g, whose SCCs before and
+     * after the deductions are given, using the given number of threads.
+     * g is copied, so may change after this returns.
+     */
+    public SanityChecks(DirectedGraph<GraphClass,Inclusion> g,
+            Map<GraphClass,Set<GraphClass> > sccBefore,
+            Map<GraphClass,Set<GraphClass> > sccAfter,
+            int threads) {
+        DirectedGraph<GraphClass,Inclusion> copy =
+                new DirectedMultigraph<GraphClass,Inclusion>(Inclusion.class);
+        Graphs.addGraph(copy, g);
+        graph = new CacheGraph<GraphClass,Inclusion>(copy,
+                copy.vertexSet().size(), copy.edgeSet().size());
+        graph.setReadOnly(true);
+        this.sccBefore = sccBefore;
+        this.sccAfter = sccAfter;
+        parallel = new ParallelBlocks(threads);
+    }
+
+
+    /**
+     * Perform the checks.
+     */
+    public void run() {
+        mergedSCCs = checkSCC();
+        unconfirmedEdges = checkForbidden();
+        unconfirmedNonEdges = checkForbiddenNonEdge();
+    }
+
+
+    /**
+     * Print the results of the checks to out.
+     */
+    public void print(PrintStream out) {
+        if (mergedSCCs == null)
+            throw new IllegalStateException("Sanity checks haven't run");
+
+        out.println("sanityCheckSCC");
+        for (String s : mergedSCCs)
+            out.println(s);
+        out.println("end sanityCheckSCC");
+
+        if (!unconfirmedEdges.isEmpty()) {
+            out.println("sanityCheckForbidden");
+            for (String s : unconfirmedEdges)
+                out.println(s);
+            out.println("end sanityCheckForbidden");
+        }
+
+        out.println("begin sanityCheckForbiddenNonEdge");
+        for (String s : unconfirmedNonEdges)
+            out.println("Unconfirmed non-inclusion "+ s);
+        out.println("end sanityCheckForbiddenNonEdge");
+    }
+
+
+    /**
+     * Return a description of every SCC that contains nodes of several SCCs
+     * from before the deductions.
+     */
+    private List<String> checkSCC() {
+        // Maps after-SCC to the before-SCCs it contains
+        HashMap<Set<GraphClass>, Set<Set<GraphClass> > > scc =
+                new HashMap<Set<GraphClass>, Set<Set<GraphClass> > >();
+
+        for (GraphClass gc : graph.vertexSet()) {
+            Set<GraphClass> before = sccBefore.get(gc);
+            if (before == null)
+                continue;
+            Set<GraphClass> after = sccAfter.get(gc);
+            Set<Set<GraphClass> > befores = scc.get(after);
+            if (befores == null) {
+                befores = new HashSet<Set<GraphClass> >();
+                scc.put(after, befores);
+            }
+            befores.add(before);
+        }
+
+        List<String> res = new ArrayList<String>();
+        for (Map.Entry<Set<GraphClass>, Set<Set<GraphClass> > > entry :
+                scc.entrySet()) {
+            if (entry.getValue().size() < 2)
+                continue;
+            List<String> befores = new ArrayList<String>();
+            for (Set<GraphClass> before : entry.getValue())
+                befores.add(toString(before));
+            Collections.sort(befores);
+
+            StringBuilder s = new StringBuilder("sccBefore: \n");
+            for (String before : befores)
+                s.append(before).append("\n");
+            s.append("sccAfter:\n").append(toString(entry.getKey()));
+            res.add(s.toString());
+        }
+        Collections.sort(res);
+        return res;
+    }
+
+
+    /**
+     * Return the inclusions between ForbiddenClasses that can't be
+     * confirmed by subClassOf.
+     */
+    private List<String> checkForbidden() {
+        final List<Inclusion> edges = new ArrayList<Inclusion>(
+                graph.edgeSet());
+
+        return sorted(parallel.run(edges.size(),
+                new ParallelBlocks.BlockFunction<List<String> >() {
+            public List<String> execute(int from, int to) {
+                List<String> res = new ArrayList<String>();
+                for (int i = from; i < to; i++) {
+                    GraphClass sup = graph.getEdgeSource(edges.get(i));
+                    GraphClass sub = graph.getEdgeTarget(edges.get(i));
+                    if (sup instanceof ForbiddenClass  &&
+                            sub instanceof ForbiddenClass  &&
+                            !sub.subClassOf(sup))
+                        res.add(sup +" ("+ sup.getID()+ ") -> "+
+                                sub +" ("+ sub.getID() +") ");
+                }
+                return res;
+            }
+        }));
+    }
+
+
+    /**
+     * Return the pairs of ForbiddenClasses without an inclusion for which
+     * notSubClassOf finds no witness.
+     */
+    private List<String> checkForbiddenNonEdge() {
+        final List<ForbiddenClass> forbidden = new ArrayList<ForbiddenClass>();
+        for (GraphClass gc : graph.vertexSet())
+            if (gc instanceof ForbiddenClass)
+                forbidden.add((ForbiddenClass) gc);
+
+        return sorted(parallel.run(forbidden.size(),
+                new ParallelBlocks.BlockFunction<List<String> >() {
+            public List<String> execute(int from, int to) {
+                List<String> res = new ArrayList<String>();
+                StringBuilder s = new StringBuilder();
+                for (int i = from; i < to; i++) {
+                    ForbiddenClass gc1 = forbidden.get(i);
+                    for (ForbiddenClass gc2 : forbidden) {
+                        if (gc2 == gc1  ||  graph.containsEdge(gc1, gc2))
+                            continue;
+                        s.setLength(0);
+                        if (!gc2.notSubClassOf(gc1, s))
+                            res.add(gc1 + " ("+ gc1.getID()+ ") -> "+
+                                    gc2 +" ("+ gc2.getID() +") ");
+                    }
+                }
+                return res;
+            }
+        }));
+    }
+
+
+    /**
+     * Return the messages of all blocks in sorted order.
+     */
+    private static List<String> sorted(List<List<String> > blocks) {
+        List<String> res = new ArrayList<String>();
+        for (List<String> block : blocks)
+            res.addAll(block);
+        Collections.sort(res);
+        return res;
+    }
+
+
+    /**
+     * Return the classes in scc as a sorted list of ids and names.
+     */
+    private static String toString(Set<GraphClass> scc) {
+        List<String> names = new ArrayList<String>();
+        for (GraphClass gc : scc)
+            names.add(gc.getID() +" ("+ gc.toString() +"), ");
+        Collections.sort(names);
+
+        StringBuilder s = new StringBuilder("[");
+        for (String name : names)
+            s.append(name);
+        return s.append("]").toString();
+    }
+}
+
+/* EOF */
@@ -0,0 +1,88 @@
+/*
+ * The state of a deduction that continues from a snapshot.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import teo.isgci.gc.GraphClass;
+
+/**
+ * What a Deducer needs to know when it continues from a DeductionSnapshot
+ * with added inputs (see Deducer.continueFrom): the restored nodes and
+ * propers, the added input inclusions and the inclusions that the
+ * deductions add to the restored graph. The Deducer drops it at the end of
+ * findTrivialPropers.
+ */
+class SnapshotContinuation {
+    /** The SCCs of the loaded graph */
+    final Map<GraphClass,Set<GraphClass> > loadedSCCs;
+    /** The restored nodes with their confidence level */
+    final Map<GraphClass,Integer> restoredNodes;
+    /** The restored nodes of lower levels that are not back in graph yet */
+    final Map<GraphClass,Integer> laterNodes;
+    /** The input inclusions that are not in the snapshot */
+    final List<Inclusion> addedInputs;
+    /** The restored proper inclusions */
+    final List<Inclusion> restoredPropers;
+    /** The inclusions between nodes that were not related before */
+    final LinkedHashSet<Inclusion> addedEdges;
+
+
+    /**
+     * Create the state for continuing with the given restored graph.
+     * @param loaded the SCCs of the loaded graph, for the sanity checks
+     * @param restored the restored nodes and their confidence level, in
+     * graph order
+     * @param added the input inclusions that are not in the graph
+     * @param propers the restored inclusions that were proper
+     */
+    SnapshotContinuation(Map<GraphClass,Set<GraphClass> > loaded,
+            Map<GraphClass,Integer> restored, List<Inclusion> added,
+            List<Inclusion> propers) {
+        loadedSCCs = loaded;
+        restoredNodes = restored;
+        laterNodes = new LinkedHashMap<GraphClass,Integer>();
+        for (Map.Entry<GraphClass,Integer> entry : restored.entrySet())
+            if (entry.getValue() < Inclusion.CONFIDENCE_HIGHEST)
+                laterNodes.put(entry.getKey(), entry.getValue());
+        addedInputs = added;
+        restoredPropers = propers;
+        addedEdges = new LinkedHashSet<Inclusion>();
+    }
+
+
+    /**
+     * Return true iff restored nodes or added inputs of confidence levels
+     * below the given one are still to be added.
+     */
+    boolean hasLaterInputs(int confidence) {
+        if (!laterNodes.isEmpty())
+            return true;
+        for (Inclusion e : addedInputs)
+            if (e.getConfidence() < confidence)
+                return true;
+        return false;
+    }
+
+
+    /**
+     * Return true iff gc was restored from the snapshot.
+     */
+    boolean isRestored(GraphClass gc) {
+        return restoredNodes.containsKey(gc);
+    }
+}
+
+/* EOF */
@@ -0,0 +1,111 @@
+/*
+ * The reason why an inclusion was deduced.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.ArrayList;
+
+/**
+ * The tracedata of an inclusion: a description of the rule that deduced
+ * it and the inclusions it was deduced from.
+ */
+//TODO Use varargs
+class TraceData {
+    String desc;                        // Description.
+    ArrayList<Inclusion> prereqs;       // Prerequisite edges.
+
+    public TraceData() {
+        prereqs = new ArrayList<Inclusion>();
+    }
+
+    public TraceData(TraceData t) {
+        this.desc = t.desc;
+        this.prereqs = new ArrayList<Inclusion>(t.prereqs);
+    }
+
+    public TraceData(String desc) {
+        this();
+        set(desc);
+    }
+
+    public TraceData(String desc, Inclusion a) {
+        this();
+        set(desc, a);
+    }
+
+    public TraceData(String desc, Inclusion a, Inclusion b) {
+        this();
+        set(desc, a, b);
+    }
+
+    public TraceData(String desc, Inclusion a, Inclusion b, Inclusion c) {
+        this();
+        set(desc, a, b, c);
+    }
+
+    public TraceData(String desc, Inclusion a, Inclusion b, Inclusion c,
+            Inclusion d) {
+        this();
+        set(desc, a,b,c,d);
+    }
+
+    public TraceData(String desc, ArrayList<Inclusion> v) {
+        this();
+        set(desc, v);
+    }
+
+    public TraceData set(String desc) {
+        this.desc = desc;
+        return this;
+    }
+
+    public TraceData set(String desc, Inclusion a) {
+        this.desc = desc;
+        prereqs.clear();
+        prereqs.add(a);
+        return this;
+    }
+
+    public TraceData set(String desc, Inclusion a, Inclusion b) {
+        this.desc = desc;
+        prereqs.clear();
+        prereqs.add(a);
+        prereqs.add(b);
+        return this;
+    }
+
+    public TraceData set(String desc, Inclusion a, Inclusion b, Inclusion c) {
+        this.desc = desc;
+        prereqs.clear();
+        prereqs.add(a);
+        prereqs.add(b);
+        prereqs.add(c);
+        return this;
+    }
+
+    public TraceData set(String desc, Inclusion a, Inclusion b, Inclusion c,
+            Inclusion d) {
+        this.desc = desc;
+        prereqs.clear();
+        prereqs.add(a);
+        prereqs.add(b);
+        prereqs.add(c);
+        prereqs.add(d);
+        return this;
+    }
+
+    public TraceData set(String desc, ArrayList<Inclusion> v) {
+        this.desc = desc;
+        prereqs = new ArrayList<Inclusion>(v);
+        return this;
+    }
+}
+
+/* EOF */
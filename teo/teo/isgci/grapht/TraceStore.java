@@ -0,0 +1,324 @@
+/*
+ * Stores the deduction traces as int records.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Keeps the tracedata of the deduced inclusions as fixed width records of
+ * ints instead of TraceData objects. A record consists of the rule (the
+ * index of the description in a table, times 2, plus the kind of trace),
+ * the id of the inclusion and up to four ids of prerequisite inclusions.
+ * Traces with more prerequisites continue in the following records, which
+ * have CONTINUED as rule. The records are only appended, so they can be
+ * kept in a memory mapped file instead of on the heap.
+ * The TraceData of an inclusion is recreated from its latest record when
+ * asked for. The two kinds of traces (why an inclusion holds and why it is
+ * proper) are accessed through a View each.
+ * An Inclusion can be traced by a single TraceStore only. The store refers
+ * to the traced inclusions weakly, like an Annotation, so edges that are
+ * removed from the graph can be collected. A prerequisite that has been
+ * collected reads as null.
+ */
+class TraceStore {
+    /** Number of ints in a record */
+    private static final int RECORD = 6;
+    /** Number of prerequisites in a record */
+    private static final int PREREQS = RECORD - 2;
+    /** Number of records in a chunk */
+    private static final int CHUNKRECORDS = 1 << 18;
+    /** Rule of a continuation record */
+    private static final int CONTINUED = -1;
+    /** Prerequisite id for null */
+    private static final int NULLEDGE = -1;
+    /** Prerequisite id for an unused slot */
+    private static final int NOEDGE = -2;
+
+    /** Maps rule numbers to descriptions and back */
+    private final ArrayList<String> descs;
+    private final HashMap<String,Integer> rules;
+    /** The traced inclusions, indexed by id */
+    private final ArrayList<WeakReference<Inclusion> > edges;
+    /** The records */
+    private final ArrayList<IntBuffer> chunks;
+    /** Number of records written */
+    private int count;
+    /** The backing file, or null for the heap */
+    private FileChannel channel;
+    /** The views for the trace kinds */
+    private final View[] views;
+
+
+    /**
+     * Create a store that keeps its records on the heap.
+     */
+    public TraceStore() {
+        descs = new ArrayList<String>();
+        rules = new HashMap<String,Integer>();
+        edges = new ArrayList<WeakReference<Inclusion> >();
+        chunks = new ArrayList<IntBuffer>();
+        count = 0;
+        channel = null;
+        views = new View[] { new View(0), new View(1) };
+    }
+
+
+    /**
+     * Create a store that keeps its records in a memory mapped file, which
+     * is overwritten.
+     */
+    public TraceStore(File file) throws IOException {
+        this();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+    }
+
+
+    /**
+     * Return the view for the given kind of trace: 0 for why inclusions hold,
+     * 1 for why they are proper.
+     */
+    public View getView(int kind) {
+        return views[kind];
+    }
+
+
+    /**
+     * Return the number of records written.
+     */
+    public int size() {
+        return count;
+    }
+
+
+    /**
+     * Close the backing file, if any. The records written so far stay
+     * readable, later ones are kept on the heap.
+     */
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+
+    /**
+     * Return the id of e, assigning a new one if necessary.
+     */
+    private int edgeId(Inclusion e) {
+        int id = findEdgeId(e);
+        if (id >= 0)
+            return id;
+        e.traceId = edges.size();
+        edges.add(new WeakReference<Inclusion>(e));
+        for (View v : views)
+            v.grow(edges.size());
+        return e.traceId;
+    }
+
+
+    /**
+     * Return the id of e, or -1 if it was never traced here.
+     */
+    private int findEdgeId(Inclusion e) {
+        if (e.traceId >= 0  &&  e.traceId < edges.size()  &&
+                edges.get(e.traceId).get() == e)
+            return e.traceId;
+        return -1;
+    }
+
+
+    /**
+     * Return the rule number of desc.
+     */
+    private int rule(String desc) {
+        Integer r = rules.get(desc);
+        if (r == null) {
+            r = descs.size();
+            descs.add(desc);
+            rules.put(desc, r);
+        }
+        return r;
+    }
+
+
+    /**
+     * Append a record and return its number.
+     */
+    private int append(int rule, int edge, int[] prereqs, int from) {
+        int rec = count;
+        int chunk = rec / CHUNKRECORDS;
+        if (chunk == chunks.size()) {
+            try {
+                chunks.add(channel == null ?
+                        IntBuffer.allocate(CHUNKRECORDS * RECORD) :
+                        channel.map(FileChannel.MapMode.READ_WRITE,
+                                (long) chunk * CHUNKRECORDS * RECORD * 4,
+                                CHUNKRECORDS * RECORD * 4).asIntBuffer());
+            } catch (IOException ex) {
+                throw new RuntimeException("Cannot map trace file", ex);
+            }
+        }
+        IntBuffer buf = chunks.get(chunk);
+        int pos = (rec % CHUNKRECORDS) * RECORD;
+        buf.put(pos, rule);
+        buf.put(pos+1, edge);
+        for (int i = 0; i < PREREQS; i++)
+            buf.put(pos+2+i, from+i < prereqs.length ? prereqs[from+i] :
+                    NOEDGE);
+        count++;
+        return rec;
+    }
+
+
+    /**
+     * Return int i of record rec.
+     */
+    private int get(int rec, int i) {
+        return chunks.get(rec / CHUNKRECORDS).get(
+                (rec % CHUNKRECORDS) * RECORD + i);
+    }
+
+
+    /**
+     * The traces of a single kind. Works like an Annotation from Inclusions
+     * to TraceData.
+     */
+    public class View {
+        /** The kind of trace */
+        private final int kind;
+        /** The latest record for every edge id, -1 if none */
+        private int[] latest;
+
+
+        View(int kind) {
+            this.kind = kind;
+            latest = new int[0];
+        }
+
+
+        /**
+         * Make room for n edge ids.
+         */
+        void grow(int n) {
+            if (n <= latest.length)
+                return;
+            int old = latest.length;
+            latest = Arrays.copyOf(latest, Math.max(n, 2*old + 1024));
+            Arrays.fill(latest, old, latest.length, -1);
+        }
+
+
+        /**
+         * Set the tracedata of e. A null tr removes it.
+         */
+        public void setEdge(Inclusion e, TraceData tr) {
+            if (tr == null) {
+                int id = findEdgeId(e);
+                if (id >= 0)
+                    latest[id] = -1;
+                return;
+            }
+
+            int id = edgeId(e);
+            List<Inclusion> pre = tr.prereqs;
+            int[] ids = new int[pre.size()];
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = pre.get(i) == null ? NULLEDGE : edgeId(pre.get(i));
+
+            latest[id] = append(rule(tr.desc)*2 + kind, id, ids, 0);
+            for (int i = PREREQS; i < ids.length; i += PREREQS)
+                append(CONTINUED, id, ids, i);
+        }
+
+
+        /**
+         * Return the latest record for e, or -1.
+         */
+        private int record(Inclusion e) {
+            int id = findEdgeId(e);
+            return id < 0 ? -1 : latest[id];
+        }
+
+
+        /**
+         * Return the description of the tracedata of e, or null if e has no
+         * tracedata.
+         */
+        public String getDesc(Inclusion e) {
+            int rec = record(e);
+            return rec < 0 ? null : descs.get(get(rec, 0) / 2);
+        }
+
+
+        /**
+         * Return (a copy of) the tracedata of e, or null.
+         */
+        public TraceData getEdge(Inclusion e) {
+            int rec = record(e);
+            if (rec < 0)
+                return null;
+
+            TraceData res = new TraceData(descs.get(get(rec, 0) / 2));
+            int id = get(rec, 1);
+            do {
+                for (int i = 0; i < PREREQS; i++) {
+                    int p = get(rec, 2+i);
+                    if (p == NOEDGE)
+                        return res;
+                    res.prereqs.add(p == NULLEDGE ? null :
+                            edges.get(p).get());
+                }
+                rec++;
+            } while (rec < count  &&  get(rec, 0) == CONTINUED  &&
+                    get(rec, 1) == id);
+            return res;
+        }
+
+
+        /**
+         * Print the trace of e to writer, as
+         * e  description
+         *  prerequisite
+         *  ...
+         */
+        public void print(PrintWriter writer, Inclusion e) {
+            writer.print(e);
+            writer.print("  ");
+            TraceData td = getEdge(e);
+            if (td != null) {
+                writer.print(td.desc);
+                writer.println();
+                for (Inclusion p : td.prereqs) {
+                    writer.print(" ");
+                    writer.println(p);
+                }
+            } else {
+                writer.print("(no tracedata)");
+                writer.println();
+            }
+        }
+    }
+}
+
+/* EOF */
@@ -0,0 +1,196 @@
+/*
+ * Decides which edges of a graph can be deleted without losing reachability.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.jgrapht.DirectedGraph;
+
+import teo.isgci.util.BitRow;
+
+/**
+ * Decides for an edge v->w whether another path from v to w exists, while
+ * edges are deleted one by one. This gives the same results as deleting the
+ * edge and searching a path in the graph, but without the searches:
+ * As only edges for which another path exists are deleted, the reachability
+ * relation (and so the SCCs) never changes. Hence an edge between two SCCs
+ * A and B is superfluous iff some SCC other than A and B lies on a path
+ * from A to B, or another edge from A to B remains. For the former one bit
+ * row per SCC of the condensation in topological order suffices, for the
+ * latter a count per pair of SCCs. An edge inside an SCC is superfluous iff
+ * a path remains inside that SCC, which is found by a search over the
+ * (usually few) remaining edges inside the SCC.
+ * The graph itself is not changed, and changes to it after construction are
+ * not seen by the reducer.
+ */
+class TransitiveReducer<V,E> {
+    /** The graph we're reducing */
+    private final DirectedGraph<V,E> graph;
+    /** Vertex ids and SCCs */
+    private final Condensation<V,E> cond;
+    /** after[c] contains the SCCs d != c reachable from SCC c */
+    private final long[][] after;
+    /** before[c] contains the SCCs d != c from which SCC c is reachable */
+    private final long[][] before;
+    /** Number of remaining edges between SCCs c and d, keyed by c*count+d.
+     * Only for pairs that have no other SCC between them. */
+    private final HashMap<Long,int[]> counts;
+    /** The remaining edges inside the SCC of v, indexed by v, null for
+     * singleton SCCs */
+    private final List<List<E> > inner;
+    /** The edges that were deleted */
+    private final Set<E> deleted;
+
+
+    /**
+     * Create a reducer for the current edges of g.
+     */
+    public TransitiveReducer(DirectedGraph<V,E> g) {
+        graph = g;
+        cond = new Condensation<V,E>(g);
+        int count = cond.count;
+        int n = cond.size();
+
+        //---- SCC reachability, sinks (low numbers) first
+        after = new long[count][];
+        before = new long[count][];
+        int[][] members = cond.members();
+        for (int c = 0; c < count; c++) {
+            long[] row = BitRow.create(count);
+            for (int v : members[c])
+                for (int w : cond.out[v]) {
+                    int d = cond.comp[w];
+                    if (d != c  &&  !BitRow.get(row, d)) {
+                        BitRow.set(row, d);
+                        BitRow.or(row, after[d]);
+                    }
+                }
+            after[c] = row;
+            before[c] = BitRow.create(count);
+        }
+        for (int c = 0; c < count; c++)
+            for (int d = BitRow.nextSetBit(after[c], 0); d >= 0;
+                    d = BitRow.nextSetBit(after[c], d+1))
+                BitRow.set(before[d], c);
+
+        //---- Edges between adjacent SCCs and inside SCCs
+        counts = new HashMap<Long,int[]>();
+        inner = new ArrayList<List<E> >(Collections.nCopies(n,
+                (List<E>) null));
+        for (E e : g.edgeSet()) {
+            int v = cond.index.indexOf(g.getEdgeSource(e));
+            int c = cond.comp[v];
+            int d = cond.comp[cond.index.indexOf(g.getEdgeTarget(e))];
+            if (c == d) {
+                if (inner.get(v) == null)
+                    inner.set(v, new ArrayList<E>());
+                inner.get(v).add(e);
+            } else if (!isIndirect(c, d)) {
+                Long key = key(c, d);
+                int[] cnt = counts.get(key);
+                if (cnt == null)
+                    counts.put(key, cnt = new int[1]);
+                cnt[0]++;
+            }
+        }
+
+        deleted = Collections.newSetFromMap(new IdentityHashMap<E,Boolean>());
+    }
+
+
+    private long key(int c, int d) {
+        return (long) c * cond.count + d;
+    }
+
+
+    /**
+     * Return true iff some SCC other than c and d lies on a path from c to
+     * d.
+     */
+    private boolean isIndirect(int c, int d) {
+        return BitRow.intersects(after[c], before[d]);
+    }
+
+
+    /**
+     * Return true iff e connects two vertices in the same SCC.
+     */
+    public boolean isInner(E e) {
+        return cond.comp[cond.index.indexOf(graph.getEdgeSource(e))] ==
+                cond.comp[cond.index.indexOf(graph.getEdgeTarget(e))];
+    }
+
+
+    /**
+     * Return true iff a path from the source to the target of e remains
+     * when e and the deleted edges are left out.
+     */
+    public boolean isSuperfluous(E e) {
+        int v = cond.index.indexOf(graph.getEdgeSource(e));
+        int w = cond.index.indexOf(graph.getEdgeTarget(e));
+        int c = cond.comp[v];
+        int d = cond.comp[w];
+
+        if (c != d)
+            return isIndirect(c, d)  ||  counts.get(key(c, d))[0] > 1;
+
+        //---- Search inside the SCC
+        V dest = graph.getEdgeTarget(e);
+        ArrayList<V> queue = new ArrayList<V>();
+        Set<V> seen = Collections.newSetFromMap(
+                new IdentityHashMap<V,Boolean>());
+        queue.add(graph.getEdgeSource(e));
+        seen.add(graph.getEdgeSource(e));
+        for (int i = 0; i < queue.size(); i++) {
+            for (E f : inner.get(cond.index.indexOf(queue.get(i)))) {
+                if (f == e  ||  deleted.contains(f))
+                    continue;
+                V to = graph.getEdgeTarget(f);
+                if (to == dest)
+                    return true;
+                if (seen.add(to))
+                    queue.add(to);
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Mark e as deleted. e must be superfluous.
+     */
+    public void delete(E e) {
+        if (!deleted.add(e))
+            return;
+        int c = cond.comp[cond.index.indexOf(graph.getEdgeSource(e))];
+        int d = cond.comp[cond.index.indexOf(graph.getEdgeTarget(e))];
+        if (c != d  &&  !isIndirect(c, d))
+            counts.get(key(c, d))[0]--;
+    }
+
+
+    /**
+     * Delete e if it is superfluous and return whether it was.
+     */
+    public boolean deleteIfSuperfluous(E e) {
+        if (!isSuperfluous(e))
+            return false;
+        delete(e);
+        return true;
+    }
+}
+
+/* EOF */
@@ -0,0 +1,123 @@
+/*
+ * Maps the vertices of a graph to dense integer ids.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.grapht;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.jgrapht.Graph;
+
+/**
+ * Assigns the ids 0, 1, 2, ... to vertices in the order in which they are
+ * added. Algorithms that work on int arrays and bit rows use this to
+ * translate between vertices and array indices.
+ * Vertices can only be added, never removed.
+ * A graph whose vertices won't be removed anymore can be frozen, after
+ * which its index is available to e.g. IndexedAnnotation.
+ */
+public class VertexIndex<V> {
+    /** The indices of the frozen graphs */
+    private static final Map<Graph<?,?>,VertexIndex<?> > frozen =
+            Collections.synchronizedMap(
+                    new WeakHashMap<Graph<?,?>,VertexIndex<?> >());
+
+    /** Maps vertices to their ids */
+    private HashMap<V,Integer> ids;
+    /** Maps ids to their vertices */
+    private ArrayList<V> vertices;
+
+
+    /**
+     * Create an empty index.
+     */
+    public VertexIndex() {
+        ids = new HashMap<V,Integer>();
+        vertices = new ArrayList<V>();
+    }
+
+
+    /**
+     * Create an index containing the given vertices, numbered in iteration
+     * order.
+     */
+    public VertexIndex(Iterable<V> vs) {
+        this();
+        for (V v : vs)
+            add(v);
+    }
+
+
+    /**
+     * Add v to the index, if it doesn't exist yet, and return its id.
+     */
+    public int add(V v) {
+        Integer i = ids.get(v);
+        if (i != null)
+            return i;
+
+        ids.put(v, vertices.size());
+        vertices.add(v);
+        return vertices.size()-1;
+    }
+
+
+    /**
+     * Return the id of v or -1 if v is not in this index.
+     */
+    public int indexOf(V v) {
+        Integer i = ids.get(v);
+        return i == null ? -1 : i;
+    }
+
+
+    /**
+     * Return the vertex with id i.
+     */
+    public V get(int i) {
+        return vertices.get(i);
+    }
+
+
+    /**
+     * Return the number of vertices in this index.
+     */
+    public int size() {
+        return vertices.size();
+    }
+
+
+    /**
+     * Declare that no vertices will be removed from g anymore and return
+     * the index of its vertices. Vertices that are added to g later are not
+     * in the index.
+     */
+    public static <V> VertexIndex<V> freeze(Graph<V,?> g) {
+        VertexIndex<V> res = new VertexIndex<V>(g.vertexSet());
+        frozen.put(g, res);
+        return res;
+    }
+
+
+    /**
+     * Return the index of g if g is frozen, null otherwise.
+     * The cast is safe, as freeze stores the index of a Graph&lt;V,?&gt;
+     * under that graph.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> VertexIndex<V> getFrozen(Graph<V,?> g) {
+        return (VertexIndex<V>) frozen.get(g);
+    }
+}
+
+/* EOF */
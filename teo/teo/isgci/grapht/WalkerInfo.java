@@ -33,6 +33,9 @@ public class WalkerInfo<V,E> {
      * using TreeWalkers) you don't need to care about this field.
      */
     public boolean tree;
+    /* A BFSWalker or DFSWalker that creates its own WalkerInfos for a
+     * frozen graph keeps distance, discover and finish in arrays instead;
+     * use its getDistance, getDiscover and getFinish. */
     public int distance; // distance to start node in BFS-tree
     public int discover; // discover-time in DFS
     public int finish;   // finish-time in DFS
@@ -62,7 +65,7 @@ public class WalkerInfo<V,E> {
     public static <VV,EE> Annotation<VV,EE,WalkerInfo<VV,EE> >
             createAnnotation(DirectedGraph<VV,EE> g){
         return
-            new Annotation<VV,EE,WalkerInfo<VV,EE> >(g,
+            Annotation.<VV,EE,WalkerInfo<VV,EE> >create(g,
                 new UnaryFunction<VV,WalkerInfo<VV,EE> >() {
                     public WalkerInfo<VV,EE> execute(VV n) {
                         return new WalkerInfo<VV,EE>();
@@ -655,7 +655,7 @@ public class ISGCIMainFrame extends JFrame implements WindowListener {
         SimpleDirectedGraph<GraphClass, Inclusion> g
             = new SimpleDirectedGraph<GraphClass, Inclusion>(Inclusion.class);
         Graphs.addGraph(g, DataSet.inclGraph);
-        GAlg.transitiveReductionBruteForce(g);
+        GAlg.transitiveReductionCyclic(g);
 
         try {
             out = new OutputStreamWriter(new FileOutputStream(
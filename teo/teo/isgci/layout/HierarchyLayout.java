@@ -22,6 +22,8 @@ import org.jgrapht.graph.SimpleDirectedGraph;
 import teo.isgci.grapht.Annotation;
 import teo.isgci.grapht.GAlg;
 import teo.isgci.grapht.GraphWalker;
+import teo.isgci.grapht.IndexedAnnotation;
+import teo.isgci.grapht.VertexIndex;
 import teo.isgci.util.IntFunction;
 
 /**
@@ -107,7 +109,13 @@ public class HierarchyLayout<V,E> {
      * Initializes the GraphDrawInfo-Objects.
      */
     protected void init(){
-        gdiAnn = new Annotation<V,E,GraphDrawInfo<V,E> >(graph);
+        // Nodes are never removed from the layout graph, so it can be frozen
+        // once and its index shared by later layouts. Virtual nodes are
+        // added later on, they are kept in the hash map.
+        VertexIndex<V> index = VertexIndex.getFrozen(graph);
+        if (index == null)
+            index = VertexIndex.freeze(graph);
+        gdiAnn = new IndexedAnnotation<V,E,GraphDrawInfo<V,E> >(graph, index);
         
         if (widthFunc == null)
             for (V v : graph.vertexSet())
@@ -34,47 +34,39 @@ public class Cliquewidth extends Problem {
 
 
     /**
-     * Distribute the algorithms for the children to this problem.
+     * Distribute the algorithms for the children to this problem on n.
      * Overloaded because cliquewidth NPC distributes DOWNWARD to cliquewidth
      * expression. It would come back to cwd again, causing a loop, which looks
      * suspicious to the user.
      */
-    protected void distributeChildren() {
+    protected void distributeChildren(GraphClass n) {
         Complexity c;
 
-        for (GraphClass n : graph.vertexSet()) {
-            for (Reduction r : children) {
-                c = r.fromChild(
-                        r.getChild().getProgeniallyDerivedComplexity(n) );
-                if (!c.isUnknown()  &&  (
-                        !getDerivedComplexity(n).isNPC() ||
-                        !"Cliquewidth expression".equals(
-                            r.getChild().getName())  ||
-                        !c.isNPC() ) )
-                    addAlgo(n, r.getParentAlgo(c));
-            }
+        for (Reduction r : children) {
+            c = r.fromChild(
+                    r.getChild().getProgeniallyDerivedComplexity(n) );
+            if (!c.isUnknown()  &&  (
+                    !getDerivedComplexity(n).isNPC() ||
+                    !"Cliquewidth expression".equals(
+                        r.getChild().getName())  ||
+                    !c.isNPC() ) )
+                addAlgo(n, r.getParentAlgo(c));
         }
     }
 
 
     /**
-     * Do special deductions for a particular problem.
+     * Do special deductions for a particular problem on n.
      * Deduce probe X from X.
      */
-    protected void distributeSpecial() {
-        int i;
-        boolean ok;
-        Complexity c;
-
-        for (GraphClass n : graph.vertexSet()) {
-            if ( !(n instanceof ProbeClass) ||
-                    getDerivedComplexity(n).betterOrEqual(Complexity.P) )
-                continue;
+    protected void distributeSpecial(GraphClass n) {
+        if ( !(n instanceof ProbeClass) ||
+                getDerivedComplexity(n).betterOrEqual(Complexity.P) )
+            return;
 
-            GraphClass base = ((ProbeClass) n).getBase();
-            if (getDerivedComplexity(base).betterOrEqual(Complexity.P))
-                createAlgo(n, Complexity.P, "From the base class.");
-        }
+        GraphClass base = ((ProbeClass) n).getBase();
+        if (getDerivedComplexity(base).betterOrEqual(Complexity.P))
+            createAlgo(n, Complexity.P, "From the base class.");
     }
 }
 
@@ -11,6 +11,8 @@
 package teo.isgci.problem;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -21,11 +23,17 @@ import org.jgrapht.DirectedGraph;
 
 import teo.isgci.db.Note;
 import teo.isgci.gc.ComplementClass;
+import teo.isgci.gc.DerivedClass;
 import teo.isgci.gc.GraphClass;
+import teo.isgci.gc.SetClass;
 import teo.isgci.gc.UnionClass;
 import teo.isgci.grapht.Annotation;
 import teo.isgci.grapht.GAlg;
 import teo.isgci.grapht.Inclusion;
+import teo.isgci.grapht.IndexedAnnotation;
+import teo.isgci.grapht.VertexIndex;
+import teo.isgci.util.ParallelBlocks;
+import teo.isgci.util.UnaryFunction;
 
 
 /**
@@ -117,6 +125,27 @@ public class Problem {
         return getName();
     }
 
+    /**
+     * Store the complexities and algorithms of this in arrays over index
+     * from now on.
+     */
+    public void indexNodes(VertexIndex<GraphClass> index) {
+        IndexedAnnotation<GraphClass,Inclusion,Complexity> c =
+                new IndexedAnnotation<GraphClass,Inclusion,Complexity>(
+                    graph, index);
+        c.copyNodes(complexAnn);
+        complexAnn = c;
+
+        if (algoAnn != null) {
+            IndexedAnnotation<GraphClass,Inclusion,ProblemOnNode> a =
+                new IndexedAnnotation<GraphClass,Inclusion,ProblemOnNode>(
+                    graph, index);
+            a.copyNodes(algoAnn);
+            algoAnn = a;
+        }
+    }
+
+
     /**
      * Create a new problem with the given name and graph;
      */
@@ -180,12 +209,16 @@ public class Problem {
 
     /**
      * Get the complexity of n, consulting the parent problem, too.
+     * While distributing, the result is memoized for the current step.
      */
     protected Complexity getParentallyDerivedComplexity(GraphClass n) {
-        Complexity c = getDerivedComplexity(n);
         if (parents.isEmpty())
-            return c;
+            return getDerivedComplexity(n);
+        int i = parentalMemo == null ? -1 : index.indexOf(n);
+        if (i >= 0  &&  parentalMemo[i] != null)
+            return parentalMemo[i];
 
+        Complexity c = getDerivedComplexity(n);
         Complexity pc = Complexity.UNKNOWN;
         for (Reduction r : parents) {
             pc = r.fromParent(r.getParent().getParentallyDerivedComplexity(n));
@@ -194,18 +227,24 @@ public class Problem {
             if (pc.betterThan(c))
                 c = pc;
         }
+        if (i >= 0)
+            parentalMemo[i] = c;
         return c;
     }
 
 
     /**
      * Get the complexity of n, consulting the child problem, too.
+     * While distributing, the result is memoized for the current step.
      */
     protected Complexity getProgeniallyDerivedComplexity(GraphClass n) {
-        Complexity c = getDerivedComplexity(n);
         if (children.isEmpty())
-            return c;
+            return getDerivedComplexity(n);
+        int i = progenialMemo == null ? -1 : index.indexOf(n);
+        if (i >= 0  &&  progenialMemo[i] != null)
+            return progenialMemo[i];
 
+        Complexity c = getDerivedComplexity(n);
         Complexity cc = Complexity.UNKNOWN;
         for (Reduction r : children) {
             cc = r.fromChild(r.getChild().getProgeniallyDerivedComplexity(n));
@@ -214,6 +253,8 @@ public class Problem {
             if (cc.betterThan(c))
                 c = cc;
         }
+        if (i >= 0)
+            progenialMemo[i] = c;
         return c;
     }
 
@@ -312,68 +353,76 @@ public class Problem {
 
 
     /**
-     * Distribute the Algorithms for this problem over all nodes.
+     * Distribute the Algorithms for this problem over the pending nodes, in
+     * the order of the node index. Nodes that receive new algorithms are
+     * handled later in the same pass if they come later in the order, like
+     * a loop over all nodes would do.
      * initAlgo/addAlgo must have been called for all problems.
      * Assumes the graph is transitively closed!
-     * @param gc2node maps GraphClass to Node in g
      */
     protected void distributeAlgorithms() {
-        Complexity c;
-        Map<GraphClass,Set<GraphClass> > scc = GAlg.calcSCCMap(graph);
-
-        //---- Add every set of algorithms to the super/subnodes' set. ----
-        for (GraphClass n : graph.vertexSet()) {
-            HashSet algos = getAlgoSet(n);
-            if (algos != null) {
-                c = getDerivedComplexity(n);
-                if (c.distributesUp())
-                    distribute(algos, GAlg.inNeighboursOf(graph, n));
-                else if (c.distributesDown())
-                    distribute(algos, GAlg.outNeighboursOf(graph, n));
-                else if (c.distributesEqual())
-                    distribute(algos, scc.get(n));
-            }
+        for (int i = pendingAlgos.nextSetBit(0); i >= 0;
+                i = pendingAlgos.nextSetBit(i+1)) {
+            pendingAlgos.clear(i);
+            GraphClass n = index.get(i);
+            distributeAlgorithms(n);
+            // The complexity of n in this step is seen only in the next one
+            if (getChangedStep(n) == currentStep)
+                pendingAlgos.set(i);
         }
     }
 
 
     /**
-     * Distribute the algorithms for the parents to this problem.
+     * Add the set of algorithms of n to the super/subnodes' set.
      */
-    protected void distributeParents() {
+    protected void distributeAlgorithms(GraphClass n) {
+        HashSet algos = getAlgoSet(n);
+        if (algos != null) {
+            Complexity c = getDerivedComplexity(n);
+            if (c.distributesUp())
+                distribute(algos, GAlg.inNeighboursOf(graph, n));
+            else if (c.distributesDown())
+                distribute(algos, GAlg.outNeighboursOf(graph, n));
+            else if (c.distributesEqual())
+                distribute(algos, getEquivalentClasses(n));
+        }
+    }
+
+
+    /**
+     * Distribute the algorithms for the parents to this problem on n.
+     */
+    protected void distributeParents(GraphClass n) {
         Complexity c;
 
-        for (GraphClass n: graph.vertexSet()) {
-            for (Reduction r : parents) {
-                c = r.fromParent(
-                        r.getParent().getParentallyDerivedComplexity(n) );
-                if (!c.isUnknown())
-                    addAlgo(n, r.getChildAlgo(c));
-            }
+        for (Reduction r : parents) {
+            c = r.fromParent(
+                    r.getParent().getParentallyDerivedComplexity(n) );
+            if (!c.isUnknown())
+                addAlgo(n, r.getChildAlgo(c));
         }
     }
 
 
     /**
-     * Distribute the algorithms for the children to this problem.
+     * Distribute the algorithms for the children to this problem on n.
      */
-    protected void distributeChildren() {
+    protected void distributeChildren(GraphClass n) {
         Complexity c;
 
-        for (GraphClass n : graph.vertexSet()) {
-            for (Reduction r : children) {
-                c = r.fromChild(
-                        r.getChild().getProgeniallyDerivedComplexity(n) );
-                if (!c.isUnknown())
-                    addAlgo(n, r.getParentAlgo(c));
-            }
+        for (Reduction r : children) {
+            c = r.fromChild(
+                    r.getChild().getProgeniallyDerivedComplexity(n) );
+            if (!c.isUnknown())
+                addAlgo(n, r.getParentAlgo(c));
         }
     }
 
 
     /**
-     * Distribute the Algorithms for this problem over all nodes via the
-     * complement.
+     * Distribute the Algorithms for this problem over the pending nodes via
+     * the complement.
      * initAlgo/addAlgo must have been called for all problems.
      * distributeAlgorithms must have been called for this problem, and all
      * parent/child problems.
@@ -381,83 +430,96 @@ public class Problem {
      * set!
      */
     public void distributeComplement() {
+        BitSet todo = pendingComplement;
+        pendingComplement = new BitSet();
         if (complement == null)
             return;
+        todo.or(complement.pendingCoComplement);
+        complement.pendingCoComplement = new BitSet();
 
-        GraphClass con;
-        Complexity nc, conc;
-
-        for (GraphClass n : graph.vertexSet()) {
-            if (!(n instanceof ComplementClass))
-                continue;
-            con = ((ComplementClass) n).getBase();
-            nc = getDerivedComplexity(n);
-            conc = complement.getDerivedComplexity(con);
-            if (!nc.isCompatible(complementComplexity(conc))) {
-                System.err.println("ComplexityClash: "+
-                        n +" "+ this.name +"="+ nc +" but "+
-                        con +" "+ this.complement.name +"="+ conc);
-            } else if (nc.isUnknown() && !conc.isUnknown()) {
-                addAlgo(n, getComplementAlgo(complementComplexity(conc)));
-            } else if (conc.isUnknown() && !nc.isUnknown()) {
-                complement.addAlgo(con, complement.getComplementAlgo(
-                        complement.complementComplexity(nc)) );
-            }
+        for (int i = todo.nextSetBit(0); i >= 0; i = todo.nextSetBit(i+1))
+            distributeComplement(index.get(i));
+    }
+
+
+    /**
+     * Distribute the Algorithms for this problem on n via the complement.
+     */
+    protected void distributeComplement(GraphClass n) {
+        if (!(n instanceof ComplementClass))
+            return;
+
+        GraphClass con = ((ComplementClass) n).getBase();
+        Complexity nc = getDerivedComplexity(n);
+        Complexity conc = complement.getDerivedComplexity(con);
+        if (!nc.isCompatible(complementComplexity(conc))) {
+            System.err.println("ComplexityClash: "+
+                    n +" "+ this.name +"="+ nc +" but "+
+                    con +" "+ this.complement.name +"="+ conc);
+        } else if (nc.isUnknown() && !conc.isUnknown()) {
+            addAlgo(n, getComplementAlgo(complementComplexity(conc)));
+        } else if (conc.isUnknown() && !nc.isUnknown()) {
+            complement.addAlgo(con, complement.getComplementAlgo(
+                    complement.complementComplexity(nc)) );
         }
     }
 
 
     /**
-     * Try moving complexity information UP to union nodes. We only change the
-     * complexity class for Union nodes, and do not generate new references or
-     * timebounds.
+     * Apply the union, intersection and special rules to the pending nodes.
+     */
+    protected void distributeDerived() {
+        BitSet todo = pendingDerived;
+        pendingDerived = new BitSet();
+
+        for (int i = todo.nextSetBit(0); i >= 0; i = todo.nextSetBit(i+1))
+            distributeUpUnion(index.get(i));
+        for (int i = todo.nextSetBit(0); i >= 0; i = todo.nextSetBit(i+1))
+            distributeDownIntersect(index.get(i));
+        for (int i = todo.nextSetBit(0); i >= 0; i = todo.nextSetBit(i+1))
+            distributeSpecial(index.get(i));
+    }
+
+
+    /**
+     * Try moving complexity information UP to union node n. We only change
+     * the complexity class for Union nodes, and do not generate new
+     * references or timebounds.
      * The reasoning is: If we can solve the problem for every part of the
      * union in polytime, then we can apply all part algorithms in polytime,
      * and check their solutions in polytime. So the problem is solvable in
      * polytime on the union.
      */
-    protected void distributeUpUnion() {
-        int i;
-        boolean ok;
-        Complexity c;
-
-        for (GraphClass n: graph.vertexSet()) {
-            if ( !(n instanceof UnionClass) ||
-                    getDerivedComplexity(n).betterOrEqual(Complexity.P) )
-                continue;
-
-            //---- Check whether all parts are in P ----
-            ok = true;
-            for (GraphClass part : ((UnionClass) n).getSet()) {
-                if (!getDerivedComplexity(part).betterOrEqual(Complexity.P)) {
-                    ok = false;
-                    break;
-                }
-            }
+    protected void distributeUpUnion(GraphClass n) {
+        if ( !(n instanceof UnionClass) ||
+                getDerivedComplexity(n).betterOrEqual(Complexity.P) )
+            return;
 
-            if (ok) {
-                //System.err.println("NOTE: distributeUpUnion invoked on "+
-                        //n.getName()+" "+toString());
-                createAlgo(n, Complexity.P, "From the constituent classes.");
-            }
+        //---- Check whether all parts are in P ----
+        for (GraphClass part : ((UnionClass) n).getSet()) {
+            if (!getDerivedComplexity(part).betterOrEqual(Complexity.P))
+                return;
         }
+
+        //System.err.println("NOTE: distributeUpUnion invoked on "+
+                //n.getName()+" "+toString());
+        createAlgo(n, Complexity.P, "From the constituent classes.");
     }
 
 
     /**
-     * Try moving complexity information DOWN to intersection nodes.
+     * Try moving complexity information DOWN to intersection node n.
      * Example: If we can recognize every part of the intersection in
      * polytime/lin, then we can take their conjunction in polytime/lin as
      * well.
-     * @param gc2node translates a GraphClass into the corresponding ISGCINode
      */
-    protected void distributeDownIntersect() {}
+    protected void distributeDownIntersect(GraphClass n) {}
 
     /**
-     * Do special deductions for a particular problem.
+     * Do special deductions for a particular problem on n.
      * Default implementation does nothing.
      */
-    protected void distributeSpecial() {}
+    protected void distributeSpecial(GraphClass n) {}
 
 
     /**
@@ -512,6 +574,16 @@ public class Problem {
     * - Algorithms for problem on node or on a super/subclass of node.
     * - Derived from previous step by parent/child problems
     * - Derived from previous step by union/intersect/special
+    * Then the complement step and a single repetition follow each other
+    * until nothing changes anymore.
+    * A step only visits the (problem, node) pairs for which something it
+    * depends on changed since the step was done last. The pending nodes are
+    * kept as bit sets over index.
+    * The steps of distributeComplexitiesBasic can run the problems in
+    * parallel: A problem only adds algorithms to its own nodes and marks its
+    * own pending sets, and reads other problems only through the complexity
+    * of the previous step. The complement step adds algorithms to the
+    * complement problem and always runs sequentially.
     */
     static final int STEPS = 4*3 + 1;
     /** The current step */
@@ -520,6 +592,33 @@ public class Problem {
     private static boolean deducing;
     /** The problems */
     private static List<Problem> problems;
+    /** Number of threads for the steps */
+    private static int threads = 1;
+    /** The nodes of the graph, numbered for the pending sets. Null when not
+     * distributing. */
+    private static VertexIndex<GraphClass> index;
+    /** The SCCs of the graph */
+    private static Map<GraphClass,Set<GraphClass> > sccs;
+    /** For every node, the union/intersect/derived nodes with it as part or
+     * base */
+    private static int[][] dependents;
+    /** Nodes for which the parent/child reductions must be done, because
+     * this changed on them */
+    private BitSet pendingReductions;
+    /** Nodes of which the algorithms must be distributed */
+    private BitSet pendingAlgos;
+    /** Nodes on which the union/intersect/special rules must be applied */
+    private BitSet pendingDerived;
+    /** Nodes on which the complement rule must be applied */
+    private BitSet pendingComplement;
+    /** Nodes on which the complement problem must apply the complement rule,
+     * because this changed on their base */
+    private BitSet pendingCoComplement;
+    /** The parentally/progenially derived complexities in the current step,
+     * by node index, null if not computed yet. Cleared by nextStep(). The
+     * values depend only on the previous step, so threads that compute
+     * the same entry concurrently store the same value. */
+    private Complexity[] parentalMemo, progenialMemo;
 
 
     /**
@@ -533,43 +632,242 @@ public class Problem {
 
 
     /**
-     * Perform a single sequence of complexity deductions (3 steps), without
-     * complement.
+     * Set the number of threads to use for distributing the complexities.
      */
-    private static void distributeComplexitiesBasic() {
-        for (Problem p : problems)
-            p.distributeAlgorithms();
+    public static void setThreads(int n) {
+        threads = Math.max(1, n);
+    }
+
+
+    /**
+     * Advance to the next step and forget the memoized complexities of the
+     * previous one.
+     */
+    private static void nextStep() {
         currentStep++;
+        for (Problem p : problems) {
+            Arrays.fill(p.parentalMemo, null);
+            Arrays.fill(p.progenialMemo, null);
+        }
+    }
+
+
+    /**
+     * Return the last step in which an algorithm for this was added to n, or
+     * -1.
+     */
+    private int getChangedStep(GraphClass n) {
+        ProblemOnNode pon = algoAnn.getNode(n);
+        return pon == null ? -1 : pon.getChangedStep();
+    }
+
+
+    /**
+     * Return the classes equivalent to n (including n).
+     */
+    protected Set<GraphClass> getEquivalentClasses(GraphClass n) {
+        return sccs.get(n);
+    }
 
+
+    /**
+     * Called when a new algorithm for this was added to n, to make the steps
+     * that depend on it visit n and the nodes derived from n again.
+     */
+    void changed(GraphClass n) {
+        if (index == null)
+            return;
+        int i = index.indexOf(n);
+        if (i < 0)
+            return;
+
+        pendingAlgos.set(i);
+        pendingReductions.set(i);
+        pendingDerived.set(i);
+        if (complement != null  &&  n instanceof ComplementClass)
+            pendingComplement.set(i);
+        for (int d : dependents[i]) {
+            pendingDerived.set(d);
+            if (complement != null  &&  index.get(d) instanceof ComplementClass)
+                pendingCoComplement.set(d);
+        }
+    }
+
+
+    /**
+     * Start with all nodes pending for all steps.
+     * Also creates the ProblemOnNodes that don't exist yet, so the
+     * annotations are not modified while the problems run in parallel.
+     * Assumes all problems share the same graph.
+     */
+    private static void initPending() {
+        DirectedGraph<GraphClass,Inclusion> g = problems.get(0).graph;
+        index = new VertexIndex<GraphClass>(g.vertexSet());
+        sccs = GAlg.calcSCCMap(g);
+
+        List<List<Integer> > deps = new ArrayList<List<Integer> >();
+        for (int i = 0; i < index.size(); i++)
+            deps.add(new ArrayList<Integer>());
+        for (int i = 0; i < index.size(); i++) {
+            GraphClass n = index.get(i);
+            List<GraphClass> parts = new ArrayList<GraphClass>();
+            if (n instanceof SetClass)
+                parts.addAll(((SetClass) n).getSet());
+            else if (n instanceof DerivedClass)
+                parts.add(((DerivedClass) n).getBase());
+            for (GraphClass part : parts) {
+                int j = index.indexOf(part);
+                if (j >= 0)
+                    deps.get(j).add(i);
+            }
+        }
+        dependents = new int[index.size()][];
+        for (int i = 0; i < index.size(); i++) {
+            dependents[i] = new int[deps.get(i).size()];
+            for (int j = 0; j < dependents[i].length; j++)
+                dependents[i][j] = deps.get(i).get(j);
+        }
+
+        BitSet all = new BitSet();
+        all.set(0, index.size());
         for (Problem p : problems) {
-            p.distributeParents();
-            p.distributeChildren();
+            p.indexNodes(index);
+            for (GraphClass n : g.vertexSet())
+                if (p.algoAnn.getNode(n) == null)
+                    p.algoAnn.setNode(n, new ProblemOnNode(p, n));
+            p.pendingReductions = (BitSet) all.clone();
+            p.pendingAlgos = (BitSet) all.clone();
+            p.pendingDerived = (BitSet) all.clone();
+            p.pendingComplement = (BitSet) all.clone();
+            p.pendingCoComplement = new BitSet();
+            p.parentalMemo = new Complexity[index.size()];
+            p.progenialMemo = new Complexity[index.size()];
         }
-        currentStep++;
+    }
+
+
+    /**
+     * Return true iff some step still has nodes to visit.
+     */
+    private static boolean isPending() {
+        for (Problem p : problems)
+            if (!p.pendingReductions.isEmpty()  ||
+                    !p.pendingAlgos.isEmpty()  ||
+                    !p.pendingDerived.isEmpty()  ||
+                    !p.pendingComplement.isEmpty()  ||
+                    !p.pendingCoComplement.isEmpty())
+                return true;
+        return false;
+    }
+
 
+    /**
+     * Distribute the algorithms for the parent/child problems on the nodes
+     * in todo.
+     */
+    private void distributeReductions(BitSet todo) {
+        for (int i = todo.nextSetBit(0); i >= 0; i = todo.nextSetBit(i+1))
+            distributeParents(index.get(i));
+        for (int i = todo.nextSetBit(0); i >= 0; i = todo.nextSetBit(i+1))
+            distributeChildren(index.get(i));
+    }
+
+
+    /**
+     * Execute f for all problems, on multiple threads if so requested.
+     * Returns when f is done for all problems.
+     */
+    private static void forAllProblems(final UnaryFunction<Problem,?> f) {
+        new ParallelBlocks(threads).run(problems.size(),
+                new ParallelBlocks.BlockFunction<Object>() {
+                    public Object execute(int from, int to) {
+                        for (int i = from; i < to; i++)
+                            f.execute(problems.get(i));
+                        return null;
+                    }
+                });
+    }
+
+
+    /**
+     * Perform a single sequence of complexity deductions (3 steps), without
+     * complement.
+     */
+    private static void distributeComplexitiesBasic() {
+        forAllProblems(new UnaryFunction<Problem,Object>() {
+            public Object execute(Problem p) {
+                p.distributeAlgorithms();
+                return null;
+            }
+        });
+        nextStep();
+
+        final BitSet todo = new BitSet();
         for (Problem p : problems) {
-            p.distributeUpUnion();
-            p.distributeDownIntersect();
-            p.distributeSpecial();
+            todo.or(p.pendingReductions);
+            p.pendingReductions = new BitSet();
         }
-        currentStep++;
+        forAllProblems(new UnaryFunction<Problem,Object>() {
+            public Object execute(Problem p) {
+                p.distributeReductions(todo);
+                return null;
+            }
+        });
+        nextStep();
+
+        forAllProblems(new UnaryFunction<Problem,Object>() {
+            public Object execute(Problem p) {
+                p.distributeDerived();
+                return null;
+            }
+        });
+        nextStep();
+    }
+
+
+    /**
+     * Perform the complement step.
+     */
+    private static void distributeComplexitiesComplement() {
+        for (Problem p : problems)
+            p.distributeComplement();
+        nextStep();
     }
 
 
     /**
      * Distribute/deduce the algorithms and complexities.
-     * @param gc2node maps GraphClass to Node in g
      */
     public static void distributeComplexities() {
+        if (problems.isEmpty())
+            return;
+        initPending();
+
         distributeComplexitiesBasic();
         distributeComplexitiesBasic();
-
-        for (Problem p : problems)
-            p.distributeComplement();
-        currentStep++;
-
+        distributeComplexitiesComplement();
         distributeComplexitiesBasic();
         distributeComplexitiesBasic();
+
+        while (isPending()) {
+            distributeComplexitiesComplement();
+            distributeComplexitiesBasic();
+        }
+        System.out.println("Complexities stable after "+ currentStep +
+                " steps");
+
+        index = null;
+        sccs = null;
+        dependents = null;
+        for (Problem p : problems) {
+            p.pendingReductions = null;
+            p.pendingAlgos = null;
+            p.pendingDerived = null;
+            p.pendingComplement = null;
+            p.pendingCoComplement = null;
+            p.parentalMemo = null;
+            p.progenialMemo = null;
+        }
     }
 }
 
@@ -10,6 +10,7 @@
 
 package teo.isgci.problem;
 
+import java.util.Arrays;
 import java.util.HashSet;
 
 import teo.isgci.gc.GraphClass;
@@ -26,8 +27,13 @@ public class ProblemOnNode {
     protected GraphClass node;
     /** The algorithms */
     protected HashSet<Algorithm> algos;
-    /** The complexities, as deduced in the different steps. */
-    protected Complexity[] complexity;
+    /** The complexities, as deduced in the different steps. Steps beyond
+     * the end have the complexity of the last element. Only the problem's
+     * own thread writes it, other problems read earlier steps, so a grown
+     * array is filled before it is published. */
+    protected volatile Complexity[] complexity;
+    /** The last step in which an algorithm was added, -1 if none */
+    protected int changedStep;
 
     ProblemOnNode(Problem p, GraphClass n) {
         problem = p;
@@ -36,6 +42,7 @@ public class ProblemOnNode {
         complexity = new Complexity[STEPS];
         for (int i = 0; i < complexity.length; i++)
             complexity[i] = Complexity.UNKNOWN;
+        changedStep = -1;
     }
 
 
@@ -45,9 +52,16 @@ public class ProblemOnNode {
      */
     protected void updateComplexity(Complexity c, int step)
             throws ComplexityClashException {
-        c = c.distil(complexity[step]);
-        for (; step < complexity.length; step++)
-            complexity[step] = c;
+        Complexity[] steps = complexity;
+        if (step >= steps.length) {
+            int old = steps.length;
+            steps = Arrays.copyOf(steps, Math.max(step+1, 2*old));
+            Arrays.fill(steps, old, steps.length, steps[old-1]);
+            complexity = steps;
+        }
+        c = c.distil(steps[step]);
+        for (; step < steps.length; step++)
+            steps[step] = c;
     }
 
 
@@ -55,7 +69,16 @@ public class ProblemOnNode {
      * Return the complexity at the given step.
      */
     Complexity getComplexity(int step) {
-        return complexity[step];
+        Complexity[] steps = complexity;
+        return steps[Math.min(step, steps.length-1)];
+    }
+
+
+    /**
+     * Return the last step in which an algorithm was added, or -1.
+     */
+    int getChangedStep() {
+        return changedStep;
     }
 
 
@@ -63,7 +86,10 @@ public class ProblemOnNode {
      * Add an algorithm at the given deduction step.
      */
     void addAlgo(Algorithm a, int step) {
-        algos.add(a);
+        if (algos.add(a)) {
+            changedStep = step;
+            problem.changed(node);
+        }
         try {
             updateComplexity(a.getComplexity(), step);
         } catch (ComplexityClashException e) {
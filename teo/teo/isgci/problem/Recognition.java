@@ -12,7 +12,6 @@ package teo.isgci.problem;
 
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
 
 import org.jgrapht.DirectedGraph;
@@ -21,7 +20,6 @@ import teo.isgci.gc.ForbiddenClass;
 import teo.isgci.gc.GraphClass;
 import teo.isgci.gc.IntersectClass;
 import teo.isgci.gc.UnionClass;
-import teo.isgci.grapht.GAlg;
 import teo.isgci.grapht.Inclusion;
 
 /**
@@ -38,15 +36,13 @@ public class Recognition extends Problem {
 
 
     /**
-     * Distribute the Algorithms for this problem over all nodes.
+     * Distribute the Algorithms for this problem over the pending nodes.
      * initAlgo/addAlgo must have been called for all problems.
-     * We must redefine this function because Recognition distributes neither
-     * upwards nor downwards.
+     * The first time, finite forbidden subgraph classes are asserted
+     * polynomial.
      * Assumes the graph g is transitively closed!
      */
     protected void distributeAlgorithms() {
-        Map<GraphClass,Set<GraphClass> > scc = GAlg.calcSCCMap(graph);
-
         //---- Assert finite ForbiddenClass polynomial
         if (!firstDistributeDone) {
             for (GraphClass n : graph.vertexSet()) {
@@ -58,104 +54,78 @@ public class Recognition extends Problem {
             }
         }
 
-        //---- Repeat twice in case of an intersection of unions or the other
-        // way around
-        /*for (int repeat = 0; repeat < 2; repeat++)*/ {
-            //---- Add every set of algorithms to the equivalent nodes' set.
-            for (GraphClass n : graph.vertexSet()) {
-                HashSet h = getAlgoSet(n);
-                if (h != null) {
-                    distribute(h, scc.get(n));
-                }
-            }
-
-            /*distributeUpUnion(gc2node);
-            distributeDownIntersect(gc2node);*/
-        }
+        super.distributeAlgorithms();
         firstDistributeDone = true;
     }
 
 
     /**
-     * Try moving complexity information UP to union nodes. We only change the
-     * complexity class for Union nodes, and do not generate new references or
-     * timebounds.
+     * Add the set of algorithms of n to the equivalent nodes' set.
+     * We must redefine this function because Recognition distributes neither
+     * upwards nor downwards.
+     */
+    protected void distributeAlgorithms(GraphClass n) {
+        HashSet h = getAlgoSet(n);
+        if (h != null)
+            distribute(h, getEquivalentClasses(n));
+    }
+
+
+    /**
+     * Try moving complexity information UP to union node n. We only change
+     * the complexity class for Union nodes, and do not generate new
+     * references or timebounds.
      * The reasoning is: If we can recognize every part of the union in
      * polytime/lin, then we can take the disjunction of their results in
      * polytime/lin as well. So the union is recognizable in polytime/lin.
      */
-    protected void distributeUpUnion() {
-        int i;
-        boolean ok, linear;
-        Complexity c;
-
-        for (GraphClass n : graph.vertexSet()) {
-            if ( !(n instanceof UnionClass) ||
-                    getDerivedComplexity(n).betterOrEqual(Complexity.LINEAR) )
-                continue;
-
-            //---- Check whether all parts are in P ----
-            ok = true;
-            linear = true;
-            Iterator<GraphClass> parts = ((UnionClass) n).getSet().iterator();
-            while (ok  &&  parts.hasNext()) {
-                GraphClass part = parts.next();
-                c = getDerivedComplexity(part);
-                ok = ok && c.betterOrEqual(Complexity.P);
-                linear = linear && c.betterOrEqual(Complexity.LINEAR);
-            }
-
-            if (ok  &&  (linear ||
-                    !getDerivedComplexity(n).betterOrEqual(Complexity.P))) {
-                //System.err.println("NOTE: distributeUpUnion invoked on "+
-                        //n.getName()+" "+toString());
-                createAlgo(n,
-                        linear ? Complexity.LINEAR : Complexity.P,
-                        "From the constituent classes.");
-            }
-        }
+    protected void distributeUpUnion(GraphClass n) {
+        if ( !(n instanceof UnionClass) ||
+                getDerivedComplexity(n).betterOrEqual(Complexity.LINEAR) )
+            return;
+        distributeFromParts(n, ((UnionClass) n).getSet());
     }
 
 
     /**
-     * Try moving complexity information DOWN to intersection nodes. We only
-     * change the complexity class for Intersect nodes, and do not generate new
-     * references or timebounds.
+     * Try moving complexity information DOWN to intersection node n. We only
+     * change the complexity class for Intersect nodes, and do not generate
+     * new references or timebounds.
      * The reasoning is: If we can recognize every part of the intersection in
      * polytime/lin, then we can take their conjunction in polytime/lin as
      * well.
      */
-    protected void distributeDownIntersect() {
-        int i;
+    protected void distributeDownIntersect(GraphClass n) {
+        if ( !(n instanceof IntersectClass) ||
+                getDerivedComplexity(n).betterOrEqual(Complexity.LINEAR) )
+            return;
+        distributeFromParts(n, ((IntersectClass) n).getSet());
+    }
+
+
+    /**
+     * If all parts of n are recognizable in polytime/lin, so is n.
+     */
+    private void distributeFromParts(GraphClass n, Set<GraphClass> set) {
         boolean ok, linear;
         Complexity c;
 
-        for (GraphClass n : graph.vertexSet()) {
-            if ( !(n instanceof IntersectClass) ||
-                    getDerivedComplexity(n).betterOrEqual(Complexity.LINEAR) )
-                continue;
-
-            //---- Check whether all parts are in P ----
-            ok = true;
-            linear = true;
-            Iterator<GraphClass> parts =
-                    ((IntersectClass) n).getSet().iterator();
-            while (ok  &&  parts.hasNext()) {
-                GraphClass part = parts.next();
-                c = getDerivedComplexity(part);
-                ok = ok && c.betterOrEqual(Complexity.P);
-                linear = linear && c.betterOrEqual(Complexity.LINEAR);
-            }
+        //---- Check whether all parts are in P ----
+        ok = true;
+        linear = true;
+        Iterator<GraphClass> parts = set.iterator();
+        while (ok  &&  parts.hasNext()) {
+            GraphClass part = parts.next();
+            c = getDerivedComplexity(part);
+            ok = ok && c.betterOrEqual(Complexity.P);
+            linear = linear && c.betterOrEqual(Complexity.LINEAR);
+        }
 
-            if (ok  &&  (linear ||
-                    !getDerivedComplexity(n).betterOrEqual(Complexity.P))) {
-                //System.err.println(
-                        //"NOTE: distributeDownIntersect invoked on "+
-                        //n.getName()+" "+toString());
-                createAlgo(n,
-                        linear ? Complexity.LINEAR : Complexity.P,
-                        "From the constituent classes.");
-            }
+        if (ok  &&  (linear ||
+                !getDerivedComplexity(n).betterOrEqual(Complexity.P))) {
+            createAlgo(n,
+                    linear ? Complexity.LINEAR : Complexity.P,
+                    "From the constituent classes.");
         }
     }
 }
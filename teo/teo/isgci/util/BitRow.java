@@ -0,0 +1,163 @@
+/*
+ * Operations on bit rows stored in long arrays.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.util;
+
+
+/**
+ * A bit row is a long[] in which bit i is stored in word i/64 at position
+ * i%64. Unlike java.util.BitSet, rows have a fixed size and can be stored
+ * in plain (two-dimensional) arrays, which keeps matrices of thousands of
+ * rows compact.
+ */
+public final class BitRow {
+
+    /** Don't allow any objects of this class */
+    private BitRow() {}
+
+
+    /**
+     * Return the number of words needed for a row of the given number of
+     * bits.
+     */
+    public static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+
+    /**
+     * Return a new, empty row that can hold the given number of bits.
+     */
+    public static long[] create(int bits) {
+        return new long[words(bits)];
+    }
+
+
+    /**
+     * Return true iff bit i is set in row.
+     */
+    public static boolean get(long[] row, int i) {
+        return (row[i >>> 6] & (1L << i)) != 0;
+    }
+
+
+    /**
+     * Set bit i in row.
+     */
+    public static void set(long[] row, int i) {
+        row[i >>> 6] |= 1L << i;
+    }
+
+
+    /**
+     * Clear bit i in row.
+     */
+    public static void clear(long[] row, int i) {
+        row[i >>> 6] &= ~(1L << i);
+    }
+
+
+    /**
+     * Set dest to dest | src. Return true iff dest changed.
+     */
+    public static boolean or(long[] dest, long[] src) {
+        long changed = 0;
+        for (int i = 0; i < src.length; i++) {
+            long old = dest[i];
+            dest[i] = old | src[i];
+            changed |= dest[i] ^ old;
+        }
+        return changed != 0;
+    }
+
+
+    /**
+     * Set dest to dest | src and store the bits that were newly set in dest
+     * into added (which is overwritten). Return true iff dest changed.
+     */
+    public static boolean or(long[] dest, long[] src, long[] added) {
+        long changed = 0;
+        for (int i = 0; i < src.length; i++) {
+            added[i] = src[i] & ~dest[i];
+            dest[i] |= added[i];
+            changed |= added[i];
+        }
+        for (int i = src.length; i < added.length; i++)
+            added[i] = 0;
+        return changed != 0;
+    }
+
+
+    /**
+     * Return true iff all bits set in sub are set in sup.
+     */
+    public static boolean containsAll(long[] sup, long[] sub) {
+        for (int i = 0; i < sub.length; i++)
+            if ((sub[i] & ~sup[i]) != 0)
+                return false;
+        return true;
+    }
+
+
+    /**
+     * Return true iff row and other have a bit in common.
+     */
+    public static boolean intersects(long[] row, long[] other) {
+        int n = Math.min(row.length, other.length);
+        for (int i = 0; i < n; i++)
+            if ((row[i] & other[i]) != 0)
+                return true;
+        return false;
+    }
+
+
+    /**
+     * Return true iff no bit is set in row.
+     */
+    public static boolean isEmpty(long[] row) {
+        for (long w : row)
+            if (w != 0)
+                return false;
+        return true;
+    }
+
+
+    /**
+     * Return the number of bits set in row.
+     */
+    public static int cardinality(long[] row) {
+        int res = 0;
+        for (long w : row)
+            res += Long.bitCount(w);
+        return res;
+    }
+
+
+    /**
+     * Return the index of the first set bit at or after from, or -1 if
+     * there is none.
+     */
+    public static int nextSetBit(long[] row, int from) {
+        int i = from >>> 6;
+        if (i >= row.length)
+            return -1;
+
+        long w = row[i] & (-1L << from);
+        while (true) {
+            if (w != 0)
+                return (i << 6) + Long.numberOfTrailingZeros(w);
+            if (++i == row.length)
+                return -1;
+            w = row[i];
+        }
+    }
+}
+
+/* EOF */
@@ -65,6 +65,16 @@ public class IDGenerator {
     }
 
 
+    /**
+     * Use id for classname from now on, as if it were in the cache file.
+     */
+    public void putID(String classname, String id) {
+        cache.put(classname, id);
+        if (id.startsWith(prefix))
+            used.set(Integer.parseInt(id.substring(prefix.length())));
+    }
+
+
     /**
      * Fill the cache from the given file. File format is "id\tclassname" per
      * line.
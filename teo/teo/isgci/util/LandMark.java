@@ -53,6 +53,15 @@ public class LandMark {
      * Fill the landmarks array with the proper nodes.
      */
     protected List<GraphClass> findLandmarks() {
+        return getLandmarks();
+    }
+
+
+    /**
+     * Return the landmark classes, preceded by a null element for the class
+     * to be landmarked.
+     */
+    public static List<GraphClass> getLandmarks() {
         List<GraphClass> landmarks = new ArrayList<GraphClass>();
         landmarks.add(null);
         landmarks.add(DataSet.getClass("perfect"));
@@ -0,0 +1,184 @@
+/*
+ * Hash map from primitive longs to objects.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.util;
+
+import java.util.Arrays;
+
+
+/**
+ * A hash map from longs to non-null objects, using open addressing with
+ * linear probing. Keys are not boxed, so get doesn't allocate. Like
+ * java.util.HashMap, the map is safe for any number of concurrent readers
+ * as long as nobody modifies it.
+ */
+public class LongMap<T> {
+    /** Maximum fill ratio before the table is doubled */
+    private static final float LOAD = 0.5f;
+
+    /** The keys, only meaningful where values is non-null */
+    private long[] keys;
+    /** The values, null for an empty slot */
+    private Object[] values;
+    /** keys.length - 1 */
+    private int mask;
+    /** Number of entries */
+    private int size;
+
+
+    /**
+     * Create a new map for about the given number of entries.
+     */
+    public LongMap(int expected) {
+        int cap = 16;
+        while (cap * LOAD < expected)
+            cap <<= 1;
+        allocate(cap);
+    }
+
+
+    /**
+     * Create a new, empty map.
+     */
+    public LongMap() {
+        this(8);
+    }
+
+
+    /**
+     * Return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Return the value for the given key, or null if it has none.
+     */
+    public T get(long key) {
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask)
+            if (keys[i] == key)
+                return value(i);
+        return null;
+    }
+
+
+    /**
+     * Return true iff key has a value.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+
+    /**
+     * Set the value for the given key and return the old value, or null if
+     * it had none.
+     */
+    public T put(long key, T value) {
+        if (value == null)
+            throw new NullPointerException("value can't be null");
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                T old = value(i);
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > LOAD * keys.length)
+            rehash(keys.length << 1);
+        return null;
+    }
+
+
+    /**
+     * Remove the given key and return its value, or null if it had none.
+     */
+    public T remove(long key) {
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask)
+            if (keys[i] == key)
+                break;
+        if (values[i] == null)
+            return null;
+
+        T old = value(i);
+        size--;
+        // Shift back the entries that follow so no probe sequence breaks.
+        int gap = i;
+        for (int j = (gap + 1) & mask; values[j] != null;
+                j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+        return old;
+    }
+
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+
+    /**
+     * Return the home slot of key.
+     */
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+
+    /**
+     * Return the value in slot i. The cast is safe, as put only stores Ts.
+     */
+    @SuppressWarnings("unchecked")
+    private T value(int i) {
+        return (T) values[i];
+    }
+
+
+    private void allocate(int cap) {
+        keys = new long[cap];
+        values = new Object[cap];
+        mask = cap - 1;
+    }
+
+
+    private void rehash(int cap) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(cap);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int j = slot(oldKeys[i]);
+            while (values[j] != null)
+                j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
+
+/* EOF */
@@ -0,0 +1,116 @@
+/*
+ * Runs a loop over an index range in parallel, block by block.
+ *
+ * $Header$
+ *
+ * This file is part of the Information System on Graph Classes and their
+ * Inclusions (ISGCI) at http://www.graphclasses.org.
+ * Email: isgci@graphclasses.org
+ */
+
+package teo.isgci.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Splits the range 0..n-1 into consecutive blocks and executes a
+ * BlockFunction on every block, using a number of worker threads. The
+ * results are returned in block order, so a caller that concatenates them
+ * gets the same result as a sequential loop over the range.
+ * With a single thread everything runs in the calling thread.
+ */
+public class ParallelBlocks {
+
+    /** Number of blocks per thread, for balancing uneven blocks */
+    private static final int BLOCKSPERTHREAD = 8;
+
+    /** Number of worker threads */
+    private int threads;
+
+
+    /**
+     * The work for a single block.
+     */
+    public interface BlockFunction<T> {
+        /** Handle indices from (inclusive) to to (exclusive). */
+        public T execute(int from, int to);
+    }
+
+
+    /**
+     * Create a new ParallelBlocks that uses the given number of threads.
+     */
+    public ParallelBlocks(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+
+    /**
+     * Return the number of threads used.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+
+    /**
+     * Execute f on the blocks of 0..n-1 and return the results in block
+     * order. Exceptions thrown by f are rethrown in the calling thread.
+     */
+    public <T> List<T> run(int n, final BlockFunction<T> f) {
+        List<T> res = new ArrayList<T>();
+        if (n <= 0)
+            return res;
+
+        if (threads == 1) {
+            res.add(f.execute(0, n));
+            return res;
+        }
+
+        int blocks = Math.min(n, threads * BLOCKSPERTHREAD);
+        List<Callable<T> > tasks = new ArrayList<Callable<T> >(blocks);
+        for (int b = 0; b < blocks; b++) {
+            final int from = (int) ((long) n * b / blocks);
+            final int to = (int) ((long) n * (b+1) / blocks);
+            tasks.add(new Callable<T>() {
+                public T call() {
+                    return f.execute(from, to);
+                }
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "ParallelBlocks");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        try {
+            for (Future<T> future : pool.invokeAll(tasks))
+                res.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return res;
+    }
+}
+
+/* EOF */